@@ -0,0 +1,209 @@
+package com.example.persona_backend.benchmark;
+
+import com.example.persona_backend.entity.PersonaVector;
+import com.example.persona_backend.mapper.PersonaVectorMapper;
+import com.example.persona_backend.service.PersonaVectorIndex;
+import com.example.persona_backend.utils.VectorUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 推荐链路基准：余弦相似度、行为质心、目标向量融合、L0 召回 (常驻内存索引 Top-K)
+ * 合成数据：Persona 数 1k / 10k / 100k，维度 1024，查询时排除 20 个已关注 Persona。
+ * 运行方式：mvn -Pjmh test-compile exec:exec -Djmh.include=RecommendationPipelineBenchmark
+ * 默认开启 GC profiler，结果中的 gc.alloc.rate.norm 即每次操作分配的字节数。
+ * 对比其他索引配置：追加 -Djmh.params=engine=hnsw 或 -Djmh.params=quantization=int8
+ * 索引与线上默认配置一样先写快照再从快照加载，int8 重排读取的是映射的堆外全精度向量。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// 100k x 1024 的 float 矩阵约 400MB
+@Fork(value = 1, jvmArgsPrepend = {"-Xms4g", "-Xmx4g"})
+public class RecommendationPipelineBenchmark {
+
+    private static final int FOLLOWED = 20;
+    private static final int TOP_K = 20;
+
+    /**
+     * 单个向量运算使用的数据，与 Persona 总数无关
+     */
+    @State(Scope.Thread)
+    public static class VectorState {
+
+        @Param({"1024"})
+        int dim;
+
+        float[] a;
+        float[] b;
+        // 一个用户已关注 Persona 的向量
+        float[][] followed;
+        float[] centroidSum;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            a = randomVector(random, dim);
+            b = randomVector(random, dim);
+            followed = new float[FOLLOWED][];
+            centroidSum = new float[dim];
+            for (int i = 0; i < FOLLOWED; i++) {
+                followed[i] = randomVector(random, dim);
+                VectorUtils.addTo(centroidSum, followed[i]);
+            }
+        }
+    }
+
+    /**
+     * 预先加载好的召回索引
+     */
+    @State(Scope.Benchmark)
+    public static class IndexState {
+
+        @Param({"1000", "10000", "100000"})
+        int personas;
+
+        @Param({"1024"})
+        int dim;
+
+        @Param({"exact"})
+        String engine;
+
+        @Param({"none"})
+        String quantization;
+
+        // 经快照文件加载 (线上默认)；false 时全量读表，int8 的全精度向量放在直接内存
+        @Param({"true"})
+        boolean snapshot;
+
+        PersonaVectorIndex index;
+        Path snapshotDir;
+        float[] query;
+        List<Long> followedIds;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Random random = new Random(7);
+            Map<Long, PersonaVector> rows = new LinkedHashMap<>(personas * 2);
+            for (long id = 1; id <= personas; id++) {
+                PersonaVector pv = new PersonaVector();
+                pv.setPersonaId(id);
+                pv.setEmbedding(randomVector(random, dim));
+                pv.setVersion(1);
+                rows.put(id, pv);
+            }
+
+            PersonaVectorMapper mapper = inMemoryMapper(rows);
+            if (snapshot) {
+                // 全量加载时写入快照，再用新实例映射快照，与重启后的线上状态一致
+                snapshotDir = Files.createTempDirectory("pipeline-bench");
+                String path = snapshotDir.resolve("persona-vectors.snap").toString();
+                newIndex(mapper, path).reload();
+                index = newIndex(mapper, path);
+                if (!index.loadSnapshot()) throw new IllegalStateException("snapshot not loaded");
+            } else {
+                index = newIndex(mapper, null);
+                index.reload();
+            }
+
+            query = randomVector(random, dim);
+            followedIds = new ArrayList<>(FOLLOWED);
+            for (int i = 0; i < FOLLOWED; i++) {
+                followedIds.add(1L + random.nextInt(personas));
+            }
+            System.out.println("SIMD enabled: " + VectorUtils.isSimdEnabled() + ", index size: " + index.size());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            if (snapshotDir == null) return;
+            try (Stream<Path> files = Files.list(snapshotDir)) {
+                for (Path file : files.toList()) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(snapshotDir);
+        }
+
+        private PersonaVectorIndex newIndex(PersonaVectorMapper mapper, String snapshotPath) {
+            PersonaVectorIndex created = new PersonaVectorIndex();
+            ReflectionTestUtils.setField(created, "personaVectorMapper", mapper);
+            ReflectionTestUtils.setField(created, "engine", engine);
+            ReflectionTestUtils.setField(created, "quantization", quantization);
+            if (snapshotPath != null) ReflectionTestUtils.setField(created, "snapshotPath", snapshotPath);
+            return created;
+        }
+    }
+
+    @Benchmark
+    public float cosine(VectorState s) {
+        return VectorUtils.cosine(s.a, s.b);
+    }
+
+    /**
+     * 全量重建质心：累加全部已关注向量后求平均 (BehaviorCentroidService.rebuild 的计算部分)
+     */
+    @Benchmark
+    public float[] centroidRebuild(VectorState s) {
+        float[] sum = new float[s.dim];
+        for (float[] v : s.followed) {
+            VectorUtils.addTo(sum, v);
+        }
+        VectorUtils.scale(sum, 1.0f / s.followed.length);
+        return sum;
+    }
+
+    /**
+     * 读取质心：向量和除以关注数 (BehaviorCentroidService.getBehaviorVector 的计算部分)
+     */
+    @Benchmark
+    public float[] centroidMean(VectorState s) {
+        float[] mean = s.centroidSum.clone();
+        VectorUtils.scale(mean, 1.0f / FOLLOWED);
+        return mean;
+    }
+
+    @Benchmark
+    public float[] fuseVectors(VectorState s) {
+        return VectorUtils.fuse(s.a, s.b, 0.6);
+    }
+
+    /**
+     * L0 召回：排除已关注后取 Top 20
+     */
+    @Benchmark
+    public List<Long> l0Recall(IndexState s) {
+        return s.index.topK(s.query, s.followedIds, TOP_K);
+    }
+
+    // 只实现索引加载用到的查询；召回 (含 int8 重排) 不应访问 Mapper，否则直接抛异常
+    private static PersonaVectorMapper inMemoryMapper(Map<Long, PersonaVector> rows) {
+        return (PersonaVectorMapper) Proxy.newProxyInstance(
+                PersonaVectorMapper.class.getClassLoader(),
+                new Class<?>[]{PersonaVectorMapper.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "selectList" -> new ArrayList<>(rows.values());
+                    // 快照与数据库版本一致，没有需要回放的行
+                    case "selectVersions" -> new ArrayList<>(rows.values());
+                    case "toString" -> "InMemoryPersonaVectorMapper";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static float[] randomVector(Random random, int dim) {
+        float[] v = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            v[i] = (float) random.nextGaussian();
+        }
+        return v;
+    }
+}
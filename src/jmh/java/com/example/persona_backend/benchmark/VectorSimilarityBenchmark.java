@@ -0,0 +1,132 @@
+package com.example.persona_backend.benchmark;
+
+import com.example.persona_backend.utils.Int8Quantizer;
+import com.example.persona_backend.utils.VectorUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 余弦相似度基准：旧实现 (List&lt;Double&gt; + Math.pow) vs VectorUtils (SIMD / 标量) vs int8 量化
+ * 运行方式：mvn -Pjmh test-compile exec:exec -Djmh.include=VectorSimilarityBenchmark
+ * 对比标量实现：追加 -Dvector.module.args="--add-modules jdk.incubator.vector -Dpersona.vector.simd=false"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VectorSimilarityBenchmark {
+
+    @Param({"1024"})
+    private int dim;
+
+    // 一对多打分的候选数量
+    @Param({"10000"})
+    private int rows;
+
+    private List<Double> boxedA;
+    private List<Double> boxedB;
+    private List<List<Double>> boxedMatrix;
+
+    private float[] floatA;
+    private float[] floatB;
+    private float[] matrix;
+    private float[] norms;
+    private float[] scores;
+
+    private byte[] codes;
+    private float[] scales;
+    private float[] offsets;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        boxedA = randomList(random, dim);
+        boxedB = randomList(random, dim);
+        floatA = VectorUtils.toFloatArray(boxedA);
+        floatB = VectorUtils.toFloatArray(boxedB);
+
+        boxedMatrix = new ArrayList<>(rows);
+        matrix = new float[rows * dim];
+        norms = new float[rows];
+        for (int r = 0; r < rows; r++) {
+            List<Double> row = randomList(random, dim);
+            boxedMatrix.add(row);
+            System.arraycopy(VectorUtils.toFloatArray(row), 0, matrix, r * dim, dim);
+            norms[r] = VectorUtils.norm(matrix, r * dim, dim);
+        }
+        scores = new float[rows];
+
+        codes = new byte[rows * dim];
+        scales = new float[rows];
+        offsets = new float[rows];
+        float[] row = new float[dim];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(matrix, r * dim, row, 0, dim);
+            Int8Quantizer.quantize(row, codes, scales, offsets, r);
+        }
+        System.out.println("SIMD enabled: " + VectorUtils.isSimdEnabled());
+    }
+
+    @Benchmark
+    public double legacyCosine() {
+        return legacyCosineSimilarity(boxedA, boxedB);
+    }
+
+    @Benchmark
+    public float vectorUtilsCosine() {
+        return VectorUtils.cosine(floatA, floatB);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10000)
+    public void legacyOneVsMany(Blackhole bh) {
+        for (List<Double> row : boxedMatrix) {
+            bh.consume(legacyCosineSimilarity(boxedA, row));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10000)
+    public float[] vectorUtilsOneVsMany() {
+        VectorUtils.cosineBatch(floatA, VectorUtils.norm(floatA), matrix, norms, dim, rows, scores);
+        return scores;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10000)
+    public float[] int8OneVsMany() {
+        Int8Quantizer.cosineBatch(floatA, VectorUtils.norm(floatA), codes, scales, offsets, norms, rows, scores);
+        return scores;
+    }
+
+    /**
+     * 优化前 RecommendationService.cosineSimilarity 的原样实现，作为基线
+     */
+    private static double legacyCosineSimilarity(List<Double> v1, List<Double> v2) {
+        if (v1 == null || v2 == null || v1.size() != v2.size()) return 0.0;
+        double dotProduct = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < v1.size(); i++) {
+            dotProduct += v1.get(i) * v2.get(i);
+            normA += Math.pow(v1.get(i), 2);
+            normB += Math.pow(v2.get(i), 2);
+        }
+        return (normA == 0 || normB == 0) ? 0.0 : dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    private static List<Double> randomList(Random random, int dim) {
+        List<Double> list = new ArrayList<>(dim);
+        for (int i = 0; i < dim; i++) {
+            list.add(random.nextGaussian());
+        }
+        return list;
+    }
+}
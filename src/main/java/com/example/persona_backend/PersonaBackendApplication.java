@@ -3,9 +3,11 @@ package com.example.persona_backend;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.example.persona_backend.mapper")
+@EnableScheduling
 public class PersonaBackendApplication {
 
     public static void main(String[] args) {
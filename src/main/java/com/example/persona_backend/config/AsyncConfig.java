@@ -0,0 +1,120 @@
+package com.example.persona_backend.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后台任务线程池 (直接注入使用，不走 @Async)
+ * 画像进化 (历史查询 + Kimi 分析 + Embedding) 耗时数秒，只由 UserProfileService 的 KeyedDebounceQueue
+ * 派发到独立的有界线程池执行，不占用聊天请求线程。
+ * 队列满时拒绝新任务并计数：画像进化是尽力而为的后台任务，宁可少更新一次也不把延迟转嫁给聊天接口。
+ * 拒绝以 RejectedExecutionException 抛给提交方 (KeyedDebounceQueue)，由它归还该用户的执行名额。
+ * 关闭应用时等待已排队的任务执行完毕 (最多 await-termination-seconds)。
+ * 聊天滚动摘要另用一个小线程池，摘要只影响后续对话的上下文，关闭应用时不等待。
+ * 流式聊天结束后的回复处理 (生图、转存 OSS、写库) 在单独的线程池执行，不占用 OkHttp 的回调线程与 Dispatcher 名额。
+ */
+@Slf4j
+@Configuration
+public class AsyncConfig {
+
+    public static final String PROFILE_EVOLUTION_EXECUTOR = "profileEvolutionExecutor";
+    public static final String CHAT_SUMMARY_EXECUTOR = "chatSummaryExecutor";
+    public static final String CHAT_REPLY_EXECUTOR = "chatReplyExecutor";
+
+    @Value("${profile.evolution.threads:2}")
+    private int threads = 2;
+
+    @Value("${profile.evolution.max-threads:4}")
+    private int maxThreads = 4;
+
+    // 排队上限，超出后拒绝
+    @Value("${profile.evolution.queue-capacity:500}")
+    private int queueCapacity = 500;
+
+    @Value("${profile.evolution.await-termination-seconds:30}")
+    private int awaitTerminationSeconds = 30;
+
+    // 聊天滚动摘要：单线程即可，队列满时调用方收到 TaskRejectedException，本轮不更新摘要
+    @Value("${chat.context.summary.threads:1}")
+    private int summaryThreads = 1;
+
+    @Value("${chat.context.summary.queue-capacity:100}")
+    private int summaryQueueCapacity = 100;
+
+    // 流式回复后处理：队列满时由调用方 (OkHttp 回调线程) 自己执行，回复不丢失
+    @Value("${chat.stream.reply-threads:4}")
+    private int replyThreads = 4;
+
+    @Value("${chat.stream.reply-queue-capacity:200}")
+    private int replyQueueCapacity = 200;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private ThreadPoolTaskExecutor profileEvolutionExecutor;
+
+    @Bean(name = PROFILE_EVOLUTION_EXECUTOR)
+    public ThreadPoolTaskExecutor profileEvolutionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(Math.max(threads, maxThreads));
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("profile-evolve-");
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            long count = rejected.incrementAndGet();
+            // 持续拒绝时每 100 次打印一次，避免刷屏
+            if (count == 1 || count % 100 == 0) {
+                log.warn("⚠️ [Async] 画像进化队列已满 ({}), 累计丢弃 {} 个任务", pool.getQueue().size(), count);
+            }
+            // 不能静默丢弃：提交方需要知道任务不会执行 (关闭期间同样走这里)
+            throw new RejectedExecutionException("profile evolution executor rejected task");
+        });
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(awaitTerminationSeconds);
+        profileEvolutionExecutor = executor;
+        return executor;
+    }
+
+    @Bean(name = CHAT_SUMMARY_EXECUTOR)
+    public ThreadPoolTaskExecutor chatSummaryExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(summaryThreads);
+        executor.setMaxPoolSize(summaryThreads);
+        executor.setQueueCapacity(summaryQueueCapacity);
+        executor.setThreadNamePrefix("chat-summary-");
+        return executor;
+    }
+
+    @Bean(name = CHAT_REPLY_EXECUTOR)
+    public ThreadPoolTaskExecutor chatReplyExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(replyThreads);
+        executor.setMaxPoolSize(replyThreads);
+        executor.setQueueCapacity(replyQueueCapacity);
+        executor.setThreadNamePrefix("chat-reply-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(awaitTerminationSeconds);
+        return executor;
+    }
+
+    public Map<String, Object> profileEvolutionStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        ThreadPoolExecutor pool = profileEvolutionExecutor != null ? profileEvolutionExecutor.getThreadPoolExecutor() : null;
+        if (pool != null) {
+            stats.put("poolSize", pool.getPoolSize());
+            stats.put("activeThreads", pool.getActiveCount());
+            stats.put("queued", pool.getQueue().size());
+            stats.put("queueCapacity", queueCapacity);
+            stats.put("completed", pool.getCompletedTaskCount());
+        }
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+}
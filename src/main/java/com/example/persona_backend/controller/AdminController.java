@@ -1,18 +1,27 @@
 package com.example.persona_backend.controller;
 
 import com.example.persona_backend.common.Result;
-import com.example.persona_backend.entity.Persona;
-import com.example.persona_backend.entity.PersonaVector;
-import com.example.persona_backend.mapper.PersonaMapper;
-import com.example.persona_backend.mapper.PersonaVectorMapper;
-import com.example.persona_backend.utils.ZhipuAiUtils;
+import com.example.persona_backend.config.AsyncConfig;
+import com.example.persona_backend.service.EmbeddingService;
+import com.example.persona_backend.service.PersonaEmbeddingRefresher;
+import com.example.persona_backend.service.PersonaVectorIndex;
+import com.example.persona_backend.service.PersonaVectorSyncJob;
+import com.example.persona_backend.service.PopularPersonaService;
+import com.example.persona_backend.service.RecommendationSlateService;
+import com.example.persona_backend.service.ChatContextBuilder;
+import com.example.persona_backend.service.ChatSessionCache;
+import com.example.persona_backend.service.RerankCache;
+import com.example.persona_backend.service.TargetVectorCache;
+import com.example.persona_backend.service.UserProfileService;
+import com.example.persona_backend.utils.BulkheadRegistry;
+import com.example.persona_backend.utils.CircuitBreakerRegistry;
+import com.example.persona_backend.utils.HttpClientRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Slf4j
 @RestController
@@ -20,56 +29,219 @@ import java.util.List;
 public class AdminController {
 
     @Autowired
-    private PersonaMapper personaMapper;
+    private EmbeddingService embeddingService;
     @Autowired
-    private PersonaVectorMapper personaVectorMapper;
+    private PersonaVectorSyncJob personaVectorSyncJob;
     @Autowired
-    private ZhipuAiUtils zhipuAiUtils;
+    private PersonaEmbeddingRefresher personaEmbeddingRefresher;
+    @Autowired
+    private PersonaVectorIndex personaVectorIndex;
+    @Autowired
+    private TargetVectorCache targetVectorCache;
+    @Autowired
+    private RerankCache rerankCache;
+    @Autowired
+    private ChatSessionCache chatSessionCache;
+    @Autowired
+    private ChatContextBuilder chatContextBuilder;
+    @Autowired
+    private RecommendationSlateService recommendationSlateService;
+    @Autowired
+    private PopularPersonaService popularPersonaService;
+    @Autowired
+    private HttpClientRegistry httpClientRegistry;
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    @Autowired
+    private AsyncConfig asyncConfig;
+    @Autowired
+    private UserProfileService userProfileService;
 
     /**
-     * 【一次性工具】同步所有旧 Persona 的向量数据
+     * 同步所有旧 Persona 的向量数据 (后台任务)
      * 作用：让旧的智能体能被推荐算法检索到
-     * 调用方式：POST http://localhost:8080/admin/sync-persona-vectors
+     * 立即返回，进度通过 /admin/sync-persona-vectors/status 查询；默认从上次中断的断点继续
+     * 调用方式：POST http://localhost:8080/admin/sync-persona-vectors?fromStart=false
      */
     @PostMapping("/sync-persona-vectors")
-    public Result<String> syncPersonaVectors() {
-        List<Persona> allPersonas = personaMapper.selectList(null);
-        int successCount = 0;
-        int skipCount = 0;
-
-        for (Persona persona : allPersonas) {
-            // 检查是否已有向量（避免重复消耗 token）
-            if (personaVectorMapper.selectById(persona.getId()) != null) {
-                skipCount++;
-                continue;
-            }
-
-            // 拼接用于 Embedding 的文本 (名称 + 标签 + 描述)
-            String textToEmbed = "Name: " + persona.getName() +
-                    "; Tags: " + persona.getPersonalityTags() +
-                    "; Desc: " + persona.getDescription();
-
-            try {
-                // 调用智谱 API
-                List<Double> vector = zhipuAiUtils.generateEmbedding(textToEmbed);
-
-                if (vector != null && !vector.isEmpty()) {
-                    PersonaVector pv = new PersonaVector();
-                    pv.setPersonaId(persona.getId());
-                    pv.setEmbedding(vector);
-                    pv.setVersion(1);
-                    personaVectorMapper.insert(pv);
-                    successCount++;
-                }
-
-                // 避免触发 API 速率限制 (QPS)
-                Thread.sleep(200);
-
-            } catch (Exception e) {
-                log.error("Sync vector failed for persona: " + persona.getName(), e);
-            }
+    public Result<Map<String, Object>> syncPersonaVectors(
+            @RequestParam(value = "fromStart", defaultValue = "false") boolean fromStart) {
+        if (!personaVectorSyncJob.start(fromStart)) {
+            return Result.error("同步任务正在运行");
+        }
+        return Result.success(personaVectorSyncJob.status(), "同步任务已启动");
+    }
+
+    /**
+     * 向量同步任务进度 / 吞吐
+     * 调用方式：GET http://localhost:8080/admin/sync-persona-vectors/status
+     */
+    @GetMapping("/sync-persona-vectors/status")
+    public Result<Map<String, Object>> syncPersonaVectorsStatus() {
+        return Result.success(personaVectorSyncJob.status());
+    }
+
+    /**
+     * 停止向量同步任务 (保留断点，下次启动时继续)
+     * 调用方式：POST http://localhost:8080/admin/sync-persona-vectors/stop
+     */
+    @PostMapping("/sync-persona-vectors/stop")
+    public Result<String> stopSyncPersonaVectors() {
+        return personaVectorSyncJob.stop() ? Result.success("正在停止") : Result.error("同步任务未在运行");
+    }
+
+    /**
+     * 角色新建 / 编辑后的向量实时刷新状态 (队列长度、刷新延迟)
+     * 调用方式：GET http://localhost:8080/admin/persona-embedding/stats
+     */
+    @GetMapping("/persona-embedding/stats")
+    public Result<Map<String, Object>> personaEmbeddingStats() {
+        return Result.success(personaEmbeddingRefresher.stats());
+    }
+
+    /**
+     * 向量缓存命中率 / Embedding API 调用次数
+     * 调用方式：GET http://localhost:8080/admin/embedding-cache/stats
+     */
+    @GetMapping("/embedding-cache/stats")
+    public Result<Map<String, Object>> embeddingCacheStats() {
+        return Result.success(embeddingService.stats());
+    }
+
+    /**
+     * 评估向量索引的召回质量 (当前引擎 vs 精确扫描的 recall@K 与延迟)
+     * 调用方式：GET http://localhost:8080/admin/vector-index/recall?k=20&samples=200
+     */
+    @GetMapping("/vector-index/recall")
+    public Result<Map<String, Object>> evaluateVectorIndexRecall(
+            @RequestParam(value = "k", defaultValue = "20") int k,
+            @RequestParam(value = "samples", defaultValue = "200") int samples) {
+        return Result.success(personaVectorIndex.evaluateRecall(k, samples));
+    }
+
+    /**
+     * 目标向量缓存命中率 / 占用
+     * 调用方式：GET http://localhost:8080/admin/target-vector-cache/stats
+     */
+    @GetMapping("/target-vector-cache/stats")
+    public Result<Map<String, Object>> targetVectorCacheStats() {
+        return Result.success(targetVectorCache.stats());
+    }
+
+    /**
+     * 聊天会话缓存 (最近消息 / 用户画像 / Persona) 命中率
+     * 调用方式：GET http://localhost:8080/admin/chat-session-cache/stats
+     */
+    @GetMapping("/chat-session-cache/stats")
+    public Result<Map<String, Object>> chatSessionCacheStats() {
+        return Result.success(chatSessionCache.stats());
+    }
+
+    /**
+     * 聊天上下文组装：平均 token 数、小模型占比、被挤出的消息数与滚动摘要
+     * 调用方式：GET http://localhost:8080/admin/chat-context/stats
+     */
+    @GetMapping("/chat-context/stats")
+    public Result<Map<String, Object>> chatContextStats() {
+        return Result.success(chatContextBuilder.stats());
+    }
+
+    /**
+     * L1 精排结果缓存命中率 / 合并请求数
+     * 调用方式：GET http://localhost:8080/admin/rerank-cache/stats
+     */
+    @GetMapping("/rerank-cache/stats")
+    public Result<Map<String, Object>> rerankCacheStats() {
+        return Result.success(rerankCache.stats());
+    }
+
+    /**
+     * 预计算推荐列表的命中率与最近一轮任务结果
+     * 调用方式：GET http://localhost:8080/admin/recommendation-slate/stats
+     */
+    @GetMapping("/recommendation-slate/stats")
+    public Result<Map<String, Object>> recommendationSlateStats() {
+        return Result.success(recommendationSlateService.stats());
+    }
+
+    /**
+     * 立即为活跃用户预计算一轮推荐列表 (后台任务)
+     * 立即返回，进度通过 /admin/recommendation-slate/status 查询
+     * 调用方式：POST http://localhost:8080/admin/recommendation-slate/precompute
+     */
+    @PostMapping("/recommendation-slate/precompute")
+    public Result<Map<String, Object>> precomputeRecommendationSlates() {
+        if (!recommendationSlateService.start()) {
+            return Result.error("预计算任务正在运行");
         }
+        return Result.success(recommendationSlateService.status(), "预计算任务已启动");
+    }
+
+    /**
+     * 预计算任务进度
+     * 调用方式：GET http://localhost:8080/admin/recommendation-slate/status
+     */
+    @GetMapping("/recommendation-slate/status")
+    public Result<Map<String, Object>> recommendationSlateStatus() {
+        return Result.success(recommendationSlateService.status());
+    }
+
+    /**
+     * 冷启动热门排行状态
+     * 调用方式：GET http://localhost:8080/admin/popular-personas/stats
+     */
+    @GetMapping("/popular-personas/stats")
+    public Result<Map<String, Object>> popularPersonaStats() {
+        return Result.success(popularPersonaService.stats());
+    }
+
+    /**
+     * 立即重新计算热门排行 (同步执行)
+     * 调用方式：POST http://localhost:8080/admin/popular-personas/refresh
+     */
+    @PostMapping("/popular-personas/refresh")
+    public Result<Map<String, Object>> refreshPopularPersonas() {
+        popularPersonaService.refresh();
+        return Result.success(popularPersonaService.stats());
+    }
+
+    /**
+     * 外部服务 HTTP 客户端连接池状态 (按上游)
+     * 调用方式：GET http://localhost:8080/admin/http-clients/stats
+     */
+    @GetMapping("/http-clients/stats")
+    public Result<Map<String, Object>> httpClientStats() {
+        return Result.success(httpClientRegistry.stats());
+    }
 
-        return Result.success("同步完成: 成功生成 " + successCount + " 个, 跳过 " + skipCount + " 个");
+    /**
+     * 外部 AI 服务隔离舱状态：当前并发上限、排队耗时、拒绝次数
+     * 调用方式：GET http://localhost:8080/admin/bulkheads/stats
+     */
+    @GetMapping("/bulkheads/stats")
+    public Result<Map<String, Object>> bulkheadStats() {
+        return Result.success(bulkheadRegistry.stats());
+    }
+
+    /**
+     * 大模型熔断器状态
+     * 调用方式：GET http://localhost:8080/admin/circuit-breakers/stats
+     */
+    @GetMapping("/circuit-breakers/stats")
+    public Result<Map<String, Object>> circuitBreakerStats() {
+        return Result.success(circuitBreakerRegistry.stats());
+    }
+
+    /**
+     * 画像进化后台线程池、聊天计数批量写入与进化执行情况
+     * 调用方式：GET http://localhost:8080/admin/profile-evolution/stats
+     */
+    @GetMapping("/profile-evolution/stats")
+    public Result<Map<String, Object>> profileEvolutionStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(asyncConfig.profileEvolutionStats());
+        stats.putAll(userProfileService.stats());
+        return Result.success(stats);
     }
-}
\ No newline at end of file
+}
@@ -5,8 +5,11 @@ import com.example.persona_backend.dto.ConversationDto;
 import com.example.persona_backend.entity.ChatMessage;
 import com.example.persona_backend.service.ChatService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -18,6 +21,10 @@ public class ChatController {
     @Autowired
     private ChatService chatService;
 
+    // 流式回复的最长等待时间，超时后断开并取消上游请求
+    @Value("${moonshot.stream.timeout-ms:180000}")
+    private long streamTimeoutMs = 180000;
+
     // 纯文本/生图请求接口
     @PostMapping("/send")
     public Result<ChatMessage> sendMessage(@RequestBody Map<String, Object> params) {
@@ -33,6 +40,19 @@ public class ChatController {
         return Result.success(response);
     }
 
+    // 流式文本聊天接口 (SSE)：delta 事件逐段推送回复内容，done 事件返回保存后的完整消息
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessage(@RequestBody Map<String, Object> params) {
+        Long userId = Long.valueOf(params.get("userId").toString());
+        Long personaId = Long.valueOf(params.get("personaId").toString());
+        String content = (String) params.get("content");
+        boolean isImageGen = params.containsKey("isImageGen") && Boolean.parseBoolean(params.get("isImageGen").toString());
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        chatService.streamChat(userId, personaId, content, isImageGen, emitter);
+        return emitter;
+    }
+
     // 语音发送接口 (保持不变)
     @PostMapping("/sendAudio")
     public Result<ChatMessage> sendAudio(
@@ -4,9 +4,13 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.example.persona_backend.common.Result;
 import com.example.persona_backend.entity.Follow;
 import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.event.FollowChangedEvent;
 import com.example.persona_backend.mapper.FollowMapper;
 import com.example.persona_backend.mapper.PersonaMapper;
+import com.example.persona_backend.service.BehaviorCentroidService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,10 +25,17 @@ public class FollowController {
     @Autowired
     private PersonaMapper personaMapper;
 
+    @Autowired
+    private BehaviorCentroidService behaviorCentroidService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 切换关注状态 (关注/取消关注)
      */
     @PostMapping("/{personaId}")
+    @Transactional(rollbackFor = Exception.class)
     public Result<Boolean> toggleFollow(
             @RequestHeader("X-User-Id") Long userId,
             @PathVariable Long personaId) {
@@ -38,6 +49,9 @@ public class FollowController {
         if (existing != null) {
             // 已关注 -> 取消关注
             followMapper.deleteById(existing.getId());
+            // 同一事务内增量更新行为质心
+            behaviorCentroidService.onFollowChanged(userId, personaId, false);
+            eventPublisher.publishEvent(new FollowChangedEvent(userId, personaId, false));
             return Result.success(false, "Unfollowed");
         } else {
             // 未关注 -> 添加关注
@@ -47,6 +61,8 @@ public class FollowController {
             follow.setCreatedAt(LocalDateTime.now());
 
             followMapper.insert(follow);
+            behaviorCentroidService.onFollowChanged(userId, personaId, true);
+            eventPublisher.publishEvent(new FollowChangedEvent(userId, personaId, true));
             return Result.success(true, "Followed");
         }
     }
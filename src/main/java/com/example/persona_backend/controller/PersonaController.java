@@ -10,13 +10,15 @@ import com.example.persona_backend.dto.MagicEditRequest;
 import com.example.persona_backend.dto.PersonaRecommendationDto;
 import com.example.persona_backend.entity.Persona;
 import com.example.persona_backend.entity.Post;
+import com.example.persona_backend.event.PersonaChangedEvent;
 import com.example.persona_backend.mapper.PersonaMapper;
 import com.example.persona_backend.mapper.PersonaVectorMapper;
 import com.example.persona_backend.mapper.PostMapper;
 import com.example.persona_backend.service.AiService;
-import com.example.persona_backend.service.RecommendationService;
+import com.example.persona_backend.service.RecommendationSlateService;
 import com.example.persona_backend.utils.ZhipuAiUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
@@ -42,7 +44,10 @@ public class PersonaController {
     private ZhipuAiUtils zhipuAiUtils;
 
     @Autowired
-    private RecommendationService recommendationService;
+    private RecommendationSlateService recommendationSlateService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     // ==========================================
     // 广场与推荐
@@ -71,13 +76,13 @@ public class PersonaController {
     }
 
     /**
-     * 独立推荐接口
+     * 独立推荐接口 (优先读取后台预计算的推荐列表，未命中时实时计算)
      */
     @GetMapping("/recommend")
     public Result<List<PersonaRecommendationDto>> getRecommendation(
             @RequestHeader(value = "X-User-Id", defaultValue = "1") Long currentUserId
     ) {
-        return Result.success(recommendationService.recommendForUser(currentUserId));
+        return Result.success(recommendationSlateService.getRecommendation(currentUserId));
     }
 
     // ==========================================
@@ -98,6 +103,8 @@ public class PersonaController {
         persona.setCreatedAt(LocalDateTime.now());
 
         personaMapper.insert(persona);
+        // 向量由后台异步生成，不阻塞创建接口
+        eventPublisher.publishEvent(new PersonaChangedEvent(persona.getId()));
         return Result.success("Created");
     }
 
@@ -121,6 +128,9 @@ public class PersonaController {
         persona.setUserId(currentUserId);
 
         int rows = personaMapper.updateById(persona);
+        if (rows > 0) {
+            eventPublisher.publishEvent(new PersonaChangedEvent(id));
+        }
         return rows > 0 ? Result.success("Updated") : Result.error("Update failed");
     }
 
@@ -0,0 +1,25 @@
+package com.example.persona_backend.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.example.persona_backend.handler.FloatArrayTypeHandler;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@TableName(value = "embedding_cache", autoResultMap = true)
+public class EmbeddingCache {
+    // SHA-256(模型名 + 输入文本) 的十六进制
+    @TableId(type = IdType.INPUT)
+    private String contentHash;
+
+    private String model;
+
+    @TableField(typeHandler = FloatArrayTypeHandler.class)
+    private float[] embedding;
+
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,23 @@
+package com.example.persona_backend.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@TableName("job_checkpoint")
+public class JobCheckpoint {
+    @TableId(type = IdType.INPUT)
+    private String jobName;
+
+    // 已全部处理完的最大主键 (之前的数据不再扫描)
+    private Long cursorId;
+
+    // RUNNING / STOPPED / COMPLETED / FAILED
+    private String status;
+
+    private LocalDateTime updatedAt;
+}
@@ -3,20 +3,18 @@ package com.example.persona_backend.entity;
 import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
-import com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler;
+import com.example.persona_backend.handler.FloatArrayTypeHandler;
 import lombok.Data;
 
-import java.util.List;
-
 @Data
 @TableName(value = "persona_vector", autoResultMap = true)
 public class PersonaVector {
     @TableId
     private Long personaId;
 
-    // 核心字段：Persona 的特征向量 (V_persona)
-    @TableField(typeHandler = JacksonTypeHandler.class)
-    private List<Double> embedding;
+    // 核心字段：Persona 的特征向量 (V_persona)，以 float32 小端序 BLOB 存储
+    @TableField(typeHandler = FloatArrayTypeHandler.class)
+    private float[] embedding;
 
     private Integer version;
-}
\ No newline at end of file
+}
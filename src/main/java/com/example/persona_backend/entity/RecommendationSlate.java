@@ -0,0 +1,20 @@
+package com.example.persona_backend.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@TableName("recommendation_slate")
+public class RecommendationSlate {
+    @TableId(type = IdType.INPUT)
+    private Long userId;
+
+    // 预计算好的 PersonaRecommendationDto 列表 (JSON 数组)
+    private String items;
+
+    private LocalDateTime computedAt;
+}
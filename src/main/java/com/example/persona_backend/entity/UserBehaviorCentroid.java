@@ -0,0 +1,26 @@
+package com.example.persona_backend.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.example.persona_backend.handler.FloatArrayTypeHandler;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@TableName(value = "user_behavior_centroid", autoResultMap = true)
+public class UserBehaviorCentroid {
+    @TableId(type = IdType.INPUT)
+    private Long userId;
+
+    // 已关注 Persona 向量之和 (running sum)，除以 followCount 即为 V_behavior
+    @TableField(typeHandler = FloatArrayTypeHandler.class)
+    private float[] vectorSum;
+
+    // 参与求和的向量个数 (没有向量的 Persona 不计入)
+    private Integer followCount;
+
+    private LocalDateTime updatedAt;
+}
@@ -3,11 +3,10 @@ package com.example.persona_backend.entity;
 import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
-import com.baomidou.mybatisplus.extension.handlers.JacksonTypeHandler;
+import com.example.persona_backend.handler.FloatArrayTypeHandler;
 import lombok.Data;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Data
 @TableName(value = "user_profile", autoResultMap = true)
@@ -20,9 +19,9 @@ public class UserProfile {
     private String tags;
 
     // 核心字段：用户的目标向量 (V_target)
-    // MyBatis Plus 会自动将 JSON 数组转为 List<Double>
-    @TableField(typeHandler = JacksonTypeHandler.class)
-    private List<Double> targetVector;
+    // 以 float32 小端序 BLOB 存储，读取时直接解码为 float[]
+    @TableField(typeHandler = FloatArrayTypeHandler.class)
+    private float[] targetVector;
 
     private Integer chatCount;
 
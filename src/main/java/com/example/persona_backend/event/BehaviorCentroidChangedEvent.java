@@ -0,0 +1,15 @@
+package com.example.persona_backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 一批用户的行为质心已失效 (关注的 Persona 向量变化)，依赖 V_behavior 的缓存需随之失效
+ */
+@Getter
+@AllArgsConstructor
+public class BehaviorCentroidChangedEvent {
+    private final List<Long> userIds;
+}
@@ -0,0 +1,15 @@
+package com.example.persona_backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 关注关系变化 (关注 / 取消关注)，在关注事务内发布
+ */
+@Getter
+@AllArgsConstructor
+public class FollowChangedEvent {
+    private final Long userId;
+    private final Long personaId;
+    private final boolean followed;
+}
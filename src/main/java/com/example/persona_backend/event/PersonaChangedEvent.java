@@ -0,0 +1,13 @@
+package com.example.persona_backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Persona 被创建或修改 (名称 / 标签 / 描述可能变化，需要刷新向量)
+ */
+@Getter
+@AllArgsConstructor
+public class PersonaChangedEvent {
+    private final Long personaId;
+}
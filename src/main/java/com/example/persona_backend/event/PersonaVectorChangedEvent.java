@@ -0,0 +1,21 @@
+package com.example.persona_backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persona 的向量已写入或更新 (首次生成 / 内容变化后重新向量化)
+ * 携带新旧向量，关注者的行为质心按差值增量修正
+ */
+@Getter
+@AllArgsConstructor
+public class PersonaVectorChangedEvent {
+    private final Long personaId;
+    // 变化前的向量，首次生成时为 null
+    private final float[] previous;
+    private final float[] current;
+    // 写入向量之前的时间，晚于此时更新过的质心可能已包含新向量
+    private final LocalDateTime changedAt;
+}
@@ -0,0 +1,13 @@
+package com.example.persona_backend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 用户画像进化完成 (V_self 已更新)
+ */
+@Getter
+@AllArgsConstructor
+public class ProfileEvolvedEvent {
+    private final Long userId;
+}
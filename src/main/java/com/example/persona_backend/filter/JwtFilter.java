@@ -24,10 +24,14 @@ public class JwtFilter implements Filter {
             "/auth/register",
             "/auth/captcha",
             "/upload/image",
-            "/error",
-            "/admin/sync-persona-vectors"  // 新增白名单路径
+            "/error"
     ));
 
+    // 只按完整路径放行，避免其子路径 (/status、/stop 等) 被前缀匹配一并放行
+    private static final Set<String> EXACT_WHITELIST = Set.of(
+            "/admin/sync-persona-vectors"  // 新增白名单路径
+    );
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
@@ -67,7 +71,7 @@ public class JwtFilter implements Filter {
     }
 
     private boolean isWhitelisted(String path) {
-        return WHITELIST.stream().anyMatch(path::startsWith);
+        return EXACT_WHITELIST.contains(path) || WHITELIST.stream().anyMatch(path::startsWith);
     }
 
     /**
@@ -0,0 +1,80 @@
+package com.example.persona_backend.handler;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedJdbcTypes;
+import org.apache.ibatis.type.MappedTypes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 向量字段 TypeHandler：float[] <-> little-endian float32 BLOB
+ * 1024 维向量约 4 KB，读取时直接解码为 float[]，不经过 JSON 和装箱。
+ * 兼容迁移期间的旧数据：若字节内容是 JSON 数组文本 ("[0.1, ...]")，按 JSON 解析。
+ */
+@MappedTypes(float[].class)
+@MappedJdbcTypes(JdbcType.BLOB)
+public class FloatArrayTypeHandler extends BaseTypeHandler<float[]> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, float[] parameter, JdbcType jdbcType) throws SQLException {
+        ps.setBytes(i, encode(parameter));
+    }
+
+    @Override
+    public float[] getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return decode(rs.getBytes(columnName));
+    }
+
+    @Override
+    public float[] getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return decode(rs.getBytes(columnIndex));
+    }
+
+    @Override
+    public float[] getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return decode(cs.getBytes(columnIndex));
+    }
+
+    public static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    public static float[] decode(byte[] bytes) {
+        if (bytes == null) return null;
+        if (isLegacyJson(bytes)) {
+            return decodeJson(bytes);
+        }
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    /**
+     * 判断是否为迁移前的 JSON 文本
+     * 二进制向量的最后一个字节是末位 float 的符号/指数位，要等于 ']' (0x5D) 需要数值达到 2^59 量级，
+     * 归一化的 Embedding 不可能出现，因此首尾字节判定足够可靠。
+     */
+    public static boolean isLegacyJson(byte[] bytes) {
+        return bytes.length >= 2 && bytes[0] == '[' && bytes[bytes.length - 1] == ']';
+    }
+
+    private static float[] decodeJson(byte[] bytes) {
+        JSONArray array = JSON.parseArray(new String(bytes, StandardCharsets.UTF_8));
+        float[] vector = new float[array.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = array.getFloatValue(i);
+        }
+        return vector;
+    }
+}
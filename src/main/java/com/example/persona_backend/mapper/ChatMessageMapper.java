@@ -7,6 +7,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
@@ -33,4 +34,12 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
             ") " +
             "ORDER BY cm.created_at DESC")
     List<ConversationDto> getConversations(@Param("userId") Long userId);
-}
\ No newline at end of file
+
+    /**
+     * 最近活跃的用户 (since 之后发过消息)，最近活跃的排在前面
+     * 推荐列表预计算任务使用，依赖 idx_created_user 索引
+     */
+    @Select("SELECT user_id FROM chat_messages WHERE created_at >= #{since} " +
+            "GROUP BY user_id ORDER BY MAX(created_at) DESC LIMIT #{limit}")
+    List<Long> selectActiveUserIds(@Param("since") LocalDateTime since, @Param("limit") int limit);
+}
@@ -0,0 +1,20 @@
+package com.example.persona_backend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.persona_backend.entity.EmbeddingCache;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface EmbeddingCacheMapper extends BaseMapper<EmbeddingCache> {
+    // 批量写入，同一文本被并发写入时保留先到的一条
+    @Insert("<script>INSERT IGNORE INTO embedding_cache (content_hash, model, embedding, created_at) VALUES " +
+            "<foreach collection='list' item='e' separator=','>" +
+            "(#{e.contentHash}, #{e.model}, " +
+            "#{e.embedding, typeHandler=com.example.persona_backend.handler.FloatArrayTypeHandler}, #{e.createdAt})" +
+            "</foreach></script>")
+    int insertIgnoreBatch(@Param("list") List<EmbeddingCache> list);
+}
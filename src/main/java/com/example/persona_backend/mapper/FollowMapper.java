@@ -16,4 +16,8 @@ public interface FollowMapper extends BaseMapper<Follow> {
     // Get the list of Persona IDs followed by the user
     @Select("SELECT target_id FROM follow WHERE user_id = #{userId}")
     List<Long> selectFollowedPersonaIds(Long userId);
+
+    // Get the list of user IDs following the Persona (idx_target)
+    @Select("SELECT user_id FROM follow WHERE target_id = #{personaId}")
+    List<Long> selectFollowerIds(Long personaId);
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.example.persona_backend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.persona_backend.entity.JobCheckpoint;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface JobCheckpointMapper extends BaseMapper<JobCheckpoint> {}
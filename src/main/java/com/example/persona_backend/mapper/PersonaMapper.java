@@ -4,8 +4,32 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
 import com.example.persona_backend.entity.Persona;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Mapper
 public interface PersonaMapper extends BaseMapper<Persona> {
 
+    // 按主键游标分页查找还没有向量的 Persona (LEFT JOIN 反连接，一次查询完成过滤)
+    @Select("SELECT p.id FROM persona p LEFT JOIN persona_vector v ON v.persona_id = p.id " +
+            "WHERE p.id > #{afterId} AND v.persona_id IS NULL ORDER BY p.id LIMIT #{limit}")
+    List<Long> selectIdsWithoutVector(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    // 公开 Persona 热度排行：关注数 + 近期聊天消息数 + 近期动态点赞数 加权求和，一次查询完成聚合
+    @Select("SELECT s.persona_id FROM (" +
+            "SELECT target_id AS persona_id, COUNT(*) * #{followWeight} AS score FROM follow GROUP BY target_id " +
+            "UNION ALL SELECT persona_id, COUNT(*) * #{chatWeight} FROM chat_messages " +
+            "WHERE created_at >= #{since} GROUP BY persona_id " +
+            "UNION ALL SELECT persona_id, SUM(likes) * #{likeWeight} FROM posts " +
+            "WHERE created_at >= #{since} GROUP BY persona_id" +
+            ") s JOIN persona p ON p.id = s.persona_id AND p.is_public = 1 " +
+            "GROUP BY s.persona_id ORDER BY SUM(s.score) DESC, s.persona_id LIMIT #{limit}")
+    List<Long> selectPopularIds(@Param("since") LocalDateTime since,
+                                @Param("followWeight") double followWeight,
+                                @Param("chatWeight") double chatWeight,
+                                @Param("likeWeight") double likeWeight,
+                                @Param("limit") int limit);
 }
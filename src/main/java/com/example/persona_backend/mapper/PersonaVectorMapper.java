@@ -2,7 +2,37 @@ package com.example.persona_backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.persona_backend.entity.PersonaVector;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
 
 @Mapper
-public interface PersonaVectorMapper extends BaseMapper<PersonaVector> {}
\ No newline at end of file
+public interface PersonaVectorMapper extends BaseMapper<PersonaVector> {
+    // 只查 id 和版本号 (不含向量)，用于快照加载后的增量回放
+    @Select("SELECT persona_id, version FROM persona_vector")
+    List<PersonaVector> selectVersions();
+
+    // 按主键游标分页查找仍为 JSON 文本格式的旧向量 (迁移用)
+    @Select("SELECT persona_id FROM persona_vector WHERE persona_id > #{afterId} " +
+            "AND LEFT(embedding, 1) = '[' AND RIGHT(embedding, 1) = ']' ORDER BY persona_id LIMIT #{limit}")
+    List<Long> selectLegacyJsonIds(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    // 仅当该行仍是 JSON 文本时才重写 (迁移用)：读取之后被刷新为二进制的新向量不会被旧值覆盖
+    @Update("UPDATE persona_vector SET embedding = " +
+            "#{embedding, typeHandler=com.example.persona_backend.handler.FloatArrayTypeHandler} " +
+            "WHERE persona_id = #{personaId} AND LEFT(embedding, 1) = '[' AND RIGHT(embedding, 1) = ']'")
+    int updateEmbedding(@Param("personaId") Long personaId, @Param("embedding") float[] embedding);
+
+    // 写入或覆盖向量，已存在时版本号 +1 (启动时据此增量回放快照)
+    @Insert("INSERT INTO persona_vector (persona_id, embedding, version) VALUES (#{personaId}, " +
+            "#{embedding, typeHandler=com.example.persona_backend.handler.FloatArrayTypeHandler}, 1) " +
+            "ON DUPLICATE KEY UPDATE embedding = VALUES(embedding), version = version + 1")
+    int upsertEmbedding(@Param("personaId") Long personaId, @Param("embedding") float[] embedding);
+
+    @Select("SELECT version FROM persona_vector WHERE persona_id = #{personaId}")
+    Integer selectVersion(@Param("personaId") Long personaId);
+}
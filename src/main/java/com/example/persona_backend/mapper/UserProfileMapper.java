@@ -2,5 +2,36 @@ package com.example.persona_backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.persona_backend.entity.UserProfile;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
-public interface UserProfileMapper extends BaseMapper<UserProfile> {}
+import java.util.List;
+
+public interface UserProfileMapper extends BaseMapper<UserProfile> {
+    // 按主键游标分页查找仍为 JSON 文本格式的旧目标向量 (迁移用)
+    @Select("SELECT user_id FROM user_profile WHERE user_id > #{afterId} " +
+            "AND LEFT(target_vector, 1) = '[' AND RIGHT(target_vector, 1) = ']' ORDER BY user_id LIMIT #{limit}")
+    List<Long> selectLegacyJsonIds(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    // 只更新向量列，不触碰 chat_count 等并发写入的字段 (迁移用)
+    // 仅当仍是 JSON 文本时才重写，避免覆盖画像进化刚写入的新向量；格式转换不算画像更新，显式保留 last_updated
+    @Update("UPDATE user_profile SET target_vector = " +
+            "#{targetVector, typeHandler=com.example.persona_backend.handler.FloatArrayTypeHandler}, " +
+            "last_updated = last_updated " +
+            "WHERE user_id = #{userId} AND LEFT(target_vector, 1) = '[' AND RIGHT(target_vector, 1) = ']'")
+    int updateTargetVector(@Param("userId") Long userId, @Param("targetVector") float[] targetVector);
+
+    // 批量累加聊天计数：chatCount 字段存放的是增量；画像不存在时直接创建 (懒加载)
+    // 显式保留 last_updated，避免 ON UPDATE CURRENT_TIMESTAMP 把计数变化当成画像更新
+    @Insert("<script>INSERT INTO user_profile (user_id, chat_count) VALUES " +
+            "<foreach collection='list' item='p' separator=','>(#{p.userId}, #{p.chatCount})</foreach> " +
+            "ON DUPLICATE KEY UPDATE chat_count = chat_count + VALUES(chat_count), last_updated = last_updated</script>")
+    int incrementChatCounts(@Param("list") List<UserProfile> deltas);
+
+    // 批量读取累计聊天计数 (判断是否跨过画像进化阈值)
+    @Select("<script>SELECT user_id, chat_count FROM user_profile WHERE user_id IN " +
+            "<foreach collection='userIds' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<UserProfile> selectChatCounts(@Param("userIds") List<Long> userIds);
+}
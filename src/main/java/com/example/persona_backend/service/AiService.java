@@ -5,8 +5,13 @@ import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 
 import com.example.persona_backend.utils.AliyunOSSOperator;
+import com.example.persona_backend.utils.BulkheadRegistry;
+import com.example.persona_backend.utils.CircuitBreaker;
+import com.example.persona_backend.utils.CircuitBreakerRegistry;
+import com.example.persona_backend.utils.HttpClientRegistry;
 import com.example.persona_backend.utils.ZhipuAiUtils;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
 import okhttp3.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -33,11 +38,26 @@ public class AiService {
     @Autowired
     private AliyunOSSOperator aliyunOSSOperator;
 
-    private final OkHttpClient client = new OkHttpClient.Builder()
-            .connectTimeout(120, TimeUnit.SECONDS)
-            .readTimeout(120, TimeUnit.SECONDS)
-            .writeTimeout(120, TimeUnit.SECONDS)
-            .build();
+    @Autowired
+    private HttpClientRegistry httpClientRegistry;
+
+    private OkHttpClient client;
+    private OkHttpClient mediaClient;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @PostConstruct
+    public void init() {
+        client = httpClientRegistry.client(HttpClientRegistry.MOONSHOT).newBuilder()
+                .readTimeout(120, TimeUnit.SECONDS)
+                .writeTimeout(120, TimeUnit.SECONDS)
+                .build();
+        mediaClient = httpClientRegistry.client(HttpClientRegistry.MEDIA);
+    }
 
     // ================== 新增方法：用户画像分析 ==================
     /**
@@ -62,6 +82,24 @@ public class AiService {
         return JSON.parseObject(jsonStr);
     }
 
+    /**
+     * 把较早的聊天记录压缩进滚动摘要，供聊天上下文超出 token 预算时代替原文
+     * @param previousSummary 已有的摘要，可为 null
+     * @param dialogue 需要并入摘要的对话 (按时间正序，每行 "role: content")
+     * @param maxChars 摘要的最大字数
+     */
+    public String summarizeConversation(String previousSummary, String dialogue, int maxChars) {
+        String systemPrompt = "你是对话记录员。请把【已有摘要】和【新增对话】合并成一段新的对话摘要，供角色扮演时回忆前情。\n" +
+                "要求：\n" +
+                "1. 保留用户透露的个人信息、约定、情绪变化和未完成的话题。\n" +
+                "2. 用第三人称陈述，不要编造，不要评价。\n" +
+                "3. 不超过" + maxChars + "字，直接输出摘要正文。";
+
+        String userContent = "【已有摘要】\n" + (previousSummary != null ? previousSummary : "无") +
+                "\n\n【新增对话】\n" + dialogue;
+        return callMoonshot(systemPrompt, userContent, false).trim();
+    }
+
     // ================== 原有方法保持不变 ==================
 
     public String generatePersonaDescription(String name) {
@@ -103,7 +141,7 @@ public class AiService {
             String tempUrl = zhipuAiUtils.generateImage(finalPrompt);
             // 下载图片并转存 OSS
             Request request = new Request.Builder().url(tempUrl).build();
-            try (Response response = client.newCall(request).execute()) {
+            try (Response response = mediaClient.newCall(request).execute()) {
                 if (!response.isSuccessful() || response.body() == null) {
                     throw new RuntimeException("图片下载失败: " + response.code());
                 }
@@ -141,7 +179,13 @@ public class AiService {
                 "\n" +
                 "如果不确定如何润色，就保持原文风格但增加一些 Emoji。";
 
-        return callMoonshot(systemPrompt, "请润色这段话：\n" + originalContent, false);
+        try {
+            return callMoonshot(systemPrompt, "请润色这段话：\n" + originalContent, false);
+        } catch (RuntimeException e) {
+            // 熔断期间原样返回，用户可以直接发布
+            if (e.getCause() instanceof CircuitBreaker.OpenException) return originalContent;
+            throw e;
+        }
     }
 
     private String callMoonshot(String systemPrompt, String userContent, boolean jsonMode) {
@@ -160,16 +204,24 @@ public class AiService {
                 .post(RequestBody.create(requestBody.toString(), MediaType.parse("application/json")))
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Kimi API HTTP " + response.code());
-            }
-            String jsonStr = response.body().string();
-            return JSON.parseObject(jsonStr)
-                    .getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content");
+        try {
+            return circuitBreakerRegistry.get(CircuitBreakerRegistry.MOONSHOT).call(() ->
+                    bulkheadRegistry.get(BulkheadRegistry.MOONSHOT_TASK).call(() -> {
+                        try (Response response = client.newCall(request).execute()) {
+                            if (!response.isSuccessful()) {
+                                throw new IOException("Kimi API HTTP " + response.code());
+                            }
+                            String jsonStr = response.body().string();
+                            return JSON.parseObject(jsonStr)
+                                    .getJSONArray("choices")
+                                    .getJSONObject(0)
+                                    .getJSONObject("message")
+                                    .getString("content");
+                        }
+                    }));
+        } catch (CircuitBreaker.OpenException e) {
+            log.warn("⚠️ [Kimi] {}", e.getMessage());
+            throw new RuntimeException("AI 服务暂时不可用: " + e.getMessage(), e);
         } catch (Exception e) {
             log.error("Kimi API 调用失败", e);
             throw new RuntimeException("AI 服务暂时不可用: " + e.getMessage());
@@ -0,0 +1,234 @@
+package com.example.persona_backend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.persona_backend.entity.PersonaVector;
+import com.example.persona_backend.entity.UserBehaviorCentroid;
+import com.example.persona_backend.event.BehaviorCentroidChangedEvent;
+import com.example.persona_backend.event.PersonaVectorChangedEvent;
+import com.example.persona_backend.mapper.FollowMapper;
+import com.example.persona_backend.mapper.PersonaVectorMapper;
+import com.example.persona_backend.mapper.UserBehaviorCentroidMapper;
+import com.example.persona_backend.utils.VectorUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用户行为质心 (V_behavior) 的增量维护
+ * 每个用户持久化一份 "已关注 Persona 向量之和 + 个数"，关注和 Persona 向量变化时 O(dim) 增量更新、取关时按关注列表重建，
+ * 推荐时一次主键查询即可得到 V_behavior，不再批量加载所有已关注的向量。
+ */
+@Slf4j
+@Service
+public class BehaviorCentroidService {
+
+    // 向量变化时每个事务修正的关注者数，控制锁定行数和单次内存占用
+    private static final int APPLY_CHUNK = 500;
+
+    @Autowired
+    private UserBehaviorCentroidMapper centroidMapper;
+    @Autowired
+    private PersonaVectorMapper personaVectorMapper;
+    @Autowired
+    private FollowMapper followMapper;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 获取用户的行为质心 (已关注 Persona 向量的平均值)
+     * @return 没有关注任何带向量的 Persona 时返回 null
+     */
+    public float[] getBehaviorVector(Long userId) {
+        UserBehaviorCentroid centroid = centroidMapper.selectById(userId);
+        if (centroid == null) {
+            // 老用户还没有质心记录，按当前关注列表构建一次
+            centroid = rebuild(userId);
+        }
+
+        int count = centroid.getFollowCount() != null ? centroid.getFollowCount() : 0;
+        float[] sum = centroid.getVectorSum();
+        if (count <= 0 || sum == null || sum.length == 0) return null;
+
+        float[] mean = sum.clone();
+        VectorUtils.scale(mean, 1.0f / count);
+        return mean;
+    }
+
+    /**
+     * 关注关系变化后更新质心，需在写入 follow 表的同一事务内调用
+     * 质心行使用 SELECT ... FOR UPDATE 加锁，同一用户的并发关注操作串行执行。
+     * 关注时增量累加当前向量；取关时按关注列表重建，因为关注时 Persona 可能还没有向量、
+     * 或之后向量已被刷新，直接减去当前向量会让累加和永久偏离。
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void onFollowChanged(Long userId, Long personaId, boolean followed) {
+        float[] embedding = null;
+        if (followed) {
+            PersonaVector pv = personaVectorMapper.selectById(personaId);
+            embedding = pv != null ? pv.getEmbedding() : null;
+            // 没有向量的 Persona 不参与质心计算，生成向量后由 onPersonaVectorChanged 补上
+            if (embedding == null || embedding.length == 0) return;
+        }
+
+        UserBehaviorCentroid centroid = centroidMapper.selectOne(new LambdaQueryWrapper<UserBehaviorCentroid>()
+                .eq(UserBehaviorCentroid::getUserId, userId)
+                .last("FOR UPDATE"));
+        if (centroid == null) {
+            // 关注关系已写入，直接按最新列表构建
+            rebuild(userId);
+            return;
+        }
+        if (!followed) {
+            recompute(centroid);
+            return;
+        }
+
+        float[] sum = centroid.getVectorSum();
+        int count = centroid.getFollowCount() != null ? centroid.getFollowCount() : 0;
+        if (sum != null && sum.length != 0 && sum.length != embedding.length) {
+            log.warn("⚠️ [Centroid] 向量维度不一致, userId={}, 重新构建", userId);
+            recompute(centroid);
+            return;
+        }
+
+        if (sum == null || sum.length == 0) sum = new float[embedding.length];
+        VectorUtils.addTo(sum, embedding);
+        count++;
+
+        centroid.setVectorSum(sum);
+        centroid.setFollowCount(count);
+        centroid.setUpdatedAt(LocalDateTime.now());
+        centroidMapper.updateById(centroid);
+    }
+
+    /**
+     * Persona 向量首次生成或被刷新后，关注者质心里的旧向量 (或缺失的向量) 已不准确：
+     * 按 target_id 索引取出关注者，每 500 人一个事务，锁定已有的质心行后直接加上 (新向量 - 旧向量)，
+     * 首次生成则累加新向量并计数 +1，不再删除后逐个按关注列表懒重建。
+     * 写入向量之后才更新过的行可能已包含新向量，和数据异常的行一样按关注列表重算。
+     * 每批处理完即通知依赖 V_behavior 的缓存失效。
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonaVectorChanged(PersonaVectorChangedEvent event) {
+        float[] current = event.getCurrent();
+        if (current == null || current.length == 0) return;
+        List<Long> followerIds = followMapper.selectFollowerIds(event.getPersonaId());
+        if (followerIds == null || followerIds.isEmpty()) return;
+
+        int recomputed = 0;
+        for (int from = 0; from < followerIds.size(); from += APPLY_CHUNK) {
+            List<Long> chunk = followerIds.subList(from, Math.min(from + APPLY_CHUNK, followerIds.size()));
+            Integer n = transactionTemplate.execute(status -> applyDelta(chunk, event));
+            if (n != null) recomputed += n;
+            eventPublisher.publishEvent(new BehaviorCentroidChangedEvent(new ArrayList<>(chunk)));
+        }
+        log.info("🔄 [Centroid] personaId={} 向量已变化, 修正 {} 个关注者的质心 (重算 {} 个)",
+                event.getPersonaId(), followerIds.size(), recomputed);
+    }
+
+    /**
+     * 对一批关注者的质心应用向量差值，需在事务内调用
+     * @return 按关注列表重算的行数
+     */
+    private int applyDelta(List<Long> userIds, PersonaVectorChangedEvent event) {
+        List<UserBehaviorCentroid> centroids = centroidMapper.selectList(new LambdaQueryWrapper<UserBehaviorCentroid>()
+                .in(UserBehaviorCentroid::getUserId, userIds)
+                .last("FOR UPDATE"));
+        // updated_at 只精确到秒，同一秒内更新的行无法判断先后，一律重算
+        LocalDateTime changedAt = event.getChangedAt().truncatedTo(ChronoUnit.SECONDS);
+        int recomputed = 0;
+        // 还没有质心行的用户下次读取时按最新向量构建，无需处理
+        for (UserBehaviorCentroid centroid : centroids) {
+            if (addDelta(centroid, event.getPrevious(), event.getCurrent(), changedAt)) {
+                centroid.setUpdatedAt(LocalDateTime.now());
+            } else {
+                fill(centroid);
+                recomputed++;
+            }
+            centroidMapper.updateById(centroid);
+        }
+        return recomputed;
+    }
+
+    // 质心基于旧向量计算且维度一致时原地修正，否则返回 false 交由重算
+    private boolean addDelta(UserBehaviorCentroid centroid, float[] previous, float[] current, LocalDateTime changedAt) {
+        LocalDateTime updatedAt = centroid.getUpdatedAt();
+        if (updatedAt == null || !updatedAt.isBefore(changedAt)) return false;
+
+        float[] sum = centroid.getVectorSum();
+        int count = centroid.getFollowCount() != null ? centroid.getFollowCount() : 0;
+        if (previous == null) {
+            // 首次生成：关注时没有向量，未计入质心
+            if (sum == null || sum.length == 0) {
+                if (count != 0) return false;
+                sum = new float[current.length];
+            }
+            if (sum.length != current.length) return false;
+            VectorUtils.addTo(sum, current);
+            count++;
+        } else {
+            if (count <= 0 || sum == null || sum.length != current.length || previous.length != current.length) return false;
+            VectorUtils.subtractFrom(sum, previous);
+            VectorUtils.addTo(sum, current);
+        }
+        centroid.setVectorSum(sum);
+        centroid.setFollowCount(count);
+        return true;
+    }
+
+    /**
+     * 按当前关注列表全量重建质心 (首次访问或数据异常时使用)
+     */
+    public UserBehaviorCentroid rebuild(Long userId) {
+        UserBehaviorCentroid centroid = new UserBehaviorCentroid();
+        centroid.setUserId(userId);
+        fill(centroid);
+        try {
+            centroidMapper.insert(centroid);
+        } catch (DuplicateKeyException e) {
+            // 并发构建时另一方已插入，以本次基于最新关注列表的结果为准
+            centroidMapper.updateById(centroid);
+        }
+        return centroid;
+    }
+
+    // 已加锁的质心行按关注列表重算后写回
+    private void recompute(UserBehaviorCentroid centroid) {
+        fill(centroid);
+        centroidMapper.updateById(centroid);
+    }
+
+    private void fill(UserBehaviorCentroid centroid) {
+        List<Long> followedIds = followMapper.selectFollowedPersonaIds(centroid.getUserId());
+        List<PersonaVector> vectors = (followedIds == null || followedIds.isEmpty())
+                ? List.of()
+                : personaVectorMapper.selectBatchIds(followedIds);
+
+        float[] sum = new float[0];
+        int count = 0;
+        for (PersonaVector pv : vectors) {
+            float[] embedding = pv.getEmbedding();
+            if (embedding == null || embedding.length == 0) continue;
+            if (count == 0) sum = new float[embedding.length];
+            if (embedding.length != sum.length) continue;
+            VectorUtils.addTo(sum, embedding);
+            count++;
+        }
+
+        centroid.setVectorSum(sum);
+        centroid.setFollowCount(count);
+        centroid.setUpdatedAt(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.persona_backend.service;
+
+import com.example.persona_backend.config.AsyncConfig;
+import com.example.persona_backend.entity.ChatMessage;
+import com.example.persona_backend.utils.TokenEstimator;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 按 token 预算组装聊天上下文
+ * System Prompt 与本轮用户消息必定保留，其余预算从最近的历史消息往前填充，放不下的较早消息不再发送；
+ * 被挤出的消息在后台并入该会话的滚动摘要，之后以一条 system 消息代替原文。
+ * 估算总量 (含回复预留) 放得进小窗口模型时使用更快更便宜的 8k 模型，否则使用 32k 模型。
+ * 注意：摘要只覆盖因预算被挤出的消息，超出会话缓存 (最近 20 条) 范围的消息与以前一样不再进入上下文。
+ */
+@Slf4j
+@Component
+public class ChatContextBuilder {
+
+    private static final String SUMMARY_HEADER = "【更早的对话摘要】\n";
+    // 生成摘要时单条消息最多截取的字数
+    private static final int SUMMARY_MESSAGE_CHARS = 300;
+
+    @Autowired
+    private AiService aiService;
+
+    @Autowired
+    @Qualifier(AsyncConfig.CHAT_SUMMARY_EXECUTOR)
+    private Executor summaryExecutor;
+
+    // 发送给模型的上下文 (不含回复) 的 token 上限
+    @Value("${chat.context.budget-tokens:6000}")
+    private int budgetTokens = 6000;
+
+    // 为模型回复预留的 token 数
+    @Value("${chat.context.reply-reserve-tokens:1024}")
+    private int replyReserveTokens = 1024;
+
+    @Value("${chat.context.small-model:moonshot-v1-8k}")
+    private String smallModel = "moonshot-v1-8k";
+
+    @Value("${chat.context.small-model-window:8192}")
+    private int smallModelWindow = 8192;
+
+    @Value("${chat.context.large-model:moonshot-v1-32k}")
+    private String largeModel = "moonshot-v1-32k";
+
+    @Value("${chat.context.summary.enabled:true}")
+    private boolean summaryEnabled = true;
+
+    // 攒够这么多条被挤出且未摘要的消息才生成一次摘要
+    @Value("${chat.context.summary.min-messages:6}")
+    private int summaryMinMessages = 6;
+
+    @Value("${chat.context.summary.max-chars:300}")
+    private int summaryMaxChars = 300;
+
+    @Value("${chat.context.summary.max-sessions:10000}")
+    private int maxSummaries = 10000;
+
+    // 会话 (userId:personaId) -> 滚动摘要，按访问顺序淘汰
+    private final LinkedHashMap<String, Summary> summaries = new LinkedHashMap<>(256, 0.75f, true);
+    // 正在生成摘要的会话，同一会话同时只有一个摘要任务
+    private final Set<String> summarizing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong smallModelBuilds = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLong summariesBuilt = new AtomicLong();
+    private final AtomicLong summaryFailures = new AtomicLong();
+    private final AtomicLong summaryRejected = new AtomicLong();
+
+    /**
+     * @param history 会话最近的消息 (按时间正序，不含本轮用户消息)
+     * @param userContent 本轮用户消息 (可能已追加系统指令)
+     */
+    public PromptContext build(Long userId, Long personaId, String systemPrompt, List<ChatMessage> history, String userContent) {
+        String key = userId + ":" + personaId;
+        Summary summary = summaryEnabled ? summary(key) : null;
+        String summaryContent = summary != null ? SUMMARY_HEADER + summary.text : null;
+
+        int used = TokenEstimator.estimateMessage(systemPrompt) + TokenEstimator.estimateMessage(userContent);
+        if (summaryContent != null) used += TokenEstimator.estimateMessage(summaryContent);
+
+        // 从最近一条往前填充，直到放不下
+        int first = history.size();
+        while (first > 0) {
+            int tokens = TokenEstimator.estimateMessage(render(history.get(first - 1)));
+            if (used + tokens > budgetTokens) break;
+            used += tokens;
+            first--;
+        }
+
+        List<Map<String, String>> messages = new ArrayList<>(history.size() - first + 3);
+        messages.add(Map.of("role", "system", "content", systemPrompt));
+        if (summaryContent != null) messages.add(Map.of("role", "system", "content", summaryContent));
+        for (ChatMessage msg : history.subList(first, history.size())) {
+            messages.add(Map.of("role", msg.getRole(), "content", render(msg)));
+        }
+        messages.add(Map.of("role", "user", "content", userContent));
+
+        boolean small = used + replyReserveTokens <= smallModelWindow;
+        builds.incrementAndGet();
+        promptTokens.addAndGet(used);
+        if (small) smallModelBuilds.incrementAndGet();
+        if (first > 0) {
+            droppedMessages.addAndGet(first);
+            if (summaryEnabled) maybeSummarize(key, summary, history.subList(0, first));
+        }
+        return new PromptContext(messages, small ? smallModel : largeModel, used);
+    }
+
+    /**
+     * 被挤出的消息中还有足够多未进入摘要的，提交后台任务合并进滚动摘要
+     */
+    private void maybeSummarize(String key, Summary summary, List<ChatMessage> dropped) {
+        long coveredId = summary != null ? summary.coveredUntilId : 0;
+        List<ChatMessage> fresh = dropped.stream()
+                .filter(m -> m.getId() != null && m.getId() > coveredId)
+                .collect(Collectors.toList());
+        if (fresh.size() < summaryMinMessages || !summarizing.add(key)) return;
+
+        String previous = summary != null ? summary.text : null;
+        String dialogue = fresh.stream()
+                .map(m -> m.getRole() + ": " + truncate(render(m)))
+                .collect(Collectors.joining("\n"));
+        long newCoveredId = fresh.get(fresh.size() - 1).getId();
+        try {
+            summaryExecutor.execute(() -> {
+                try {
+                    String text = aiService.summarizeConversation(previous, dialogue, summaryMaxChars);
+                    if (StringUtils.hasText(text)) {
+                        store(key, new Summary(text, newCoveredId));
+                        summariesBuilt.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    // 摘要失败不影响聊天，下一轮再试
+                    summaryFailures.incrementAndGet();
+                    log.warn("⚠️ [ChatContext] 会话 {} 摘要生成失败: {}", key, e.getMessage());
+                } finally {
+                    summarizing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            summarizing.remove(key);
+            summaryRejected.incrementAndGet();
+        }
+    }
+
+    private synchronized Summary summary(String key) {
+        return summaries.get(key);
+    }
+
+    private synchronized void store(String key, Summary summary) {
+        Summary existing = summaries.get(key);
+        if (existing != null && existing.coveredUntilId >= summary.coveredUntilId) return;
+        summaries.put(key, summary);
+        Iterator<Summary> it = summaries.values().iterator();
+        while (summaries.size() > maxSummaries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static String render(ChatMessage msg) {
+        String content = msg.getContent() != null ? msg.getContent() : "";
+        if (Integer.valueOf(1).equals(msg.getMsgType())) content = "[发送了一张图片: " + content + "]";
+        return content;
+    }
+
+    private static String truncate(String text) {
+        return text.length() <= SUMMARY_MESSAGE_CHARS ? text : text.substring(0, SUMMARY_MESSAGE_CHARS) + "…";
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long n = builds.get();
+        stats.put("builds", n);
+        stats.put("smallModelRate", n == 0 ? 0.0 : (double) smallModelBuilds.get() / n);
+        stats.put("avgPromptTokens", n == 0 ? 0.0 : (double) promptTokens.get() / n);
+        stats.put("droppedMessages", droppedMessages.get());
+        synchronized (this) {
+            stats.put("summaries", summaries.size());
+        }
+        stats.put("summariesBuilt", summariesBuilt.get());
+        stats.put("summaryFailures", summaryFailures.get());
+        stats.put("summaryRejected", summaryRejected.get());
+        return stats;
+    }
+
+    /**
+     * 组装好的上下文：消息列表 + 选用的模型 + 估算的 token 数
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PromptContext {
+        private final List<Map<String, String>> messages;
+        private final String model;
+        private final int estimatedTokens;
+    }
+
+    private static final class Summary {
+        final String text;
+        // 摘要已覆盖到的最后一条消息 id
+        final long coveredUntilId;
+
+        Summary(String text, long coveredUntilId) {
+            this.text = text;
+            this.coveredUntilId = coveredUntilId;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.persona_backend.service;
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.persona_backend.config.AsyncConfig;
 import com.example.persona_backend.dto.ConversationDto;
 import com.example.persona_backend.entity.ChatMessage;
 import com.example.persona_backend.entity.Persona;
@@ -10,21 +11,31 @@ import com.example.persona_backend.entity.UserProfile;
 import com.example.persona_backend.mapper.ChatMessageMapper;
 import com.example.persona_backend.mapper.PersonaMapper;
 import com.example.persona_backend.mapper.UserProfileMapper;
+import com.example.persona_backend.utils.AdaptiveBulkhead;
 import com.example.persona_backend.utils.AliyunOSSOperator;
+import com.example.persona_backend.utils.BulkheadRegistry;
+import com.example.persona_backend.utils.CircuitBreaker;
+import com.example.persona_backend.utils.CircuitBreakerRegistry;
+import com.example.persona_backend.utils.HttpClientRegistry;
 import com.example.persona_backend.utils.VolcEngineUtils;
 import com.example.persona_backend.utils.ZhipuAiUtils;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import okio.BufferedSource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -58,11 +69,42 @@ public class ChatService {
     @Autowired
     private UserProfileMapper userProfileMapper;
 
-    private final OkHttpClient client = new OkHttpClient.Builder()
-            .connectTimeout(120, TimeUnit.SECONDS)
-            .readTimeout(120, TimeUnit.SECONDS)
-            .writeTimeout(120, TimeUnit.SECONDS)
-            .build();
+    @Autowired
+    private ChatSessionCache chatSessionCache;
+
+    @Autowired
+    private ChatContextBuilder chatContextBuilder;
+
+    @Autowired
+    private HttpClientRegistry httpClientRegistry;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    @Qualifier(AsyncConfig.CHAT_REPLY_EXECUTOR)
+    private Executor chatReplyExecutor;
+
+    // Moonshot 并发名额已满时直接回复，不占用请求线程等待上游
+    private static final String BUSY_REPLY = "(现在找我聊天的人有点多，稍等一下再来吧)";
+    // Moonshot 熔断期间以角色口吻回复，不再等待上游超时
+    private static final String OFFLINE_REPLY = "(%s 暂时走开了一会儿，过几分钟再来找 TA 聊天吧)";
+
+    // Moonshot 客户端 (同步与流式调用共用)，图片下载走单独的连接池
+    private OkHttpClient client;
+    private OkHttpClient mediaClient;
+
+    @PostConstruct
+    public void init() {
+        client = httpClientRegistry.client(HttpClientRegistry.MOONSHOT).newBuilder()
+                .readTimeout(120, TimeUnit.SECONDS)
+                .writeTimeout(120, TimeUnit.SECONDS)
+                .build();
+        mediaClient = httpClientRegistry.client(HttpClientRegistry.MEDIA);
+    }
 
     // ================= 1. 文本/生图聊天 =================
     public ChatMessage chat(Long userId, Long personaId, String userContent, boolean isImageGen) {
@@ -80,6 +122,222 @@ public class ChatService {
         return response;
     }
 
+    // ================= 1.1 流式文本聊天 (SSE) =================
+
+    /**
+     * 流式聊天：调用 Kimi 的 stream 模式，token 到达后立即通过 SSE 推送 (事件 delta)，
+     * 收到 [DONE] 后保存完整的 AI 消息并推送 (事件 done)。上游读取在 OkHttp 的回调线程中进行，不占用请求线程；
+     * 回复的后处理 (生图、转存、写库) 交给 chatReplyExecutor，回调线程立即归还。
+     * 客户端断开、超时或上游中途出错时，未完成的回复不保存 (出错时 done 事件带一条不入库的提示)。
+     */
+    public void streamChat(Long userId, Long personaId, String userContent, boolean isImageGen, SseEmitter emitter) {
+        Persona persona = validatePersona(personaId);
+
+        saveMessage(userId, personaId, "user", userContent, 0, null, 0);
+
+        // 上下文与请求在获取熔断 / 隔离舱名额之前构建，读库等出错时不会占住名额
+        ChatContextBuilder.PromptContext context = buildPromptContext(userId, persona, userContent, isImageGen);
+        Request request = buildKimiRequest(context, true);
+
+        CircuitBreaker.Permission permission;
+        try {
+            permission = circuitBreakerRegistry.get(CircuitBreakerRegistry.MOONSHOT).acquirePermission();
+        } catch (CircuitBreaker.OpenException e) {
+            log.warn("⚠️ [ChatStream] {}", e.getMessage());
+            replyImmediately(userId, persona, emitter, String.format(OFFLINE_REPLY, persona.getName()));
+            return;
+        }
+        AdaptiveBulkhead.Permit permit;
+        try {
+            permit = bulkheadRegistry.get(BulkheadRegistry.MOONSHOT_CHAT).acquire();
+        } catch (AdaptiveBulkhead.RejectedException e) {
+            permission.release();
+            log.warn("⚠️ [ChatStream] {}", e.getMessage());
+            replyImmediately(userId, persona, emitter, BUSY_REPLY);
+            return;
+        }
+
+        try {
+            Call call = client.newCall(request);
+            KimiStreamCallback callback = new KimiStreamCallback(userId, persona, emitter, call, permission, permit);
+
+            emitter.onTimeout(callback::abort);
+            emitter.onError(e -> callback.abort());
+            call.enqueue(callback);
+        } catch (RuntimeException e) {
+            // 请求未发出 (如 Dispatcher 拒绝)，归还名额且不计入上游结果
+            permit.release();
+            permission.release();
+            log.error("❌ [ChatStream] 请求提交失败", e);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private final class KimiStreamCallback implements Callback {
+
+        private final Long userId;
+        private final Persona persona;
+        private final SseEmitter emitter;
+        private final StringBuilder reply = new StringBuilder();
+        // 已推送给客户端的字符数
+        private int sent;
+        private final Call call;
+        private final CircuitBreaker.Permission permission;
+        private final AdaptiveBulkhead.Permit permit;
+        private volatile boolean aborted;
+
+        KimiStreamCallback(Long userId, Persona persona, SseEmitter emitter, Call call,
+                           CircuitBreaker.Permission permission, AdaptiveBulkhead.Permit permit) {
+            this.userId = userId;
+            this.persona = persona;
+            this.emitter = emitter;
+            this.call = call;
+            this.permission = permission;
+            this.permit = permit;
+        }
+
+        void abort() {
+            aborted = true;
+            call.cancel();
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            finish(e);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            try (ResponseBody body = response.body()) {
+                if (!response.isSuccessful() || body == null) throw new IOException("API Error: " + response.code());
+                BufferedSource source = body.source();
+                String line;
+                boolean done = false;
+                while (!aborted && (line = source.readUtf8Line()) != null) {
+                    if (!line.startsWith("data:")) continue;
+                    String data = line.substring(5).trim();
+                    if ("[DONE]".equals(data)) {
+                        done = true;
+                        break;
+                    }
+
+                    JSONObject choice = JSON.parseObject(data).getJSONArray("choices").getJSONObject(0);
+                    JSONObject delta = choice.getJSONObject("delta");
+                    String content = delta != null ? delta.getString("content") : null;
+                    if (content == null || content.isEmpty()) continue;
+
+                    reply.append(content);
+                    // 回复可能是生图 JSON 指令，确认不是指令之前先不推送
+                    if (!mayBeCommand()) flush();
+                }
+                // 连接在 [DONE] 之前结束，回复不完整
+                if (!aborted && !done) throw new IOException("stream ended before [DONE]");
+            } catch (Exception e) {
+                finish(e);
+                return;
+            }
+            finish(null);
+        }
+
+        private boolean mayBeCommand() {
+            for (int i = 0; i < reply.length(); i++) {
+                char c = reply.charAt(i);
+                if (!Character.isWhitespace(c)) return c == '{' || c == '`';
+            }
+            return true;
+        }
+
+        private void flush() throws IOException {
+            if (sent == reply.length()) return;
+            String chunk = reply.substring(sent);
+            sent = reply.length();
+            send("delta", Map.of("content", chunk));
+        }
+
+        private void finish(Exception error) {
+            // 上游读取已结束，先归还并发名额；超时与 HTTP 错误视为上游过载
+            if (aborted || (error != null && !(error instanceof IOException))) {
+                permit.release();
+                permission.release();
+            } else if (error != null) {
+                permit.dropped();
+                permission.failure();
+            } else {
+                permit.success();
+                permission.success();
+            }
+
+            if (aborted) {
+                log.info("✂️ [ChatStream] 客户端已断开，丢弃未完成的回复 userId={}", userId);
+                return;
+            }
+            if (error != null) {
+                // 中途出错的半截回复不入库，避免污染之后的上下文；已推送的部分保留在客户端
+                log.error("AI Stream Error", error);
+                String notice = reply.length() > 0 && !mayBeCommand() ? reply + "……(回复中断)" : "(AI 思考超时)";
+                try {
+                    send("done", fallbackMessage(userId, persona, notice));
+                    emitter.complete();
+                } catch (Exception e) {
+                    emitter.completeWithError(e);
+                }
+                userProfileService.checkAndEvolveProfile(userId);
+                return;
+            }
+            try {
+                chatReplyExecutor.execute(this::complete);
+            } catch (RejectedExecutionException e) {
+                // 后处理线程池已满，在当前线程执行，回复不丢失
+                complete();
+            }
+        }
+
+        /**
+         * 保存完整回复 (生图指令在这里生成图片) 并推送 done 事件
+         */
+        private void complete() {
+            String aiRawReply = reply.length() > 0 ? reply.toString() : "(AI 思考超时)";
+            try {
+                ChatMessage aiMsg = buildAiMessage(userId, persona, aiRawReply, false);
+                if (aiMsg.getMsgType() == 0) {
+                    // 普通文本：补发尚未推送的部分 (整段被当作疑似指令缓存的情况)
+                    if (reply.length() == 0) reply.append(aiRawReply);
+                    flush();
+                }
+                send("done", aiMsg);
+                emitter.complete();
+            } catch (Exception e) {
+                log.warn("⚠️ [ChatStream] 推送结果失败: {}", e.getMessage());
+                emitter.completeWithError(e);
+            }
+            userProfileService.checkAndEvolveProfile(userId);
+        }
+
+        private void send(String event, Object data) throws IOException {
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data, org.springframework.http.MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开，停止读取上游
+                abort();
+                throw e instanceof IOException io ? io : new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * 不调用上游，直接以一条固定回复结束流式请求
+     */
+    private void replyImmediately(Long userId, Persona persona, SseEmitter emitter, String reply) {
+        try {
+            emitter.send(SseEmitter.event().name("done")
+                    .data(fallbackMessage(userId, persona, reply), org.springframework.http.MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+        userProfileService.checkAndEvolveProfile(userId);
+    }
+
     // ================= 2. 语音聊天 =================
     public ChatMessage chatWithAudio(Long userId, Long personaId, MultipartFile audioFile, Integer duration) throws Exception {
         Persona persona = validatePersona(personaId);
@@ -103,13 +361,29 @@ public class ChatService {
     private ChatMessage processAiInteraction(Long userId, Persona persona, String userText, boolean replyVoice, boolean isImageGen) {
 
         // 1. 构建 Prompt (这里会读取用户画像)
-        List<Map<String, String>> messages = buildPromptContext(userId, persona, userText, isImageGen);
+        ChatContextBuilder.PromptContext context = buildPromptContext(userId, persona, userText, isImageGen);
 
-        // 2. 调用 LLM
-        String aiRawReply = callKimiApi(messages);
+        // 2. 调用 LLM (熔断 / 限流时直接返回降级回复，不入库)
+        String aiRawReply;
+        try {
+            aiRawReply = callKimiApi(context);
+        } catch (CircuitBreaker.OpenException e) {
+            log.warn("⚠️ [Chat] {}", e.getMessage());
+            return fallbackMessage(userId, persona, String.format(OFFLINE_REPLY, persona.getName()));
+        } catch (AdaptiveBulkhead.RejectedException e) {
+            log.warn("⚠️ [Chat] {}", e.getMessage());
+            return fallbackMessage(userId, persona, BUSY_REPLY);
+        }
         log.info("🤖 AI 原始回复 (IsImageGen={}): {}", isImageGen, aiRawReply);
 
         // 3. 处理回复
+        return buildAiMessage(userId, persona, aiRawReply, replyVoice);
+    }
+
+    /**
+     * 根据 AI 原始回复生成并保存 AI 消息 (生图指令 / 语音 / 文本)
+     */
+    private ChatMessage buildAiMessage(Long userId, Persona persona, String aiRawReply, boolean replyVoice) {
         ChatMessage aiMsg = new ChatMessage();
         aiMsg.setUserId(userId);
         aiMsg.setPersonaId(persona.getId());
@@ -129,7 +403,7 @@ public class ChatService {
                 // 2. ✅ [Fix] 尝试转存 OSS (这是之前漏掉的逻辑)
                 try {
                     Request request = new Request.Builder().url(tempUrl).build();
-                    try (Response response = client.newCall(request).execute()) {
+                    try (Response response = mediaClient.newCall(request).execute()) {
                         if (response.isSuccessful() && response.body() != null) {
                             byte[] imageBytes = response.body().bytes();
                             String ossUrl = aliyunOSSOperator.upload(imageBytes, "chat_gen_" + System.currentTimeMillis() + ".png");
@@ -175,36 +449,43 @@ public class ChatService {
         }
 
         chatMessageMapper.insert(aiMsg);
+        chatSessionCache.append(aiMsg);
         return aiMsg;
     }
 
-    private List<Map<String, String>> buildPromptContext(Long userId, Persona persona, String userContent, boolean isImageGen) {
-        List<Map<String, String>> messages = new ArrayList<>();
+    /**
+     * 熔断 / 限流时的降级回复：只返回给客户端，不写库也不进入会话缓存，
+     * 避免这类提示被当作历史发回模型、参与画像进化或滚动摘要
+     */
+    private ChatMessage fallbackMessage(Long userId, Persona persona, String reply) {
+        ChatMessage aiMsg = new ChatMessage();
+        aiMsg.setUserId(userId);
+        aiMsg.setPersonaId(persona.getId());
+        aiMsg.setRole("assistant");
+        aiMsg.setContent(reply);
+        aiMsg.setMsgType(0);
+        aiMsg.setCreatedAt(java.time.LocalDateTime.now());
+        return aiMsg;
+    }
 
-        // ✅ [修改点 2] 获取用户画像
-        UserProfile userProfile = userProfileMapper.selectById(userId);
+    private ChatContextBuilder.PromptContext buildPromptContext(Long userId, Persona persona, String userContent, boolean isImageGen) {
+        // ✅ [修改点 2] 获取用户画像 (画像进化后缓存失效)
+        UserProfile userProfile = chatSessionCache.profile(userId, () -> userProfileMapper.selectById(userId));
 
         // System Prompt (传入 userProfile)
         String systemContent = buildEnrichedSystemPrompt(persona, userProfile);
-        messages.add(Map.of("role", "system", "content", systemContent));
 
-        // History
-        LambdaQueryWrapper<ChatMessage> query = new LambdaQueryWrapper<>();
-        query.eq(ChatMessage::getUserId, userId)
-                .eq(ChatMessage::getPersonaId, persona.getId())
-                .orderByDesc(ChatMessage::getCreatedAt)
-                .last("LIMIT 20");
-
-        List<ChatMessage> history = chatMessageMapper.selectList(query)
-                .stream()
-                .sorted(Comparator.comparing(ChatMessage::getCreatedAt))
-                .collect(Collectors.toList());
-
-        for (ChatMessage msg : history) {
-            String content = msg.getContent();
-            if (msg.getMsgType() == 1) content = "[发送了一张图片: " + content + "]";
-            messages.add(Map.of("role", msg.getRole(), "content", content));
-        }
+        // History：活跃会话直接读取内存中的最近消息，未缓存时查询最近 20 条
+        List<ChatMessage> history = chatSessionCache.history(userId, persona.getId(), () -> {
+            LambdaQueryWrapper<ChatMessage> query = new LambdaQueryWrapper<>();
+            query.eq(ChatMessage::getUserId, userId)
+                    .eq(ChatMessage::getPersonaId, persona.getId())
+                    .orderByDesc(ChatMessage::getCreatedAt)
+                    .last("LIMIT 20");
+            List<ChatMessage> rows = new ArrayList<>(chatMessageMapper.selectList(query));
+            Collections.reverse(rows);
+            return rows;
+        });
 
         // Add Current Message
         String finalUserContent = userContent;
@@ -212,16 +493,16 @@ public class ChatService {
             finalUserContent = userContent + "\n\n(系统指令：用户明确要求根据上述内容生成一张图片。请忽略对话逻辑，**必须**直接返回 JSON 格式的 DRAW 指令，prompt 字段需根据角色人设进行丰富的画面联想和英文翻译。)";
         }
 
-        boolean inHistory = !history.isEmpty() && history.get(history.size() - 1).getContent().equals(userContent);
-        if (!inHistory || isImageGen) {
-            messages.add(Map.of("role", "user", "content", finalUserContent));
-        }
+        // 本轮用户消息已先写入历史，由 ChatContextBuilder 单独放在最后
+        boolean inHistory = !history.isEmpty() && userContent.equals(history.get(history.size() - 1).getContent());
+        if (inHistory) history = history.subList(0, history.size() - 1);
 
-        return messages;
+        // 按 token 预算截取历史，并选择模型
+        return chatContextBuilder.build(userId, persona.getId(), systemContent, history, finalUserContent);
     }
 
     private Persona validatePersona(Long personaId) {
-        Persona persona = personaMapper.selectById(personaId);
+        Persona persona = chatSessionCache.persona(personaId, () -> personaMapper.selectById(personaId));
         if (persona == null) throw new RuntimeException("Persona not found");
         return persona;
     }
@@ -237,6 +518,7 @@ public class ChatService {
         msg.setDuration(duration);
         msg.setCreatedAt(java.time.LocalDateTime.now());
         chatMessageMapper.insert(msg);
+        chatSessionCache.append(msg);
     }
 
     // ✅ [修改点 3] 修改方法签名，接收 UserProfile，并根据画像是否存在来注入 Prompt
@@ -289,22 +571,39 @@ public class ChatService {
         } catch (Exception e) { return null; }
     }
 
-    private String callKimiApi(List<Map<String, String>> messages) {
+    private Request buildKimiRequest(ChatContextBuilder.PromptContext context, boolean stream) {
         JSONObject requestBody = new JSONObject();
-        requestBody.put("model", "moonshot-v1-32k");
-        requestBody.put("messages", messages);
+        requestBody.put("model", context.getModel());
+        requestBody.put("messages", context.getMessages());
         requestBody.put("temperature", 0.8);
+        if (stream) requestBody.put("stream", true);
 
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(apiUrl)
                 .header("Authorization", "Bearer " + apiKey)
                 .header("Content-Type", "application/json")
                 .post(RequestBody.create(requestBody.toString(), MediaType.parse("application/json")))
                 .build();
+    }
+
+    /**
+     * @throws CircuitBreaker.OpenException 熔断打开
+     * @throws AdaptiveBulkhead.RejectedException 并发名额已满
+     */
+    private String callKimiApi(ChatContextBuilder.PromptContext context)
+            throws CircuitBreaker.OpenException, AdaptiveBulkhead.RejectedException {
+        Request request = buildKimiRequest(context, false);
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("API Error: " + response.code());
-            return JSON.parseObject(response.body().string()).getJSONArray("choices").getJSONObject(0).getJSONObject("message").getString("content");
+        try {
+            return circuitBreakerRegistry.get(CircuitBreakerRegistry.MOONSHOT).call(() ->
+                    bulkheadRegistry.get(BulkheadRegistry.MOONSHOT_CHAT).call(() -> {
+                        try (Response response = client.newCall(request).execute()) {
+                            if (!response.isSuccessful()) throw new IOException("API Error: " + response.code());
+                            return JSON.parseObject(response.body().string()).getJSONArray("choices").getJSONObject(0).getJSONObject("message").getString("content");
+                        }
+                    }));
+        } catch (CircuitBreaker.OpenException | AdaptiveBulkhead.RejectedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("AI Error", e);
             return "(AI 思考超时)";
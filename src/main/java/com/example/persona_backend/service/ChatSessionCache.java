@@ -0,0 +1,236 @@
+package com.example.persona_backend.service;
+
+import com.example.persona_backend.entity.ChatMessage;
+import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.entity.UserProfile;
+import com.example.persona_backend.event.PersonaChangedEvent;
+import com.example.persona_backend.event.ProfileEvolvedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 聊天会话热数据缓存，构建 Prompt 时活跃会话不再访问数据库
+ * - 每个会话 (userId + personaId) 一个环形缓冲区，保存最近 historySize 条消息；
+ *   消息写库后同步追加 (write-through)，首次访问时从 chat_messages 加载。
+ * - 用户画像、Persona 按 id 缓存，画像进化 / Persona 修改后失效。
+ * 各部分按访问顺序做 LRU 淘汰；缓存只在本实例内有效，条目加载超过 ttl-seconds 后重新读库，
+ * 多实例部署时其他实例写入的消息、修改的 Persona 最多延迟一个 TTL 可见。
+ */
+@Slf4j
+@Component
+public class ChatSessionCache {
+
+    @Value("${chat.session-cache.history-size:20}")
+    private int historySize = 20;
+
+    @Value("${chat.session-cache.max-sessions:10000}")
+    private int maxSessions = 10000;
+
+    @Value("${chat.session-cache.ttl-seconds:300}")
+    private long ttlSeconds = 300;
+
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(256, 0.75f, true);
+    // 画像不存在的用户缓存为 Optional.empty()，同样不用每次查库
+    private final LinkedHashMap<Long, Snapshot<Optional<UserProfile>>> profiles = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<Long, Snapshot<Persona>> personas = new LinkedHashMap<>(256, 0.75f, true);
+    // 画像 / Persona 失效计数：加载期间发生过失效的结果不写入缓存，避免旧值覆盖
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * 会话最近的消息 (按时间正序)，未缓存时调用 loader 从数据库加载
+     * loader 需返回按时间正序排列的最近消息
+     */
+    public List<ChatMessage> history(Long userId, Long personaId, Supplier<List<ChatMessage>> loader) {
+        String key = key(userId, personaId);
+        Session session;
+        synchronized (this) {
+            session = sessions.get(key);
+            if (session == null || session.isExpired(System.currentTimeMillis())) {
+                session = new Session(historySize);
+                sessions.put(key, session);
+                trim(sessions, maxSessions);
+            }
+        }
+        synchronized (session) {
+            if (session.loaded) {
+                hits.incrementAndGet();
+                return session.snapshot();
+            }
+        }
+
+        misses.incrementAndGet();
+        List<ChatMessage> rows = loader.get();
+        synchronized (session) {
+            if (!session.loaded) session.load(rows);
+            return session.snapshot();
+        }
+    }
+
+    /**
+     * 消息写库后调用 (需已有 id)；会话未缓存时忽略，下次访问时从数据库加载
+     */
+    public void append(ChatMessage message) {
+        Session session;
+        synchronized (this) {
+            session = sessions.get(key(message.getUserId(), message.getPersonaId()));
+        }
+        if (session == null) return;
+        synchronized (session) {
+            session.add(message);
+        }
+        appended.incrementAndGet();
+    }
+
+    public UserProfile profile(Long userId, Supplier<UserProfile> loader) {
+        return cached(profiles, userId, () -> Optional.ofNullable(loader.get())).orElse(null);
+    }
+
+    public Persona persona(Long personaId, Supplier<Persona> loader) {
+        return cached(personas, personaId, loader);
+    }
+
+    // 画像进化后 summary / tags 已变化
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProfileEvolved(ProfileEvolvedEvent event) {
+        synchronized (this) {
+            generation++;
+            profiles.remove(event.getUserId());
+        }
+    }
+
+    // Persona 修改事务提交后失效，避免提交前被并发请求重新读入旧值
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonaChanged(PersonaChangedEvent event) {
+        synchronized (this) {
+            generation++;
+            personas.remove(event.getPersonaId());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        synchronized (this) {
+            stats.put("sessions", sessions.size());
+            stats.put("profiles", profiles.size());
+            stats.put("personas", personas.size());
+        }
+        stats.put("maxSessions", maxSessions);
+        stats.put("historyHits", h);
+        stats.put("historyMisses", m);
+        stats.put("historyHitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("appended", appended.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    private <K, V> V cached(LinkedHashMap<K, Snapshot<V>> map, K key, Supplier<V> loader) {
+        long now = System.currentTimeMillis();
+        long gen;
+        synchronized (this) {
+            Snapshot<V> snapshot = map.get(key);
+            if (snapshot != null && !snapshot.isExpired(now)) return snapshot.value;
+            gen = generation;
+        }
+        V value = loader.get();
+        // Persona 不存在时不缓存，由调用方报错
+        if (value != null) {
+            synchronized (this) {
+                if (gen != generation) return value;
+                map.put(key, new Snapshot<>(value, now));
+                trim(map, maxSessions);
+            }
+        }
+        return value;
+    }
+
+    private void trim(LinkedHashMap<?, ?> map, int max) {
+        Iterator<?> it = map.values().iterator();
+        while (map.size() > max && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String key(Long userId, Long personaId) {
+        return userId + ":" + personaId;
+    }
+
+    private final class Snapshot<V> {
+        final V value;
+        final long loadedAt;
+
+        Snapshot(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - loadedAt >= ttlSeconds * 1000;
+        }
+    }
+
+    /**
+     * 一个会话的最近消息环形缓冲区，访问需持有该对象的锁
+     */
+    private final class Session {
+        final ChatMessage[] ring;
+        final long createdAt = System.currentTimeMillis();
+        int head;
+        int size;
+        boolean loaded;
+
+        Session(int capacity) {
+            this.ring = new ChatMessage[Math.max(1, capacity)];
+        }
+
+        boolean isExpired(long now) {
+            return now - createdAt >= ttlSeconds * 1000;
+        }
+
+        void add(ChatMessage message) {
+            ring[(head + size) % ring.length] = message;
+            if (size < ring.length) size++;
+            else head = (head + 1) % ring.length;
+        }
+
+        /**
+         * 合并数据库结果与加载期间追加的消息 (按 id 去重)，保持时间顺序
+         */
+        void load(List<ChatMessage> rows) {
+            List<ChatMessage> pending = snapshot();
+            Set<Long> ids = new HashSet<>();
+            head = 0;
+            size = 0;
+            for (ChatMessage row : rows) {
+                ids.add(row.getId());
+                add(row);
+            }
+            for (ChatMessage message : pending) {
+                if (message.getId() == null || !ids.contains(message.getId())) add(message);
+            }
+            loaded = true;
+        }
+
+        List<ChatMessage> snapshot() {
+            List<ChatMessage> out = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                out.add(ring[(head + i) % ring.length]);
+            }
+            return out;
+        }
+    }
+}
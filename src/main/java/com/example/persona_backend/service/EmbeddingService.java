@@ -0,0 +1,187 @@
+package com.example.persona_backend.service;
+
+import com.example.persona_backend.entity.EmbeddingCache;
+import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.mapper.EmbeddingCacheMapper;
+import com.example.persona_backend.utils.TokenBucket;
+import com.example.persona_backend.utils.ZhipuAiUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文本向量化 (带持久化缓存)
+ * 以 SHA-256(模型名 + 文本) 为 key 缓存在 embedding_cache 表中，相同文本只调用一次 Embedding API；
+ * 未命中的文本按 batch-size 打包成一次请求批量生成。
+ */
+@Slf4j
+@Service
+public class EmbeddingService {
+
+    // selectBatchIds 的 IN 列表上限
+    private static final int LOOKUP_CHUNK = 500;
+
+    @Autowired
+    private ZhipuAiUtils zhipuAiUtils;
+    @Autowired
+    private EmbeddingCacheMapper embeddingCacheMapper;
+
+    // 单次请求的最大文本条数 (智谱接口上限 64)
+    @Value("${zhipu.embedding.batch-size:64}")
+    private int batchSize = 64;
+
+    // 智谱 Embedding 接口的 QPS 配额，所有调用方共用
+    @Value("${zhipu.embedding.qps:5}")
+    private double qps = 5;
+
+    @Value("${zhipu.embedding.burst:5}")
+    private int burst = 5;
+
+    private TokenBucket rateLimiter = new TokenBucket(qps, burst);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong apiCalls = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        rateLimiter = new TokenBucket(qps, burst);
+    }
+
+    /**
+     * 单条文本向量化
+     * @return 失败时返回 null
+     */
+    public float[] embed(String text) {
+        return embedAll(Collections.singletonList(text)).get(0);
+    }
+
+    /**
+     * 批量向量化，返回与输入一一对应的列表；空文本或生成失败的位置为 null
+     */
+    public List<float[]> embedAll(List<String> texts) {
+        float[][] out = new float[texts.size()][];
+
+        // 1. 按哈希去重，同一文本只查一次缓存、只生成一次
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        Map<String, String> textOf = new HashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.isBlank()) continue;
+            String hash = hash(text);
+            positions.computeIfAbsent(hash, k -> new ArrayList<>(1)).add(i);
+            textOf.putIfAbsent(hash, text);
+        }
+        if (positions.isEmpty()) return Arrays.asList(out);
+
+        // 2. 查缓存
+        List<String> hashes = new ArrayList<>(positions.keySet());
+        Set<String> found = new HashSet<>();
+        for (int from = 0; from < hashes.size(); from += LOOKUP_CHUNK) {
+            List<String> chunk = hashes.subList(from, Math.min(from + LOOKUP_CHUNK, hashes.size()));
+            for (EmbeddingCache cached : embeddingCacheMapper.selectBatchIds(chunk)) {
+                if (cached.getEmbedding() == null || cached.getEmbedding().length == 0) continue;
+                fill(out, positions.get(cached.getContentHash()), cached.getEmbedding());
+                found.add(cached.getContentHash());
+            }
+        }
+        hits.addAndGet(found.size());
+
+        // 3. 未命中的文本分批调用 API，成功后写回缓存
+        List<String> missing = new ArrayList<>(hashes.size() - found.size());
+        for (String hash : hashes) {
+            if (!found.contains(hash)) missing.add(hash);
+        }
+        misses.addAndGet(missing.size());
+
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<String> batch = missing.subList(from, Math.min(from + batchSize, missing.size()));
+            List<String> batchTexts = new ArrayList<>(batch.size());
+            for (String hash : batch) {
+                batchTexts.add(textOf.get(hash));
+            }
+
+            try {
+                rateLimiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            apiCalls.incrementAndGet();
+            List<float[]> vectors = zhipuAiUtils.generateEmbeddings(batchTexts);
+            if (vectors.size() != batch.size()) {
+                log.warn("⚠️ [Embedding] 批量生成失败, 本批 {} 条跳过", batch.size());
+                continue;
+            }
+
+            List<EmbeddingCache> rows = new ArrayList<>(batch.size());
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < batch.size(); i++) {
+                fill(out, positions.get(batch.get(i)), vectors.get(i));
+                EmbeddingCache row = new EmbeddingCache();
+                row.setContentHash(batch.get(i));
+                row.setModel(ZhipuAiUtils.EMBEDDING_MODEL);
+                row.setEmbedding(vectors.get(i));
+                row.setCreatedAt(now);
+                rows.add(row);
+            }
+            try {
+                embeddingCacheMapper.insertIgnoreBatch(rows);
+            } catch (Exception e) {
+                // 缓存写入失败不影响本次结果
+                log.warn("⚠️ [Embedding] 写入缓存失败: {}", e.getMessage());
+            }
+        }
+        return Arrays.asList(out);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("apiCalls", apiCalls.get());
+        stats.put("qps", rateLimiter.getPermitsPerSecond());
+        return stats;
+    }
+
+    /**
+     * Persona 用于向量化的文本 (名称 + 标签 + 描述)，同步任务与实时刷新共用，保证命中同一条缓存
+     */
+    public static String personaText(Persona persona) {
+        return "Name: " + persona.getName() +
+                "; Tags: " + persona.getPersonalityTags() +
+                "; Desc: " + persona.getDescription();
+    }
+
+    public static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ZhipuAiUtils.EMBEDDING_MODEL.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 是 JDK 必备算法，不会发生
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 同一文本出现多次时各位置共享同一个数组，调用方只读使用
+    private static void fill(float[][] out, List<Integer> positions, float[] vector) {
+        if (positions == null) return;
+        for (int i : positions) {
+            out[i] = vector;
+        }
+    }
+}
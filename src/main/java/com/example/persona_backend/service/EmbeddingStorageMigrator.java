@@ -0,0 +1,97 @@
+package com.example.persona_backend.service;
+
+import com.example.persona_backend.entity.PersonaVector;
+import com.example.persona_backend.entity.UserProfile;
+import com.example.persona_backend.mapper.PersonaVectorMapper;
+import com.example.persona_backend.mapper.UserProfileMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 向量存储格式在线迁移：JSON 文本 -> float32 BLOB
+ * 列类型改为 MEDIUMBLOB 后，旧行仍是 JSON 文本 (FloatArrayTypeHandler 可兼容读取)，
+ * 本任务在后台按主键分批把它们重写为二进制格式，不阻塞启动，也不锁表。
+ * 重写是条件更新 (仍为 JSON 文本才写)，读取到写回之间被业务刷新过的行保持新值，返回的行数只统计真正迁移的行。
+ */
+@Slf4j
+@Component
+public class EmbeddingStorageMigrator {
+
+    @Autowired
+    private PersonaVectorMapper personaVectorMapper;
+
+    @Autowired
+    private UserProfileMapper userProfileMapper;
+
+    @Value("${recommend.storage.migrate-on-startup:true}")
+    private boolean migrateOnStartup = true;
+
+    @Value("${recommend.storage.migrate-batch-size:200}")
+    private int batchSize = 200;
+
+    // 批次之间的间隔，避免迁移占满数据库
+    @Value("${recommend.storage.migrate-pause-ms:50}")
+    private long pauseMs = 50;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (!migrateOnStartup) return;
+        Thread worker = new Thread(this::migrateAll, "embedding-migrator");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void migrateAll() {
+        try {
+            int vectors = migratePersonaVectors();
+            int profiles = migrateUserProfiles();
+            if (vectors + profiles > 0) {
+                log.info("✅ [EmbeddingMigrator] 迁移完成: persona_vector {} 行, user_profile {} 行", vectors, profiles);
+            }
+        } catch (Exception e) {
+            // 失败不影响服务，旧格式仍可读取，下次启动会继续迁移
+            log.error("❌ [EmbeddingMigrator] 迁移中断", e);
+        }
+    }
+
+    public int migratePersonaVectors() throws InterruptedException {
+        int migrated = 0;
+        long cursor = 0L;
+        while (true) {
+            List<Long> ids = personaVectorMapper.selectLegacyJsonIds(cursor, batchSize);
+            if (ids == null || ids.isEmpty()) break;
+
+            // selectBatchIds 经过 TypeHandler，旧 JSON 会被解码为 float[]
+            for (PersonaVector pv : personaVectorMapper.selectBatchIds(ids)) {
+                if (pv.getEmbedding() == null) continue;
+                migrated += personaVectorMapper.updateEmbedding(pv.getPersonaId(), pv.getEmbedding());
+            }
+            cursor = ids.get(ids.size() - 1);
+            Thread.sleep(pauseMs);
+        }
+        return migrated;
+    }
+
+    public int migrateUserProfiles() throws InterruptedException {
+        int migrated = 0;
+        long cursor = 0L;
+        while (true) {
+            List<Long> ids = userProfileMapper.selectLegacyJsonIds(cursor, batchSize);
+            if (ids == null || ids.isEmpty()) break;
+
+            for (UserProfile profile : userProfileMapper.selectBatchIds(ids)) {
+                if (profile.getTargetVector() == null) continue;
+                migrated += userProfileMapper.updateTargetVector(profile.getUserId(), profile.getTargetVector());
+            }
+            cursor = ids.get(ids.size() - 1);
+            Thread.sleep(pauseMs);
+        }
+        return migrated;
+    }
+}
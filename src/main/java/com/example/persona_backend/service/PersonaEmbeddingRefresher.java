@@ -0,0 +1,233 @@
+package com.example.persona_backend.service;
+
+import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.entity.PersonaVector;
+import com.example.persona_backend.event.PersonaChangedEvent;
+import com.example.persona_backend.event.PersonaVectorChangedEvent;
+import com.example.persona_backend.mapper.PersonaMapper;
+import com.example.persona_backend.mapper.PersonaVectorMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persona 向量实时刷新
+ * Persona 新建 / 编辑后发布 PersonaChangedEvent，这里只把 id 放入待刷新队列 (同一 id 合并)，
+ * 后台线程攒够 debounce 时间后批量向量化，写回 persona_vector (版本号 +1) 并同步更新内存召回索引，
+ * 再发布带新旧向量的 PersonaVectorChangedEvent，让关注者的行为质心增量修正、推荐缓存失效。
+ * 写接口不再承担 Embedding 延迟，新内容通常几秒内即可被推荐召回。
+ */
+@Slf4j
+@Component
+public class PersonaEmbeddingRefresher {
+
+    @Autowired
+    private PersonaMapper personaMapper;
+    @Autowired
+    private PersonaVectorMapper personaVectorMapper;
+    @Autowired
+    private EmbeddingService embeddingService;
+    @Autowired
+    private PersonaVectorIndex personaVectorIndex;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${recommend.persona-embedding.enabled:true}")
+    private boolean enabled = true;
+
+    // 收到第一个事件后等待多久再处理，期间的重复事件被合并
+    @Value("${recommend.persona-embedding.debounce-ms:500}")
+    private long debounceMs = 500;
+
+    // 单批最多处理的 Persona 数 (与 Embedding 批量上限一致)
+    @Value("${recommend.persona-embedding.max-batch:64}")
+    private int maxBatch = 64;
+
+    // 失败后重新入队的最大次数
+    @Value("${recommend.persona-embedding.max-retries:3}")
+    private int maxRetries = 3;
+
+    // personaId -> 首次入队时间，保持入队顺序
+    private final LinkedHashMap<Long, Long> pending = new LinkedHashMap<>();
+    private final Map<Long, Integer> retries = new HashMap<>();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long lastLagMs;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+        running = true;
+        worker = new Thread(this::runLoop, "persona-embedding-refresher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) worker.interrupt();
+    }
+
+    /**
+     * 事务提交后才入队，保证后台线程能读到新数据
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPersonaChanged(PersonaChangedEvent event) {
+        enqueue(event.getPersonaId());
+    }
+
+    public void enqueue(Long personaId) {
+        if (!enabled || personaId == null) return;
+        synchronized (pending) {
+            // 已在队列中的保留原入队时间，延迟统计按最早一次变更计算
+            pending.putIfAbsent(personaId, System.currentTimeMillis());
+            pending.notifyAll();
+        }
+        enqueued.incrementAndGet();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (pending) {
+            stats.put("queued", pending.size());
+        }
+        stats.put("enqueued", enqueued.get());
+        stats.put("refreshed", refreshed.get());
+        stats.put("unchanged", unchanged.get());
+        stats.put("failed", failed.get());
+        stats.put("lastLagMs", lastLagMs);
+        return stats;
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                synchronized (pending) {
+                    while (pending.isEmpty() && running) {
+                        pending.wait();
+                    }
+                }
+                Thread.sleep(debounceMs);
+
+                Map<Long, Long> batch = new LinkedHashMap<>();
+                synchronized (pending) {
+                    Iterator<Map.Entry<Long, Long>> it = pending.entrySet().iterator();
+                    while (it.hasNext() && batch.size() < maxBatch) {
+                        Map.Entry<Long, Long> entry = it.next();
+                        batch.put(entry.getKey(), entry.getValue());
+                        it.remove();
+                    }
+                }
+                if (batch.isEmpty()) continue;
+
+                Set<Long> failedIds = refresh(new ArrayList<>(batch.keySet()));
+                requeue(failedIds, batch);
+
+                long now = System.currentTimeMillis();
+                long oldest = Collections.min(batch.values());
+                lastLagMs = now - oldest;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("❌ [EmbeddingRefresh] 刷新循环异常", e);
+            }
+        }
+    }
+
+    /**
+     * 同步刷新一批 Persona 的向量
+     * @return 需要重试的 id (向量生成或写入失败)
+     */
+    public Set<Long> refresh(List<Long> ids) {
+        Set<Long> failedIds = new LinkedHashSet<>();
+        List<Persona> personas;
+        Map<Long, float[]> current = new HashMap<>();
+        try {
+            personas = personaMapper.selectBatchIds(ids);
+            for (PersonaVector pv : personaVectorMapper.selectBatchIds(ids)) {
+                current.put(pv.getPersonaId(), pv.getEmbedding());
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ [EmbeddingRefresh] 读取 Persona 失败: {}", e.getMessage());
+            failedIds.addAll(ids);
+            return failedIds;
+        }
+        // 已删除的 Persona 不在结果中，直接丢弃
+
+        List<String> texts = new ArrayList<>(personas.size());
+        for (Persona persona : personas) {
+            texts.add(EmbeddingService.personaText(persona));
+        }
+        List<float[]> vectors = embeddingService.embedAll(texts);
+
+        for (int i = 0; i < personas.size(); i++) {
+            Long personaId = personas.get(i).getId();
+            float[] vector = vectors.get(i);
+            if (vector == null) {
+                failedIds.add(personaId);
+                continue;
+            }
+            // 只改了头像等不参与向量化的字段时，文本命中缓存得到相同向量，不必递增版本
+            if (Arrays.equals(vector, current.get(personaId))) {
+                unchanged.incrementAndGet();
+                continue;
+            }
+            LocalDateTime changedAt = LocalDateTime.now();
+            try {
+                personaVectorMapper.upsertEmbedding(personaId, vector);
+                PersonaVector pv = new PersonaVector();
+                pv.setPersonaId(personaId);
+                pv.setEmbedding(vector);
+                pv.setVersion(personaVectorMapper.selectVersion(personaId));
+                personaVectorIndex.upsert(pv);
+                refreshed.incrementAndGet();
+            } catch (Exception e) {
+                log.warn("⚠️ [EmbeddingRefresh] 写入向量失败 personaId={}: {}", personaId, e.getMessage());
+                failedIds.add(personaId);
+                continue;
+            }
+            // 已关注该 Persona 的用户质心按差值修正、推荐缓存随之失效 (失败不影响向量本身的刷新)
+            try {
+                eventPublisher.publishEvent(new PersonaVectorChangedEvent(personaId, current.get(personaId), vector, changedAt));
+            } catch (Exception e) {
+                log.warn("⚠️ [EmbeddingRefresh] 失效关注者质心失败 personaId={}: {}", personaId, e.getMessage());
+            }
+        }
+        return failedIds;
+    }
+
+    private void requeue(Set<Long> failedIds, Map<Long, Long> batch) {
+        synchronized (pending) {
+            for (Long id : batch.keySet()) {
+                if (!failedIds.contains(id)) retries.remove(id);
+            }
+            for (Long id : failedIds) {
+                int attempts = retries.merge(id, 1, Integer::sum);
+                if (attempts > maxRetries) {
+                    retries.remove(id);
+                    failed.incrementAndGet();
+                    log.error("❌ [EmbeddingRefresh] personaId={} 重试 {} 次仍失败，放弃本次刷新", id, maxRetries);
+                    continue;
+                }
+                pending.putIfAbsent(id, batch.get(id));
+            }
+        }
+    }
+}
@@ -0,0 +1,684 @@
+package com.example.persona_backend.service;
+
+import com.example.persona_backend.entity.PersonaVector;
+import com.example.persona_backend.mapper.PersonaVectorMapper;
+import com.example.persona_backend.utils.HnswGraph;
+import com.example.persona_backend.utils.Int8Quantizer;
+import com.example.persona_backend.utils.OffHeapVectorStore;
+import com.example.persona_backend.utils.TopKSelector;
+import com.example.persona_backend.utils.VectorSnapshotFile;
+import com.example.persona_backend.utils.VectorUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 常驻内存的 Persona 向量索引 (L0 召回专用)
+ * 所有向量按行存放在一个连续的 float[] 矩阵中，并预先计算好模长，
+ * 召回时直接在矩阵上做余弦打分，不再访问 MySQL，也不会为每个候选人创建对象。
+ * 检索引擎可配置：exact (全量精确扫描) 或 hnsw (近似最近邻图，适合 10^5 以上规模)。
+ * 存储可配置为 int8 量化：堆内只保留 int8 编码 (约为 float32 的 1/4)，全精度向量放在堆外
+ * (映射快照文件或直接内存)，粗排选出较多候选后在堆外向量上重排，不访问数据库。
+ * 索引会定期写入本地快照文件，启动时映射快照并只从数据库回放 version 变化的行，避免全量读表。
+ */
+@Slf4j
+@Component
+public class PersonaVectorIndex {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int REPLAY_BATCH_SIZE = 500;
+
+    public static final String ENGINE_EXACT = "exact";
+    public static final String ENGINE_HNSW = "hnsw";
+
+    public static final String QUANTIZATION_NONE = "none";
+    public static final String QUANTIZATION_INT8 = "int8";
+
+    @Autowired
+    private PersonaVectorMapper personaVectorMapper;
+
+    // 检索引擎: exact | hnsw
+    @Value("${recommend.index.engine:exact}")
+    private String engine = ENGINE_EXACT;
+
+    // HNSW 每层最大连接数，越大召回越高，内存和构建耗时也越大
+    @Value("${recommend.index.hnsw.m:16}")
+    private int hnswM = 16;
+
+    @Value("${recommend.index.hnsw.ef-construction:100}")
+    private int hnswEfConstruction = 100;
+
+    // 查询时的候选队列长度，召回/延迟的主要调节旋钮
+    @Value("${recommend.index.hnsw.ef-search:64}")
+    private int hnswEfSearch = 64;
+
+    // 向量存储: none (float32) | int8
+    @Value("${recommend.index.quantization:none}")
+    private String quantization = QUANTIZATION_NONE;
+
+    // int8 模式下粗排保留的候选数，这些候选会用全精度向量重新打分
+    @Value("${recommend.index.rescore-candidates:200}")
+    private int rescoreCandidates = 200;
+
+    // 快照文件路径，为空表示不启用快照
+    @Value("${recommend.index.snapshot.path:}")
+    private String snapshotPath = "";
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // 串行化快照写入 (定时任务与全量加载后的写入可能同时发生)
+    private final Object snapshotLock = new Object();
+
+    // 行号 -> personaId / 向量 / 模长 (模长始终按原始向量计算)
+    private long[] ids = new long[0];
+    private int[] versions = new int[0];
+    private float[] matrix = new float[0];
+    private float[] norms = new float[0];
+    // int8 模式: 编码矩阵 + 每行的 scale / offset，此时 matrix 为空
+    private boolean quantized;
+    private byte[] codes = new byte[0];
+    private float[] scales = new float[0];
+    private float[] offsets = new float[0];
+    // int8 模式: 堆外的全精度向量，按行号存放，用于重排
+    private OffHeapVectorStore fullPrecision;
+    private final Map<Long, Integer> rowOf = new HashMap<>();
+    private int size;
+    private int dimension;
+    private HnswGraph graph;
+    private MatrixVectors graphVectors;
+
+    private volatile boolean loaded;
+
+    // 每次写入 +1，与上次快照时的值相同说明没有变化，无需重写快照
+    private long modCount;
+    private long snapshotModCount = -1;
+
+    /**
+     * 应用启动完成后加载一次：优先使用快照 + 增量回放，没有可用快照时全量读表
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            load();
+        } catch (Exception e) {
+            // 加载失败不影响启动，首次查询时会重试
+            log.error("❌ [VectorIndex] 启动加载失败", e);
+        }
+    }
+
+    public void load() {
+        if (!loadSnapshot()) {
+            reload();
+        }
+    }
+
+    /**
+     * 从 persona_vector 表全量重建索引
+     */
+    public void reload() {
+        long start = System.currentTimeMillis();
+        List<PersonaVector> all = personaVectorMapper.selectList(null);
+
+        lock.writeLock().lock();
+        try {
+            resetLocked();
+            if (all != null) {
+                for (PersonaVector pv : all) {
+                    putLocked(pv.getPersonaId(), pv.getEmbedding(), versionOf(pv));
+                }
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("✅ [VectorIndex] 索引加载完成: {} 条向量, 维度 {}, 引擎 {}, 存储 {}, 耗时 {} ms",
+                size, dimension, graph != null ? ENGINE_HNSW : ENGINE_EXACT,
+                quantized ? QUANTIZATION_INT8 : QUANTIZATION_NONE, System.currentTimeMillis() - start);
+
+        // 全量加载后立即落一份快照，下次启动即可直接映射
+        writeSnapshotQuietly();
+    }
+
+    /**
+     * 映射快照文件并回放数据库中 version 发生变化的行
+     * @return 快照不存在、损坏或与当前存储格式不一致时返回 false
+     */
+    public boolean loadSnapshot() {
+        Path path = snapshotFile();
+        if (path == null || !Files.exists(path)) return false;
+
+        long start = System.currentTimeMillis();
+        VectorSnapshotFile.Snapshot snapshot;
+        try {
+            snapshot = VectorSnapshotFile.read(path);
+        } catch (IOException e) {
+            log.warn("⚠️ [VectorIndex] 快照读取失败，改为全量加载: {}", e.getMessage());
+            return false;
+        }
+        boolean int8 = QUANTIZATION_INT8.equalsIgnoreCase(quantization);
+        if ((snapshot.getEncoding() == VectorSnapshotFile.ENCODING_INT8) != int8) {
+            log.info("[VectorIndex] 快照存储格式与当前配置不一致，改为全量加载");
+            return false;
+        }
+
+        // 增量回放：只有 version 与快照不一致 (或新增) 的行需要读取向量
+        Map<Long, Integer> current = new HashMap<>();
+        for (PersonaVector pv : personaVectorMapper.selectVersions()) {
+            current.put(pv.getPersonaId(), versionOf(pv));
+        }
+        Map<Long, Integer> snapshotVersions = new HashMap<>(snapshot.getRows() * 2);
+        for (int i = 0; i < snapshot.getRows(); i++) {
+            snapshotVersions.put(snapshot.getIds()[i], snapshot.getVersions()[i]);
+        }
+        List<Long> changed = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : current.entrySet()) {
+            if (!entry.getValue().equals(snapshotVersions.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        List<PersonaVector> delta = new ArrayList<>(changed.size());
+        for (int from = 0; from < changed.size(); from += REPLAY_BATCH_SIZE) {
+            delta.addAll(personaVectorMapper.selectBatchIds(
+                    changed.subList(from, Math.min(from + REPLAY_BATCH_SIZE, changed.size()))));
+        }
+
+        int removed;
+        lock.writeLock().lock();
+        try {
+            removed = adoptSnapshotLocked(snapshot, current.keySet());
+            for (PersonaVector pv : delta) {
+                putLocked(pv.getPersonaId(), pv.getEmbedding(), versionOf(pv));
+            }
+            // 与快照完全一致时不需要重写快照
+            if (delta.isEmpty() && removed == 0) {
+                snapshotModCount = modCount;
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("✅ [VectorIndex] 快照加载完成: 快照 {} 条, 回放 {} 条, 删除 {} 条, 当前 {} 条, 耗时 {} ms",
+                snapshot.getRows(), delta.size(), removed, size, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * 定期把索引写入快照文件 (索引无变化时跳过)
+     */
+    @Scheduled(initialDelayString = "${recommend.index.snapshot.interval-ms:600000}",
+            fixedDelayString = "${recommend.index.snapshot.interval-ms:600000}")
+    public void writeSnapshotPeriodically() {
+        if (loaded) writeSnapshotQuietly();
+    }
+
+    /**
+     * 写入快照。持有读锁期间查询不受影响，只会阻塞 upsert
+     */
+    public void writeSnapshot() throws IOException {
+        Path path = snapshotFile();
+        if (path == null) return;
+
+        synchronized (snapshotLock) {
+            long start = System.currentTimeMillis();
+            int rows;
+            lock.readLock().lock();
+            try {
+                if (modCount == snapshotModCount) return;
+
+                VectorSnapshotFile.Snapshot snapshot = new VectorSnapshotFile.Snapshot();
+                snapshot.setEncoding(quantized ? VectorSnapshotFile.ENCODING_INT8 : VectorSnapshotFile.ENCODING_FLOAT32);
+                snapshot.setDimension(dimension);
+                snapshot.setRows(size);
+                snapshot.setCreatedAt(System.currentTimeMillis());
+                snapshot.setIds(ids);
+                snapshot.setVersions(versions);
+                snapshot.setNorms(norms);
+                snapshot.setVectors(matrix);
+                snapshot.setScales(scales);
+                snapshot.setOffsets(offsets);
+                snapshot.setCodes(codes);
+                snapshot.setFullPrecision(fullPrecision);
+                VectorSnapshotFile.write(path, snapshot);
+                snapshotModCount = modCount;
+                rows = size;
+            } finally {
+                lock.readLock().unlock();
+            }
+            log.info("✅ [VectorIndex] 快照已写入 {}: {} 条向量, 耗时 {} ms", path, rows, System.currentTimeMillis() - start);
+        }
+    }
+
+    private void writeSnapshotQuietly() {
+        try {
+            writeSnapshot();
+        } catch (Exception e) {
+            log.warn("⚠️ [VectorIndex] 快照写入失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 新增或更新单个 Persona 的向量
+     */
+    public void upsert(PersonaVector pv) {
+        upsert(pv.getPersonaId(), pv.getEmbedding(), versionOf(pv));
+    }
+
+    public void upsert(Long personaId, float[] embedding) {
+        upsert(personaId, embedding, 0);
+    }
+
+    private void upsert(Long personaId, float[] embedding, int version) {
+        lock.writeLock().lock();
+        try {
+            putLocked(personaId, embedding, version);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 余弦相似度 Top-K 查询
+     * @param query 查询向量
+     * @param excludedIds 需要排除的 Persona (如已关注)
+     * @param topK 返回数量
+     * @return 按相似度降序排列的 personaId
+     */
+    public List<Long> topK(float[] query, Collection<Long> excludedIds, int topK) {
+        ensureLoaded();
+        if (topK <= 0) return new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            if (size == 0) return new ArrayList<>();
+
+            // 零向量 (冷启动) 或维度不一致时无法走图检索，退化为精确扫描
+            boolean comparable = query != null && query.length == dimension;
+            float queryNorm = comparable ? VectorUtils.norm(query) : 0f;
+            boolean rescore = quantized && queryNorm != 0f;
+            BitSet excluded = excludedRowsLocked(excludedIds);
+            List<Long> candidates = searchLocked(comparable ? query : null, queryNorm, excluded,
+                    rescore ? Math.max(topK, rescoreCandidates) : topK);
+            return rescore ? rescoreLocked(query, queryNorm, candidates, topK) : candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 评估当前引擎相对精确扫描的 recall@K
+     * 随机抽取已入库的向量作为查询，分别用当前引擎与全精度精确扫描检索并对比结果。
+     * int8 模式下真值使用堆外的全精度向量计算，引擎耗时包含重排。
+     */
+    public Map<String, Object> evaluateRecall(int k, int samples) {
+        ensureLoaded();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("engine", graph != null ? ENGINE_HNSW : ENGINE_EXACT);
+        report.put("quantization", quantized ? QUANTIZATION_INT8 : QUANTIZATION_NONE);
+        report.put("size", size);
+        report.put("k", k);
+        if (size == 0 || k <= 0 || samples <= 0) return report;
+
+        Random random = new Random(7L);
+        long[] engineNanos = new long[samples];
+        long[] exactNanos = new long[samples];
+        long hits = 0;
+        long expected = 0;
+
+        for (int i = 0; i < samples; i++) {
+            float[] query;
+            float queryNorm;
+            List<Long> truth;
+            List<Long> approx;
+            long t0;
+            long t1;
+            long t2;
+            lock.readLock().lock();
+            try {
+                int row = random.nextInt(size);
+                queryNorm = norms[row];
+                if (queryNorm == 0f) continue;
+                if (quantized) {
+                    query = new float[dimension];
+                    fullPrecision.get(row, query);
+                } else {
+                    query = Arrays.copyOfRange(matrix, row * dimension, (row + 1) * dimension);
+                }
+
+                t0 = System.nanoTime();
+                truth = quantized ? fullPrecisionTopKLocked(query, queryNorm, k) : exactTopK(query, queryNorm, null, k);
+                t1 = System.nanoTime();
+                approx = searchLocked(query, queryNorm, null, quantized ? Math.max(k, rescoreCandidates) : k);
+                if (quantized) {
+                    approx = rescoreLocked(query, queryNorm, approx, k);
+                }
+                t2 = System.nanoTime();
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            exactNanos[i] = t1 - t0;
+            engineNanos[i] = t2 - t1;
+            Set<Long> truthSet = new HashSet<>(truth);
+            for (Long id : approx) {
+                if (truthSet.contains(id)) hits++;
+            }
+            expected += truth.size();
+        }
+
+        report.put("samples", samples);
+        report.put("recall", expected == 0 ? 1.0 : (double) hits / expected);
+        report.put("engineP50Micros", percentile(engineNanos, 0.50) / 1000);
+        report.put("engineP99Micros", percentile(engineNanos, 0.99) / 1000);
+        report.put("exactP50Micros", percentile(exactNanos, 0.50) / 1000);
+        report.put("exactP99Micros", percentile(exactNanos, 0.99) / 1000);
+        return report;
+    }
+
+    // 把需要排除的 personaId 映射为行号位图，扫描时按行号 O(1) 判断，不再逐行查 HashSet<Long>
+    // 调用方需持有读锁；没有需要排除的行时返回 null
+    private BitSet excludedRowsLocked(Collection<Long> excludedIds) {
+        if (excludedIds == null || excludedIds.isEmpty()) return null;
+        BitSet rows = null;
+        for (Long id : excludedIds) {
+            Integer row = rowOf.get(id);
+            if (row == null) continue;
+            if (rows == null) rows = new BitSet(size);
+            rows.set(row);
+        }
+        return rows;
+    }
+
+    // 调用方需持有读锁
+    private List<Long> searchLocked(float[] query, float queryNorm, BitSet excluded, int topK) {
+        if (graph != null && queryNorm != 0f) {
+            return hnswTopK(query, queryNorm, excluded, topK);
+        }
+        return exactTopK(query, queryNorm, excluded, topK);
+    }
+
+    // 调用方需持有读锁
+    private List<Long> exactTopK(float[] query, float queryNorm, BitSet excluded, int topK) {
+        // 一对多批量打分 (SIMD)，再单次遍历放入固定容量的小顶堆挑选 Top-K
+        float[] scores = new float[size];
+        if (quantized) {
+            Int8Quantizer.cosineBatch(query, queryNorm, codes, scales, offsets, norms, size, scores);
+        } else {
+            VectorUtils.cosineBatch(query, queryNorm, matrix, norms, dimension, size, scores);
+        }
+
+        TopKSelector selector = new TopKSelector(topK);
+        for (int row = 0; row < size; row++) {
+            if (excluded != null && excluded.get(row)) continue;
+            selector.offer(row, scores[row]);
+        }
+
+        return idsOf(selector.drainDescending());
+    }
+
+    // 调用方需持有读锁
+    private List<Long> hnswTopK(float[] query, float queryNorm, BitSet excluded, int topK) {
+        // 预先归一化查询向量，图内打分时只需除以候选向量的模长
+        float[] normalized = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            normalized[i] = query[i] / queryNorm;
+        }
+        // 被排除的节点仍会占用候选队列，ef 需相应放大
+        int ef = Math.max(hnswEfSearch, topK + (excluded == null ? 0 : excluded.cardinality()));
+        IntPredicate accept = excluded == null ? null : row -> !excluded.get(row);
+        int[] rows;
+        if (quantized) {
+            float normalizedSum = VectorUtils.sum(normalized);
+            rows = graph.search(node -> norms[node] == 0f ? 0f
+                    : Int8Quantizer.dot(normalized, normalizedSum, codes, scales[node], offsets[node], node) / norms[node],
+                    topK, ef, accept);
+        } else {
+            rows = graph.search(normalized, topK, ef, accept);
+        }
+        return idsOf(rows);
+    }
+
+    /**
+     * 用堆外的全精度向量对粗排候选重新打分，返回前 topK 个
+     * 调用方需持有读锁 (候选行号与本次检索来自同一份索引)
+     */
+    private List<Long> rescoreLocked(float[] query, float queryNorm, List<Long> candidates, int topK) {
+        if (candidates.isEmpty()) return candidates;
+        float[] row = new float[dimension];
+        TopKSelector selector = new TopKSelector(topK);
+        for (Long id : candidates) {
+            int r = rowOf.get(id);
+            fullPrecision.get(r, row);
+            selector.offer(r, norms[r] == 0f ? 0f : VectorUtils.dot(query, row) / (queryNorm * norms[r]));
+        }
+        return idsOf(selector.drainDescending());
+    }
+
+    // 全精度精确扫描 (int8 模式下召回评估的真值)，调用方需持有读锁
+    private List<Long> fullPrecisionTopKLocked(float[] query, float queryNorm, int topK) {
+        float[] row = new float[dimension];
+        TopKSelector selector = new TopKSelector(topK);
+        for (int r = 0; r < size; r++) {
+            fullPrecision.get(r, row);
+            selector.offer(r, norms[r] == 0f ? 0f : VectorUtils.dot(query, row) / (queryNorm * norms[r]));
+        }
+        return idsOf(selector.drainDescending());
+    }
+
+    private List<Long> idsOf(int[] rows) {
+        List<Long> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(ids[row]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) load();
+            }
+        }
+    }
+
+    private Path snapshotFile() {
+        return (snapshotPath == null || snapshotPath.isBlank()) ? null : Paths.get(snapshotPath);
+    }
+
+    private static int versionOf(PersonaVector pv) {
+        return pv.getVersion() != null ? pv.getVersion() : 0;
+    }
+
+    // 调用方需持有写锁
+    private void resetLocked() {
+        ids = new long[0];
+        versions = new int[0];
+        matrix = new float[0];
+        norms = new float[0];
+        codes = new byte[0];
+        scales = new float[0];
+        offsets = new float[0];
+        fullPrecision = null;
+        quantized = QUANTIZATION_INT8.equalsIgnoreCase(quantization);
+        rowOf.clear();
+        size = 0;
+        dimension = 0;
+        graphVectors = new MatrixVectors();
+        graph = ENGINE_HNSW.equalsIgnoreCase(engine)
+                ? new HnswGraph(hnswM, hnswEfConstruction, graphVectors, 42L)
+                : null;
+        modCount++;
+    }
+
+    /**
+     * 直接接管快照中的数组作为索引存储 (不逐行拷贝)，并丢弃数据库中已不存在的行
+     * 调用方需持有写锁
+     * @return 丢弃的行数
+     */
+    private int adoptSnapshotLocked(VectorSnapshotFile.Snapshot snapshot, Set<Long> alive) {
+        resetLocked();
+        int rows = snapshot.getRows();
+        dimension = snapshot.getDimension();
+        ids = snapshot.getIds();
+        versions = snapshot.getVersions();
+        norms = snapshot.getNorms();
+        if (quantized) {
+            codes = snapshot.getCodes();
+            scales = snapshot.getScales();
+            offsets = snapshot.getOffsets();
+            fullPrecision = snapshot.getFullPrecision();
+        } else {
+            matrix = snapshot.getVectors();
+        }
+
+        float[] buffer = new float[dimension];
+        int kept = 0;
+        for (int row = 0; row < rows; row++) {
+            if (!alive.contains(ids[row])) continue;
+            if (row != kept) moveRowLocked(row, kept, buffer);
+            rowOf.put(ids[kept], kept);
+            kept++;
+        }
+        size = kept;
+        if (graph != null) {
+            for (int row = 0; row < size; row++) {
+                graph.insert(row);
+            }
+        }
+        return rows - kept;
+    }
+
+    private void moveRowLocked(int from, int to, float[] buffer) {
+        ids[to] = ids[from];
+        versions[to] = versions[from];
+        norms[to] = norms[from];
+        if (quantized) {
+            System.arraycopy(codes, from * dimension, codes, to * dimension, dimension);
+            scales[to] = scales[from];
+            offsets[to] = offsets[from];
+            fullPrecision.copy(from, to, buffer);
+        } else {
+            System.arraycopy(matrix, from * dimension, matrix, to * dimension, dimension);
+        }
+    }
+
+    // 调用方需持有写锁
+    private void putLocked(Long personaId, float[] embedding, int version) {
+        if (personaId == null || embedding == null || embedding.length == 0) return;
+
+        if (dimension == 0) {
+            dimension = embedding.length;
+        } else if (embedding.length != dimension) {
+            log.warn("⚠️ [VectorIndex] 向量维度不一致, personaId={}, 期望 {}, 实际 {}", personaId, dimension, embedding.length);
+            return;
+        }
+
+        Integer row = rowOf.get(personaId);
+        if (row == null) {
+            ensureCapacity(size + 1);
+            row = size++;
+            ids[row] = personaId;
+            rowOf.put(personaId, row);
+        }
+
+        modCount++;
+        versions[row] = version;
+        norms[row] = VectorUtils.norm(embedding);
+        if (quantized) {
+            Int8Quantizer.quantize(embedding, codes, scales, offsets, row);
+            if (fullPrecision == null) fullPrecision = new OffHeapVectorStore(dimension);
+            fullPrecision.put(row, embedding);
+        } else {
+            System.arraycopy(embedding, 0, matrix, row * dimension, dimension);
+        }
+
+        if (graph != null) {
+            graphVectors.invalidate();
+            graph.insert(row);
+        }
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= ids.length) return;
+        int capacity = Math.max(INITIAL_CAPACITY, Math.max(rows, ids.length + (ids.length >> 1)));
+        ids = Arrays.copyOf(ids, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        norms = Arrays.copyOf(norms, capacity);
+        if (quantized) {
+            codes = Arrays.copyOf(codes, capacity * dimension);
+            scales = Arrays.copyOf(scales, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+        } else {
+            matrix = Arrays.copyOf(matrix, capacity * dimension);
+        }
+    }
+
+    private static long percentile(long[] values, double p) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * 供 HNSW 图使用的打分回调，直接读取矩阵中的行
+     * int8 模式下先还原其中一行，再与另一行的编码打分；建图在写锁内进行，复用同一个缓冲区即可
+     */
+    private class MatrixVectors implements HnswGraph.Vectors {
+        private float[] decoded = new float[0];
+        private float decodedSum;
+        private int decodedRow = -1;
+
+        @Override
+        public float similarity(int a, int b) {
+            float na = norms[a];
+            float nb = norms[b];
+            if (na == 0f || nb == 0f) return 0f;
+            if (quantized) {
+                decode(a);
+                return Int8Quantizer.dot(decoded, decodedSum, codes, scales[b], offsets[b], b) / (na * nb);
+            }
+            return VectorUtils.dot(matrix, a * dimension, matrix, b * dimension, dimension) / (na * nb);
+        }
+
+        @Override
+        public float similarity(float[] normalizedQuery, int node) {
+            float n = norms[node];
+            if (n == 0f) return 0f;
+            if (quantized) {
+                return Int8Quantizer.dot(normalizedQuery, VectorUtils.sum(normalizedQuery), codes, scales[node], offsets[node], node) / n;
+            }
+            return VectorUtils.dot(normalizedQuery, 0, matrix, node * dimension, dimension) / n;
+        }
+
+        private void decode(int row) {
+            if (decoded.length != dimension) {
+                decoded = new float[dimension];
+                decodedRow = -1;
+            }
+            if (row == decodedRow) return;
+            Int8Quantizer.dequantize(codes, scales[row], offsets[row], row, decoded);
+            decodedSum = VectorUtils.sum(decoded);
+            decodedRow = row;
+        }
+
+        // 行向量被 upsert 覆盖后，缓存的还原结果失效
+        void invalidate() {
+            decodedRow = -1;
+        }
+    }
+}
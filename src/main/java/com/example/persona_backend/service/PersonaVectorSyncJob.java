@@ -0,0 +1,298 @@
+package com.example.persona_backend.service;
+
+import com.example.persona_backend.entity.JobCheckpoint;
+import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.entity.PersonaVector;
+import com.example.persona_backend.event.PersonaVectorChangedEvent;
+import com.example.persona_backend.mapper.JobCheckpointMapper;
+import com.example.persona_backend.mapper.PersonaMapper;
+import com.example.persona_backend.mapper.PersonaVectorMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persona 向量同步后台任务
+ * 按主键游标分页，用反连接只取出还没有向量的 Persona，每页交给固定大小的线程池批量向量化并写入；
+ * Embedding 调用经 EmbeddingService 的令牌桶限流。已连续完成的最大主键作为断点持久化，
+ * 任务中断 (停止 / 进程重启) 后从断点继续；正常完成后断点归零，下一轮从头扫描。
+ */
+@Slf4j
+@Component
+public class PersonaVectorSyncJob {
+
+    public static final String JOB_NAME = "persona-vector-sync";
+
+    public static final String STATE_IDLE = "IDLE";
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_STOPPING = "STOPPING";
+    public static final String STATE_STOPPED = "STOPPED";
+    public static final String STATE_COMPLETED = "COMPLETED";
+    public static final String STATE_FAILED = "FAILED";
+
+    @Autowired
+    private PersonaMapper personaMapper;
+    @Autowired
+    private PersonaVectorMapper personaVectorMapper;
+    @Autowired
+    private JobCheckpointMapper checkpointMapper;
+    @Autowired
+    private EmbeddingService embeddingService;
+    @Autowired
+    private PersonaVectorIndex personaVectorIndex;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${recommend.vector-sync.page-size:256}")
+    private int pageSize = 256;
+
+    @Value("${recommend.vector-sync.workers:4}")
+    private int workers = 4;
+
+    // 启动时发现上次任务未正常结束 (断点状态为 RUNNING) 则自动继续
+    @Value("${recommend.vector-sync.resume-on-startup:true}")
+    private boolean resumeOnStartup = true;
+
+    private volatile String state = STATE_IDLE;
+    private volatile boolean stopRequested;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile long startCursor;
+    private volatile long fetchedCursor;
+    private volatile String lastError;
+
+    // 断点推进：页号连续完成后才前移，保证断点之前的数据都已处理
+    private final TreeMap<Long, Long> completedPages = new TreeMap<>();
+    private long nextPageToCommit;
+    private volatile long committedCursor;
+
+    private final AtomicInteger pages = new AtomicInteger();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        if (!resumeOnStartup) return;
+        try {
+            JobCheckpoint checkpoint = checkpointMapper.selectById(JOB_NAME);
+            if (checkpoint != null && STATE_RUNNING.equals(checkpoint.getStatus())) {
+                log.info("🔁 [VectorSync] 上次同步未完成，从断点 {} 继续", checkpoint.getCursorId());
+                start(false);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ [VectorSync] 读取断点失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 启动同步任务 (异步执行)
+     * @param fromStart true 时忽略断点从头扫描
+     * @return 已有任务在运行时返回 false
+     */
+    public synchronized boolean start(boolean fromStart) {
+        if (STATE_RUNNING.equals(state) || STATE_STOPPING.equals(state)) return false;
+
+        long cursor = fromStart ? 0L : loadCheckpoint();
+        state = STATE_RUNNING;
+        stopRequested = false;
+        startedAt = System.currentTimeMillis();
+        finishedAt = 0L;
+        startCursor = cursor;
+        fetchedCursor = cursor;
+        committedCursor = cursor;
+        lastError = null;
+        synchronized (completedPages) {
+            completedPages.clear();
+            nextPageToCommit = 0L;
+        }
+        pages.set(0);
+        succeeded.set(0);
+        failed.set(0);
+        skipped.set(0);
+        saveCheckpoint(cursor, STATE_RUNNING);
+
+        Thread coordinator = new Thread(() -> run(cursor), "persona-vector-sync");
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return true;
+    }
+
+    /**
+     * 请求停止：不再拉取新页，已提交的页处理完后结束，断点保留
+     */
+    public synchronized boolean stop() {
+        if (!STATE_RUNNING.equals(state)) return false;
+        stopRequested = true;
+        state = STATE_STOPPING;
+        return true;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        long ok = succeeded.get();
+        long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+        long elapsed = startedAt > 0 ? end - startedAt : 0L;
+        status.put("state", state);
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("elapsedMs", elapsed);
+        status.put("startCursor", startCursor);
+        status.put("checkpoint", committedCursor);
+        status.put("fetchedCursor", fetchedCursor);
+        status.put("pages", pages.get());
+        status.put("succeeded", ok);
+        status.put("failed", failed.get());
+        status.put("skipped", skipped.get());
+        status.put("throughputPerSec", elapsed == 0 ? 0.0 : ok * 1000.0 / elapsed);
+        status.put("workers", workers);
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    private void run(long cursor) {
+        AtomicInteger seq = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, workers), r -> {
+            Thread t = new Thread(r, "persona-vector-sync-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // 限制在途页数，避免拉取速度远超处理速度时堆积内存
+        Semaphore inFlight = new Semaphore(Math.max(1, workers) * 2);
+        String finalState = STATE_COMPLETED;
+        try {
+            long pageNo = 0;
+            while (!stopRequested) {
+                List<Long> ids = personaMapper.selectIdsWithoutVector(cursor, pageSize);
+                if (ids == null || ids.isEmpty()) break;
+                cursor = ids.get(ids.size() - 1);
+                fetchedCursor = cursor;
+
+                inFlight.acquire();
+                long page = pageNo++;
+                long pageEnd = cursor;
+                pool.submit(() -> {
+                    try {
+                        processPage(ids);
+                    } catch (Exception e) {
+                        failed.addAndGet(ids.size());
+                        lastError = e.getMessage();
+                        log.error("❌ [VectorSync] 第 {} 页处理失败", page, e);
+                    } finally {
+                        completePage(page, pageEnd);
+                        inFlight.release();
+                    }
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.info("⏳ [VectorSync] 等待在途任务完成: {}", status());
+            }
+            if (stopRequested) finalState = STATE_STOPPED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finalState = STATE_STOPPED;
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            finalState = STATE_FAILED;
+            log.error("❌ [VectorSync] 同步任务失败", e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // 正常完成后断点归零；停止或失败时保留断点，下次从断点继续
+        saveCheckpoint(STATE_COMPLETED.equals(finalState) ? 0L : committedCursor, finalState);
+        finishedAt = System.currentTimeMillis();
+        state = finalState;
+        log.info("✅ [VectorSync] 同步结束: {}", status());
+    }
+
+    private void processPage(List<Long> ids) {
+        pages.incrementAndGet();
+        List<Persona> personas = personaMapper.selectBatchIds(ids);
+
+        List<String> texts = new ArrayList<>(personas.size());
+        for (Persona persona : personas) {
+            texts.add(EmbeddingService.personaText(persona));
+        }
+
+        List<float[]> vectors = embeddingService.embedAll(texts);
+        for (int i = 0; i < personas.size(); i++) {
+            float[] vector = vectors.get(i);
+            if (vector == null) {
+                failed.incrementAndGet();
+                continue;
+            }
+            PersonaVector pv = new PersonaVector();
+            pv.setPersonaId(personas.get(i).getId());
+            pv.setEmbedding(vector);
+            pv.setVersion(1);
+            LocalDateTime changedAt = LocalDateTime.now();
+            try {
+                personaVectorMapper.insert(pv);
+            } catch (DuplicateKeyException e) {
+                // 同步期间已由其他途径生成了向量
+                skipped.incrementAndGet();
+                continue;
+            }
+            // 同步写入内存索引，新向量立即可被召回
+            personaVectorIndex.upsert(pv);
+            succeeded.incrementAndGet();
+            // 没有向量时就已被关注的 Persona，关注者质心里缺了这一项，需要补上
+            try {
+                eventPublisher.publishEvent(new PersonaVectorChangedEvent(pv.getPersonaId(), null, vector, changedAt));
+            } catch (Exception e) {
+                log.warn("⚠️ [VectorSync] 失效关注者质心失败 personaId={}: {}", pv.getPersonaId(), e.getMessage());
+            }
+        }
+    }
+
+    private void completePage(long page, long pageEnd) {
+        // 在锁内写断点，保证多个 worker 写入的断点单调递增
+        synchronized (completedPages) {
+            completedPages.put(page, pageEnd);
+            Long advanced = null;
+            while (completedPages.containsKey(nextPageToCommit)) {
+                advanced = completedPages.remove(nextPageToCommit);
+                nextPageToCommit++;
+            }
+            if (advanced != null) {
+                committedCursor = advanced;
+                saveCheckpoint(advanced, STATE_RUNNING);
+            }
+        }
+    }
+
+    private long loadCheckpoint() {
+        JobCheckpoint checkpoint = checkpointMapper.selectById(JOB_NAME);
+        if (checkpoint == null || checkpoint.getCursorId() == null) return 0L;
+        return checkpoint.getCursorId();
+    }
+
+    private void saveCheckpoint(long cursor, String status) {
+        JobCheckpoint checkpoint = new JobCheckpoint();
+        checkpoint.setJobName(JOB_NAME);
+        checkpoint.setCursorId(cursor);
+        checkpoint.setStatus(status);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        try {
+            if (checkpointMapper.updateById(checkpoint) == 0) {
+                checkpointMapper.insert(checkpoint);
+            }
+        } catch (Exception e) {
+            // 断点写入失败只影响恢复位置，不中断任务
+            log.warn("⚠️ [VectorSync] 保存断点失败: {}", e.getMessage());
+        }
+    }
+}
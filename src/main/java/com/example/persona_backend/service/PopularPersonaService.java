@@ -0,0 +1,138 @@
+package com.example.persona_backend.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.persona_backend.dto.PersonaRecommendationDto;
+import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.mapper.PersonaMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 热门 Persona 排行 (冷启动推荐)
+ * 定期按 关注数 / 近期聊天量 / 近期点赞数 计算公开 Persona 的热度，排好序的推荐结果常驻内存。
+ * 既没有画像也没有关注的新用户目标向量为零向量，向量召回无法区分候选，直接返回该排行，
+ * 不再全量打分，也不调用大模型精排。
+ */
+@Slf4j
+@Service
+public class PopularPersonaService {
+
+    @Autowired
+    private PersonaMapper personaMapper;
+
+    // 排行保留的条数
+    @Value("${recommend.popular.size:50}")
+    private int size = 50;
+
+    // 聊天量与点赞数只统计最近多少天
+    @Value("${recommend.popular.window-days:7}")
+    private int windowDays = 7;
+
+    @Value("${recommend.popular.follow-weight:3.0}")
+    private double followWeight = 3.0;
+
+    @Value("${recommend.popular.chat-weight:0.2}")
+    private double chatWeight = 0.2;
+
+    @Value("${recommend.popular.like-weight:1.0}")
+    private double likeWeight = 1.0;
+
+    private volatile List<PersonaRecommendationDto> ranking = List.of();
+    private volatile LocalDateTime refreshedAt;
+
+    private final AtomicLong served = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refreshOnStartup() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // 排行为空时冷启动请求仍走原有召回流程
+            log.error("❌ [Popular] 启动时计算热门排行失败", e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${recommend.popular.refresh-ms:600000}",
+            fixedDelayString = "${recommend.popular.refresh-ms:600000}")
+    public void refreshPeriodically() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // 保留上一轮结果
+            log.error("❌ [Popular] 刷新热门排行失败", e);
+        }
+    }
+
+    /**
+     * 重新计算热门排行；有热度数据的 Persona 不足 size 个时用最新创建的公开 Persona 补齐
+     */
+    public void refresh() {
+        long start = System.currentTimeMillis();
+        List<Long> ids = new ArrayList<>(personaMapper.selectPopularIds(
+                LocalDateTime.now().minusDays(windowDays), followWeight, chatWeight, likeWeight, size));
+
+        Map<Long, Persona> byId = new HashMap<>();
+        if (!ids.isEmpty()) {
+            byId.putAll(personaMapper.selectBatchIds(ids).stream()
+                    .collect(Collectors.toMap(Persona::getId, Function.identity())));
+        }
+        if (ids.size() < size) {
+            LambdaQueryWrapper<Persona> query = new LambdaQueryWrapper<>();
+            query.eq(Persona::getIsPublic, true);
+            query.notIn(!ids.isEmpty(), Persona::getId, ids);
+            query.orderByDesc(Persona::getCreatedAt);
+            query.last("LIMIT " + (size - ids.size()));
+            for (Persona p : personaMapper.selectList(query)) {
+                ids.add(p.getId());
+                byId.put(p.getId(), p);
+            }
+        }
+
+        List<PersonaRecommendationDto> dtos = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Persona p = byId.get(id);
+            if (p == null) continue;
+            PersonaRecommendationDto dto = new PersonaRecommendationDto();
+            dto.setId(p.getId());
+            dto.setName(p.getName());
+            dto.setAvatarUrl(p.getAvatarUrl());
+            dto.setTags(p.getPersonalityTags() != null ? Arrays.asList(p.getPersonalityTags().split(",")) : new ArrayList<>());
+            dto.setReason("最近很多人在和 TA 聊天");
+            // 按名次给出匹配度，排名越靠前越高
+            dto.setMatchScore(Math.max(60, 90 - dtos.size()));
+            dtos.add(dto);
+        }
+        ranking = Collections.unmodifiableList(dtos);
+        refreshedAt = LocalDateTime.now();
+        log.info("✅ [Popular] 热门排行已刷新: {} 个, 耗时 {} ms", dtos.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 取排行前 n 个；排行尚未计算时返回空列表
+     */
+    public List<PersonaRecommendationDto> top(int n) {
+        List<PersonaRecommendationDto> current = ranking;
+        if (current.isEmpty()) return List.of();
+        served.incrementAndGet();
+        return new ArrayList<>(current.subList(0, Math.min(n, current.size())));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", ranking.size());
+        stats.put("refreshedAt", refreshedAt != null ? refreshedAt.toString() : null);
+        stats.put("served", served.get());
+        return stats;
+    }
+}
@@ -5,13 +5,17 @@ import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 import com.example.persona_backend.dto.PersonaRecommendationDto;
 import com.example.persona_backend.entity.Persona;
-import com.example.persona_backend.entity.PersonaVector;
 import com.example.persona_backend.entity.UserProfile;
 import com.example.persona_backend.mapper.FollowMapper;
 import com.example.persona_backend.mapper.PersonaMapper;
-import com.example.persona_backend.mapper.PersonaVectorMapper;
 import com.example.persona_backend.mapper.UserProfileMapper;
+import com.example.persona_backend.utils.BulkheadRegistry;
+import com.example.persona_backend.utils.CircuitBreaker;
+import com.example.persona_backend.utils.CircuitBreakerRegistry;
+import com.example.persona_backend.utils.HttpClientRegistry;
+import com.example.persona_backend.utils.VectorUtils;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
 import okhttp3.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -19,21 +23,28 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class RecommendationService {
 
-    @Autowired
-    private PersonaVectorMapper personaVectorMapper;
     @Autowired
     private PersonaMapper personaMapper;
     @Autowired
     private UserProfileMapper userProfileMapper;
     @Autowired
     private FollowMapper followMapper; // 使用已有的 FollowMapper
+    @Autowired
+    private PersonaVectorIndex personaVectorIndex;
+    @Autowired
+    private BehaviorCentroidService behaviorCentroidService;
+    @Autowired
+    private TargetVectorCache targetVectorCache;
+    @Autowired
+    private RerankCache rerankCache;
+    @Autowired
+    private PopularPersonaService popularPersonaService;
 
     @Value("${moonshot.api.key}")
     private String apiKey;
@@ -41,16 +52,51 @@ public class RecommendationService {
     @Value("${moonshot.api.url}")
     private String apiUrl;
 
-    private final OkHttpClient client = new OkHttpClient.Builder()
-            .readTimeout(60, TimeUnit.SECONDS)
-            .build();
+    // Zhipu embedding-2 输出维度
+    private static final int EMBEDDING_DIM = 1024;
+
+    // 冷启动时返回的热门 Persona 数 (与精排挑选的数量一致)
+    private static final int COLD_START_SIZE = 6;
+
+    @Autowired
+    private HttpClientRegistry httpClientRegistry;
+
+    private OkHttpClient client;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @PostConstruct
+    public void init() {
+        client = httpClientRegistry.client(HttpClientRegistry.MOONSHOT);
+    }
 
     /**
      * 核心推荐流程入口
      */
     public List<PersonaRecommendationDto> recommendForUser(Long userId) {
-        // 1. 构建动态目标向量 (V_target)
-        List<Double> targetVector = buildTargetVector(userId);
+        return recommend(userId, true);
+    }
+
+    /**
+     * 预计算推荐列表 (离线任务使用)：L1 精排失败时直接抛出异常，不返回降级结果，避免把降级列表持久化
+     */
+    public List<PersonaRecommendationDto> computeSlate(Long userId) {
+        return recommend(userId, false);
+    }
+
+    private List<PersonaRecommendationDto> recommend(Long userId, boolean allowFallback) {
+        // 1. 构建动态目标向量 (V_target)，画像进化或关注变化前直接复用缓存
+        float[] targetVector = targetVectorCache.getOrCompute(userId, () -> buildTargetVector(userId));
+
+        // 彻底冷启动 (零向量) 时所有候选得分相同，直接返回预计算的热门排行
+        if (VectorUtils.norm(targetVector) == 0f) {
+            List<PersonaRecommendationDto> popular = popularPersonaService.top(COLD_START_SIZE);
+            if (!popular.isEmpty()) return popular;
+        }
 
         // 2. L0 召回：基于向量相似度获取 Top 20 候选人
         List<Persona> candidates = l0VectorRecall(targetVector, userId, 20);
@@ -58,109 +104,46 @@ public class RecommendationService {
         if (candidates.isEmpty()) return new ArrayList<>();
 
         // 3. L1 精排：Kimi 推理生成理由和匹配度
-        return l1CognitiveRerank(userId, candidates);
+        return l1CognitiveRerank(userId, candidates, allowFallback);
     }
 
     // ================== Step 1: 构建目标向量 ==================
-    private List<Double> buildTargetVector(Long userId) {
+    private float[] buildTargetVector(Long userId) {
         // A. 获取 V_self (用户自身画像向量)
         UserProfile profile = userProfileMapper.selectById(userId);
 
         // 如果用户还没有画像（新用户），使用零向量作为起点
-        List<Double> vSelf = (profile != null && profile.getTargetVector() != null)
+        float[] vSelf = (profile != null && profile.getTargetVector() != null)
                 ? profile.getTargetVector()
-                : new ArrayList<>(Collections.nCopies(1024, 0.0));
+                : new float[EMBEDDING_DIM];
 
-        // B. 获取 V_behavior (关注列表平均向量)
-        List<Long> followedIds = followMapper.selectFollowedPersonaIds(userId);
-        List<Double> vBehavior = calculateCentroid(followedIds);
+        // B. 获取 V_behavior (关注列表平均向量，增量维护，一次主键查询)
+        float[] vBehavior = behaviorCentroidService.getBehaviorVector(userId);
 
         // C. 融合: V_target = alpha * V_self + (1-alpha) * V_behavior
         // 如果没有关注任何人，则 100% 依赖用户自身画像；否则 60% 依赖自身，40% 依赖关注行为
-        double alpha = followedIds.isEmpty() ? 1.0 : 0.6;
-
-        // 如果既没画像也没关注（彻底冷启动），返回零向量，L0 会退化为随机或热门
-        return fuseVectors(vSelf, vBehavior, alpha);
-    }
-
-    private List<Double> calculateCentroid(List<Long> pIds) {
-        if (pIds == null || pIds.isEmpty()) {
-            return new ArrayList<>(Collections.nCopies(1024, 0.0));
-        }
+        double alpha = vBehavior == null ? 1.0 : 0.6;
+        if (vBehavior == null) vBehavior = new float[vSelf.length];
 
-        // 批量获取已关注的 Persona 向量
-        List<PersonaVector> vectors = personaVectorMapper.selectBatchIds(pIds);
-
-        if (vectors.isEmpty()) return new ArrayList<>(Collections.nCopies(1024, 0.0));
-
-        // 计算平均值 (Centroid)
-        int dim = vectors.get(0).getEmbedding().size();
-        double[] sum = new double[dim];
-
-        for (PersonaVector pv : vectors) {
-            List<Double> emb = pv.getEmbedding();
-            for (int i = 0; i < dim; i++) {
-                sum[i] += emb.get(i);
-            }
-        }
-
-        List<Double> centroid = new ArrayList<>();
-        for (double s : sum) {
-            centroid.add(s / vectors.size());
-        }
-        return centroid;
-    }
-
-    private List<Double> fuseVectors(List<Double> v1, List<Double> v2, double alpha) {
-        List<Double> result = new ArrayList<>();
-        int size = Math.min(v1.size(), v2.size());
-        if (size == 0) return v1;
-
-        for (int i = 0; i < size; i++) {
-            result.add(v1.get(i) * alpha + v2.get(i) * (1 - alpha));
-        }
-        return result;
+        // 如果既没画像也没关注（彻底冷启动），返回零向量，由 recommend 改走热门排行
+        return VectorUtils.fuse(vSelf, vBehavior, alpha);
     }
 
     // ================== Step 2: L0 向量召回 ==================
-    private List<Persona> l0VectorRecall(List<Double> targetVector, Long userId, int topK) {
+    private List<Persona> l0VectorRecall(float[] targetVector, Long userId, int topK) {
         // 获取已关注 ID 列表，用于过滤
         List<Long> followedIds = followMapper.selectFollowedPersonaIds(userId);
         if (followedIds == null) followedIds = new ArrayList<>();
 
-        // 获取所有候选向量 (生产环境应替换为 Milvus/ElasticSearch)
-        List<PersonaVector> allVectors = personaVectorMapper.selectList(null);
-        if (allVectors == null) return new ArrayList<>();
-
-        final List<Long> finalFollowedIds = followedIds;
-
-        List<Long> topIds = allVectors.stream()
-                .filter(pv -> !finalFollowedIds.contains(pv.getPersonaId())) // 过滤掉已关注的
-                .map(pv -> new AbstractMap.SimpleEntry<>(pv.getPersonaId(), cosineSimilarity(targetVector, pv.getEmbedding())))
-                .sorted((e1, e2) -> Double.compare(e2.getValue(), e1.getValue())) // 降序排列
-                .limit(topK)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        // 在常驻内存索引上打分，不再每次全表扫描 persona_vector
+        List<Long> topIds = personaVectorIndex.topK(targetVector, followedIds, topK);
 
         if (topIds.isEmpty()) return new ArrayList<>();
         return personaMapper.selectBatchIds(topIds);
     }
 
-    private double cosineSimilarity(List<Double> v1, List<Double> v2) {
-        if (v1 == null || v2 == null || v1.size() != v2.size()) return 0.0;
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-        for (int i = 0; i < v1.size(); i++) {
-            dotProduct += v1.get(i) * v2.get(i);
-            normA += Math.pow(v1.get(i), 2);
-            normB += Math.pow(v2.get(i), 2);
-        }
-        return (normA == 0 || normB == 0) ? 0.0 : dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
-    }
-
     // ================== Step 3: L1 大模型精排 ==================
-    private List<PersonaRecommendationDto> l1CognitiveRerank(Long userId, List<Persona> candidates) {
+    private List<PersonaRecommendationDto> l1CognitiveRerank(Long userId, List<Persona> candidates, boolean allowFallback) {
         // 1. 构造 Prompt 数据
         JSONArray candidatesJson = new JSONArray();
         for (Persona p : candidates) {
@@ -180,34 +163,26 @@ public class RecommendationService {
 
         String userPrompt = "候选列表：" + candidatesJson.toString();
 
-        // 2. 调用 Kimi
+        // 2. 调用 Kimi：相同用户 + 相同候选 + 相同画像版本直接复用结果，并发的相同请求合并为一次调用
+        List<Long> candidateIds = candidates.stream().map(Persona::getId).collect(Collectors.toList());
+        String cacheKey = RerankCache.key(userId, candidateIds, profileVersion(userId));
         try {
-            String jsonResult = callKimiForReasoning(systemPrompt, userPrompt);
-            JSONArray resultArray = JSON.parseArray(jsonResult);
-
-            // 3. 组装最终 DTO
-            List<PersonaRecommendationDto> dtos = new ArrayList<>();
-            for (int i = 0; i < resultArray.size(); i++) {
-                JSONObject res = resultArray.getJSONObject(i);
-                Long pid = res.getLong("id");
-
-                Persona original = candidates.stream().filter(p -> p.getId().equals(pid)).findFirst().orElse(null);
-                if (original != null) {
-                    PersonaRecommendationDto dto = new PersonaRecommendationDto();
-                    dto.setId(original.getId());
-                    dto.setName(original.getName());
-                    dto.setAvatarUrl(original.getAvatarUrl());
-                    dto.setTags(original.getPersonalityTags() != null ? Arrays.asList(original.getPersonalityTags().split(",")) : new ArrayList<>());
-                    dto.setReason(res.getString("reason"));
-                    dto.setMatchScore(res.getInteger("matchScore"));
-                    dtos.add(dto);
+            List<PersonaRecommendationDto> result = rerankCache.getOrLoad(cacheKey,
+                    () -> parseRerankResult(callKimiForReasoning(systemPrompt, userPrompt), candidates));
+            rerankCache.rememberForUser(userId, result);
+            return result;
+        } catch (Exception e) {
+            if (!allowFallback) throw new IllegalStateException("L1 rerank failed for user " + userId, e);
+            if (e instanceof CircuitBreaker.OpenException) {
+                // 熔断期间优先返回该用户上一次的精排结果 (推荐理由仍由大模型生成)
+                List<PersonaRecommendationDto> last = rerankCache.lastForUser(userId, candidateIds);
+                if (!last.isEmpty()) {
+                    log.warn("⚠️ [Rerank] {}，返回上次精排结果 userId={}", e.getMessage(), userId);
+                    return last;
                 }
             }
-            return dtos;
-
-        } catch (Exception e) {
             log.error("L1 Rerank Failed", e);
-            // 降级策略：如果 AI 失败，直接返回前 3 个
+            // 降级策略：如果 AI 失败，直接返回前 3 个 (不写入缓存)
             return candidates.stream().limit(3).map(p -> {
                 PersonaRecommendationDto dto = new PersonaRecommendationDto();
                 dto.setId(p.getId());
@@ -219,6 +194,35 @@ public class RecommendationService {
         }
     }
 
+    // 画像版本取 TargetVectorCache 的内存失效计数 (画像进化时递增)，不再每次查询 user_profile
+    private long profileVersion(Long userId) {
+        return targetVectorCache.version(userId);
+    }
+
+    // 3. 组装最终 DTO
+    private List<PersonaRecommendationDto> parseRerankResult(String jsonResult, List<Persona> candidates) {
+        JSONArray resultArray = JSON.parseArray(jsonResult);
+
+        List<PersonaRecommendationDto> dtos = new ArrayList<>();
+        for (int i = 0; i < resultArray.size(); i++) {
+            JSONObject res = resultArray.getJSONObject(i);
+            Long pid = res.getLong("id");
+
+            Persona original = candidates.stream().filter(p -> p.getId().equals(pid)).findFirst().orElse(null);
+            if (original != null) {
+                PersonaRecommendationDto dto = new PersonaRecommendationDto();
+                dto.setId(original.getId());
+                dto.setName(original.getName());
+                dto.setAvatarUrl(original.getAvatarUrl());
+                dto.setTags(original.getPersonalityTags() != null ? Arrays.asList(original.getPersonalityTags().split(",")) : new ArrayList<>());
+                dto.setReason(res.getString("reason"));
+                dto.setMatchScore(res.getInteger("matchScore"));
+                dtos.add(dto);
+            }
+        }
+        return dtos;
+    }
+
     private String callKimiForReasoning(String sys, String user) throws IOException {
         JSONObject body = new JSONObject();
         body.put("model", "moonshot-v1-8k");
@@ -234,11 +238,15 @@ public class RecommendationService {
                 .post(RequestBody.create(body.toString(), MediaType.parse("application/json")))
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("Kimi API failed: " + response.code());
-            String res = response.body().string();
-            String content = JSON.parseObject(res).getJSONArray("choices").getJSONObject(0).getJSONObject("message").getString("content");
-            return content.replaceAll("```json", "").replaceAll("```", "").trim();
-        }
+        // 熔断或精排名额已满时直接抛出，由调用方降级
+        return circuitBreakerRegistry.get(CircuitBreakerRegistry.MOONSHOT).call(() ->
+                bulkheadRegistry.get(BulkheadRegistry.MOONSHOT_RERANK).call(() -> {
+                    try (Response response = client.newCall(request).execute()) {
+                        if (!response.isSuccessful()) throw new IOException("Kimi API failed: " + response.code());
+                        String res = response.body().string();
+                        String content = JSON.parseObject(res).getJSONArray("choices").getJSONObject(0).getJSONObject("message").getString("content");
+                        return content.replaceAll("```json", "").replaceAll("```", "").trim();
+                    }
+                }));
     }
 }
\ No newline at end of file
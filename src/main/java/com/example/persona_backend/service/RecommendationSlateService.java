@@ -0,0 +1,313 @@
+package com.example.persona_backend.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.example.persona_backend.dto.PersonaRecommendationDto;
+import com.example.persona_backend.entity.RecommendationSlate;
+import com.example.persona_backend.event.BehaviorCentroidChangedEvent;
+import com.example.persona_backend.event.FollowChangedEvent;
+import com.example.persona_backend.event.ProfileEvolvedEvent;
+import com.example.persona_backend.mapper.ChatMessageMapper;
+import com.example.persona_backend.mapper.RecommendationSlateMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预计算推荐列表 (slate)
+ * 后台任务定期为近期活跃用户跑完整的 L0 召回 + L1 精排，结果写入 recommendation_slate 表；
+ * 推荐接口先按主键读取 slate，未命中 (或已过期 / 已失效) 时才实时计算。
+ * 画像进化或关注变化会删除该用户的 slate，下次请求走实时计算。
+ * 定时触发和管理接口都只启动后台协调线程后立即返回，不占用 Spring 的单线程调度器。
+ */
+@Slf4j
+@Service
+public class RecommendationSlateService {
+
+    @Autowired
+    private RecommendationService recommendationService;
+    @Autowired
+    private RecommendationSlateMapper slateMapper;
+    @Autowired
+    private ChatMessageMapper chatMessageMapper;
+
+    @Value("${recommend.slate.enabled:true}")
+    private boolean enabled = true;
+
+    // 最近多少小时内发过消息的用户算活跃用户
+    @Value("${recommend.slate.active-window-hours:72}")
+    private int activeWindowHours = 72;
+
+    // 单轮最多预计算的用户数
+    @Value("${recommend.slate.max-users:2000}")
+    private int maxUsers = 2000;
+
+    // 并发线程数，同时也是 Kimi 并发调用的上限
+    @Value("${recommend.slate.threads:4}")
+    private int threads = 4;
+
+    // slate 超过该时长不再使用
+    @Value("${recommend.slate.max-age-minutes:120}")
+    private long maxAgeMinutes = 120;
+
+    private ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Thread coordinator;
+
+    // 当前 (或最近) 一轮的进度
+    private volatile long startedAt;
+    private volatile int totalUsers;
+    private final AtomicInteger doneUsers = new AtomicInteger();
+
+    // 最近的失效时间：任务开始后才失效的用户，本次结果作废
+    private final ConcurrentHashMap<Long, Long> invalidatedAt = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger seq = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "slate-worker-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) executor.shutdownNow();
+        // 未开始的任务已被丢弃，协调线程不再等待它们
+        Thread t = coordinator;
+        if (t != null) t.interrupt();
+    }
+
+    /**
+     * 推荐接口入口：优先返回预计算结果，未命中时实时计算
+     */
+    public List<PersonaRecommendationDto> getRecommendation(Long userId) {
+        List<PersonaRecommendationDto> slate = getSlate(userId);
+        if (slate != null) {
+            hits.incrementAndGet();
+            return slate;
+        }
+        misses.incrementAndGet();
+        return recommendationService.recommendForUser(userId);
+    }
+
+    /**
+     * 读取有效的 slate，不存在或已过期时返回 null
+     */
+    public List<PersonaRecommendationDto> getSlate(Long userId) {
+        RecommendationSlate slate = slateMapper.selectById(userId);
+        if (slate == null || slate.getItems() == null || slate.getComputedAt() == null) return null;
+        if (slate.getComputedAt().isBefore(LocalDateTime.now().minusMinutes(maxAgeMinutes))) return null;
+        try {
+            return JSON.parseArray(slate.getItems(), PersonaRecommendationDto.class);
+        } catch (Exception e) {
+            log.warn("⚠️ [Slate] 解析失败, userId={}", userId, e);
+            return null;
+        }
+    }
+
+    @Scheduled(initialDelayString = "${recommend.slate.interval-ms:1800000}",
+            fixedDelayString = "${recommend.slate.interval-ms:1800000}")
+    public void precomputePeriodically() {
+        if (enabled && !start()) {
+            log.info("⏭️ [Slate] 上一轮预计算尚未结束，跳过");
+        }
+    }
+
+    /**
+     * 启动一轮预计算 (异步执行)，进度通过 status() 查询
+     * @return 上一轮尚未结束时返回 false
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) return false;
+        Thread t = new Thread(() -> {
+            try {
+                runOnce();
+            } catch (Exception e) {
+                log.error("❌ [Slate] 预计算任务失败", e);
+            } finally {
+                coordinator = null;
+                running.set(false);
+            }
+        }, "slate-precompute");
+        t.setDaemon(true);
+        coordinator = t;
+        try {
+            t.start();
+        } catch (RuntimeException | Error e) {
+            coordinator = null;
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * 为近期活跃用户批量预计算 slate (同步执行，调用方阻塞到本轮结束)
+     * @return 成功写入的用户数
+     */
+    public int precomputeActiveUsers() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("⏭️ [Slate] 上一轮预计算尚未结束，跳过");
+            return 0;
+        }
+        try {
+            return runOnce();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // 按用户拆分到固定大小的线程池并发执行，调用方需已持有 running 标记
+    private int runOnce() {
+        long start = System.currentTimeMillis();
+        startedAt = start;
+        totalUsers = 0;
+        doneUsers.set(0);
+        try {
+            // 只需保留本轮开始之后的失效记录
+            invalidatedAt.values().removeIf(t -> t < start);
+
+            List<Long> userIds = chatMessageMapper.selectActiveUserIds(
+                    LocalDateTime.now().minusHours(activeWindowHours), maxUsers);
+            if (userIds == null || userIds.isEmpty()) return 0;
+            totalUsers = userIds.size();
+
+            List<Future<Boolean>> futures = new ArrayList<>(userIds.size());
+            for (Long userId : userIds) {
+                futures.add(executor.submit(() -> precomputeForUser(userId)));
+            }
+
+            int written = 0;
+            int failed = 0;
+            for (Future<Boolean> f : futures) {
+                try {
+                    if (f.get()) written++;
+                } catch (ExecutionException e) {
+                    failed++;
+                }
+                doneUsers.incrementAndGet();
+            }
+
+            long cost = System.currentTimeMillis() - start;
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("finishedAt", LocalDateTime.now().toString());
+            run.put("users", userIds.size());
+            run.put("written", written);
+            run.put("failed", failed);
+            run.put("costMs", cost);
+            lastRun = run;
+            log.info("✅ [Slate] 预计算完成: 活跃用户 {}, 写入 {}, 失败 {}, 耗时 {} ms", userIds.size(), written, failed, cost);
+            return written;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    /**
+     * 计算并写入单个用户的 slate；L1 精排失败时抛出异常，不写入降级结果
+     * @return 计算期间用户被失效时返回 false
+     */
+    public boolean precomputeForUser(Long userId) {
+        long started = System.currentTimeMillis();
+        List<PersonaRecommendationDto> items;
+        try {
+            items = recommendationService.computeSlate(userId);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ [Slate] 预计算失败, userId={}: {}", userId, e.getMessage());
+            throw e;
+        }
+        if (invalidatedSince(userId, started)) return false;
+
+        RecommendationSlate slate = new RecommendationSlate();
+        slate.setUserId(userId);
+        slate.setItems(JSON.toJSONString(items));
+        slate.setComputedAt(LocalDateTime.now());
+        try {
+            slateMapper.insert(slate);
+        } catch (DuplicateKeyException e) {
+            slateMapper.updateById(slate);
+        }
+
+        // 写入之后再检查一次：失效事件先删除后写入的情况下，撤销本次写入
+        if (invalidatedSince(userId, started)) {
+            slateMapper.deleteById(userId);
+            return false;
+        }
+        return true;
+    }
+
+    public void invalidate(Long userId) {
+        invalidatedAt.put(userId, System.currentTimeMillis());
+        slateMapper.deleteById(userId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProfileEvolved(ProfileEvolvedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFollowChanged(FollowChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    // 关注的 Persona 向量变化后，这些用户的 V_behavior 已失效，预计算结果一次批量删除
+    @EventListener
+    public void onBehaviorCentroidChanged(BehaviorCentroidChangedEvent event) {
+        long now = System.currentTimeMillis();
+        event.getUserIds().forEach(userId -> invalidatedAt.put(userId, now));
+        slateMapper.deleteBatchIds(event.getUserIds());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    /**
+     * 当前 (或最近) 一轮预计算的进度
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("startedAt", startedAt);
+        status.put("users", totalUsers);
+        status.put("done", doneUsers.get());
+        status.put("lastRun", lastRun);
+        return status;
+    }
+
+    private boolean invalidatedSince(Long userId, long since) {
+        Long t = invalidatedAt.get(userId);
+        return t != null && t >= since;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.persona_backend.service;
+
+import com.example.persona_backend.dto.PersonaRecommendationDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * L1 大模型精排结果缓存 + 请求合并 (single-flight)
+ * key = hash(userId + 有序候选 id + 画像版本)，同一用户反复刷新发现页时候选列表不变，直接复用精排结果；
+ * 相同 key 的并发请求只有一个会真正调用 Kimi，其余等待同一个结果。
+ * 只缓存成功的结果，失败 (降级) 不缓存。
+ * 另外按用户保留最近一次成功的精排结果 (不受 TTL 限制)，大模型熔断期间作为降级结果返回。
+ */
+@Slf4j
+@Component
+public class RerankCache {
+
+    @Value("${recommend.rerank-cache.ttl-seconds:600}")
+    private long ttlSeconds = 600;
+
+    @Value("${recommend.rerank-cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    // 所有条目 TTL 相同，插入顺序即过期顺序
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<List<PersonaRecommendationDto>>> inFlight = new ConcurrentHashMap<>();
+    // userId -> 最近一次成功的精排结果，按访问顺序淘汰
+    private final LinkedHashMap<Long, List<PersonaRecommendationDto>> lastByUser = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+
+    private static final class Entry {
+        final List<PersonaRecommendationDto> value;
+        final long expiresAt;
+
+        Entry(List<PersonaRecommendationDto> value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static String key(Long userId, List<Long> candidateIds, long profileVersion) {
+        StringBuilder sb = new StringBuilder().append(userId).append('|').append(profileVersion);
+        for (Long id : candidateIds) {
+            sb.append('|').append(id);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 是 JDK 必备算法，不会发生
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 命中缓存直接返回；否则合并同 key 的并发请求，只调用一次 loader
+     * loader 抛出的异常会原样传给所有等待者，由调用方各自降级
+     */
+    public List<PersonaRecommendationDto> getOrLoad(String key, Callable<List<PersonaRecommendationDto>> loader) throws Exception {
+        List<PersonaRecommendationDto> cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<List<PersonaRecommendationDto>> mine = new CompletableFuture<>();
+        CompletableFuture<List<PersonaRecommendationDto>> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            try {
+                return leader.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        try {
+            // 上一个 leader 可能刚写完缓存并退出
+            cached = lookup(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                cached = loader.call();
+                put(key, cached);
+            }
+            mine.complete(cached);
+            return cached;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * 记录用户最近一次成功的精排结果
+     */
+    public synchronized void rememberForUser(Long userId, List<PersonaRecommendationDto> value) {
+        lastByUser.put(userId, Collections.unmodifiableList(new ArrayList<>(value)));
+        if (lastByUser.size() > maxEntries) {
+            Iterator<Long> it = lastByUser.keySet().iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * 用户最近一次成功的精排结果中仍在当前候选集里的部分；没有时返回空列表
+     * 候选集会随关注关系变化，已关注或已下架的 Persona 不会被返回
+     */
+    public List<PersonaRecommendationDto> lastForUser(Long userId, Collection<Long> candidateIds) {
+        List<PersonaRecommendationDto> last;
+        synchronized (this) {
+            last = lastByUser.get(userId);
+        }
+        if (last == null) return List.of();
+        Set<Long> allowed = new HashSet<>(candidateIds);
+        List<PersonaRecommendationDto> result = new ArrayList<>();
+        for (PersonaRecommendationDto dto : last) {
+            if (allowed.contains(dto.getId())) result.add(dto);
+        }
+        if (!result.isEmpty()) staleServed.incrementAndGet();
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("users", lastByUser.size());
+        }
+        stats.put("inFlight", inFlight.size());
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("coalesced", coalesced.get());
+        stats.put("staleServed", staleServed.get());
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        return stats;
+    }
+
+    private synchronized List<PersonaRecommendationDto> lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private synchronized void put(String key, List<PersonaRecommendationDto> value) {
+        long now = System.currentTimeMillis();
+        entries.remove(key);
+        entries.put(key, new Entry(Collections.unmodifiableList(new ArrayList<>(value)), now + ttlSeconds * 1000));
+
+        // 先清理过期条目，仍超出上限时淘汰最早写入的
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry eldest = it.next();
+            if (eldest.expiresAt > now && entries.size() <= maxEntries) break;
+            it.remove();
+        }
+    }
+}
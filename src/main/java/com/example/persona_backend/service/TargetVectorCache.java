@@ -0,0 +1,150 @@
+package com.example.persona_backend.service;
+
+import com.example.persona_backend.event.BehaviorCentroidChangedEvent;
+import com.example.persona_backend.event.FollowChangedEvent;
+import com.example.persona_backend.event.ProfileEvolvedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * 融合后的目标向量 (V_target) 缓存，按 userId 存放
+ * V_target 只会在画像进化或关注关系变化时改变，两者都会发布事件使对应用户的缓存失效。
+ * 按估算的字节数做 LRU 淘汰，而不是按条目数，维度变化时也不会超出内存预算。
+ * 注意：返回的数组与缓存共享，调用方不能修改。
+ */
+@Slf4j
+@Component
+public class TargetVectorCache {
+
+    // LinkedHashMap 节点 + Long key + 数组对象头的估算开销
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+    private static final int STAMP_STRIPES = 256;
+
+    @Value("${recommend.target-cache.max-bytes:67108864}")
+    private long maxBytes = 64L * 1024 * 1024;
+
+    private final LinkedHashMap<Long, float[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    // 失效时间戳 (按 userId 分段)：计算期间发生过失效的结果不写入缓存，避免旧值覆盖
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * 读取缓存，未命中时调用 loader 计算并写入
+     */
+    public float[] getOrCompute(Long userId, Supplier<float[]> loader) {
+        synchronized (this) {
+            float[] cached = entries.get(userId);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+
+        long stamp = stamps.get(stripe(userId));
+        float[] value = loader.get();
+        if (value != null) {
+            put(userId, value, stamp);
+        }
+        return value;
+    }
+
+    /**
+     * 用户的失效计数 (按分段)：画像进化、关注变化时递增，可作为不查库的用户数据版本号
+     * 分段冲突只会让版本号多变化一次，不会漏掉变化；仅在本实例内有效
+     */
+    public long version(Long userId) {
+        return stamps.get(stripe(userId));
+    }
+
+    public void invalidate(Long userId) {
+        stamps.incrementAndGet(stripe(userId));
+        synchronized (this) {
+            float[] removed = entries.remove(userId);
+            if (removed != null) {
+                currentBytes -= sizeOf(removed);
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProfileEvolved(ProfileEvolvedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    // 关注事务提交后再失效，避免并发请求在提交前把旧值重新写回缓存
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFollowChanged(FollowChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    // 关注的 Persona 向量变化后，这些用户的 V_behavior 已失效
+    @EventListener
+    public void onBehaviorCentroidChanged(BehaviorCentroidChangedEvent event) {
+        event.getUserIds().forEach(this::invalidate);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", currentBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private void put(Long userId, float[] value, long stamp) {
+        long size = sizeOf(value);
+        if (size > maxBytes) return;
+
+        synchronized (this) {
+            // 计算期间该用户 (所在分段) 被失效过，丢弃本次结果
+            if (stamps.get(stripe(userId)) != stamp) return;
+
+            float[] previous = entries.put(userId, value);
+            if (previous != null) currentBytes -= sizeOf(previous);
+            currentBytes += size;
+
+            Iterator<Map.Entry<Long, float[]>> it = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && it.hasNext()) {
+                Map.Entry<Long, float[]> eldest = it.next();
+                currentBytes -= sizeOf(eldest.getValue());
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static long sizeOf(float[] value) {
+        return ENTRY_OVERHEAD_BYTES + (long) value.length * Float.BYTES;
+    }
+
+    private static int stripe(Long userId) {
+        return Long.hashCode(userId) & (STAMP_STRIPES - 1);
+    }
+}
@@ -2,18 +2,33 @@ package com.example.persona_backend.service;
 
 import com.alibaba.fastjson2.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.persona_backend.config.AsyncConfig;
 import com.example.persona_backend.entity.ChatMessage;
 import com.example.persona_backend.entity.UserProfile;
+import com.example.persona_backend.event.ProfileEvolvedEvent;
 import com.example.persona_backend.mapper.ChatMessageMapper;
 import com.example.persona_backend.mapper.UserProfileMapper;
-import com.example.persona_backend.utils.ZhipuAiUtils;
+import com.example.persona_backend.utils.KeyedDebounceQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -27,40 +42,169 @@ public class UserProfileService {
     private ChatMessageMapper chatMessageMapper;
 
     @Autowired
-    private ZhipuAiUtils zhipuAiUtils;
+    private EmbeddingService embeddingService;
 
     @Autowired
     private AiService aiService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    @Qualifier(AsyncConfig.PROFILE_EVOLUTION_EXECUTOR)
+    private Executor profileEvolutionExecutor;
+
+    // 每多少次对话触发一次画像进化
+    @Value("${profile.chat-count.evolve-every:10}")
+    private int evolveEvery = 10;
+
+    // 单条批量累加语句最多包含的用户数
+    @Value("${profile.chat-count.batch-size:500}")
+    private int batchSize = 500;
+
+    // 同一用户在该时间内的多次进化请求合并为一次 (距最后一次请求静默多久后执行)
+    @Value("${profile.evolution.debounce-ms:30000}")
+    private long debounceMs = 30000;
+
+    // 持续活跃的用户最多推迟多久
+    @Value("${profile.evolution.max-delay-ms:120000}")
+    private long maxDelayMs = 120000;
+
+    // 同时执行的画像进化数；不超过线程池核心线程数，任务不会堆积在线程池队列里
+    @Value("${profile.evolution.max-concurrent:2}")
+    private int maxConcurrent = 2;
+
+    @Value("${profile.evolution.threads:2}")
+    private int evolutionThreads = 2;
+
+    // 最多同时等待进化的用户数
+    @Value("${profile.evolution.max-pending:10000}")
+    private int maxPending = 10000;
+
+    private KeyedDebounceQueue<Long> evolutionQueue;
+
+    // 尚未写入数据库的聊天计数增量 (userId -> 增量)
+    private final ConcurrentHashMap<Long, LongAdder> pendingChats = new ConcurrentHashMap<>();
+    // 计数器开始空闲的时间，只在 flushChatCounts 内访问
+    private final Map<Long, Long> idleSince = new HashMap<>();
+    private static final long IDLE_EVICT_MS = 60_000;
+
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedUsers = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong evolutions = new AtomicLong();
+    private final AtomicLong evolutionFailures = new AtomicLong();
+    private final AtomicLong evolutionMillis = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (maxConcurrent > evolutionThreads) {
+            throw new IllegalStateException("profile.evolution.max-concurrent (" + maxConcurrent
+                    + ") must not exceed profile.evolution.threads (" + evolutionThreads + ")");
+        }
+        evolutionQueue = new KeyedDebounceQueue<>("Evolution", debounceMs, maxDelayMs, maxConcurrent, maxPending,
+                profileEvolutionExecutor, this::evolveProfile);
+    }
+
     /**
-     * 每次聊天后调用：检查是否需要更新画像
-     * 如果用户画像不存在，会进行懒加载（自动创建）
+     * 每次聊天后调用：只在内存中累加计数，不访问数据库
+     * 增量由 flushChatCounts 定时批量写入；累计次数跨过 evolveEvery 的整数倍时触发画像进化
      */
-    @Async // 异步执行，不阻塞聊天接口
     public void checkAndEvolveProfile(Long userId) {
-        UserProfile profile = userProfileMapper.selectById(userId);
+        checks.incrementAndGet();
+        pendingChats.computeIfAbsent(userId, k -> new LongAdder()).increment();
+    }
 
-        // 1. 懒加载：初始化新用户的画像记录
-        if (profile == null) {
-            log.info("👤 [Profile] 初始化新用户画像 UserId: {}", userId);
-            profile = new UserProfile();
-            profile.setUserId(userId);
-            profile.setChatCount(0);
-            userProfileMapper.insert(profile);
+    /**
+     * 把内存中的计数增量批量写入 user_profile，并为跨过阈值的用户提交画像进化
+     * 画像不存在的用户由批量语句直接创建 (懒加载)；写入失败的增量放回内存，下一轮重试
+     */
+    @Scheduled(initialDelayString = "${profile.chat-count.flush-ms:2000}",
+            fixedDelayString = "${profile.chat-count.flush-ms:2000}")
+    @PreDestroy
+    public synchronized void flushChatCounts() {
+        Map<Long, Long> deltas = drainPendingChats();
+        if (deltas.isEmpty()) return;
+
+        List<Long> userIds = new ArrayList<>(deltas.keySet());
+        for (int from = 0; from < userIds.size(); from += batchSize) {
+            List<Long> batch = userIds.subList(from, Math.min(userIds.size(), from + batchSize));
+            try {
+                writeBatch(batch, deltas);
+            } catch (Exception e) {
+                flushFailures.incrementAndGet();
+                batch.forEach(id -> pendingChats.computeIfAbsent(id, k -> new LongAdder()).add(deltas.get(id)));
+                log.error("❌ [Profile] 聊天计数写入失败，{} 个用户的增量留待下轮重试", batch.size(), e);
+                continue;
+            }
+            try {
+                triggerEvolutions(batch, deltas);
+            } catch (Exception e) {
+                // 计数已写入，不再重试；本批用户等下一次跨过阈值再进化
+                log.error("❌ [Profile] 读取聊天计数失败，跳过本批画像进化检查", e);
+            }
         }
+        evolutionQueue.drain();
+    }
 
-        // 2. 累加计数
-        profile.setChatCount(profile.getChatCount() + 1);
+    /**
+     * 派发防抖窗口已到期的画像进化，近期消息多的用户优先
+     */
+    @Scheduled(initialDelayString = "${profile.evolution.dispatch-ms:1000}",
+            fixedDelayString = "${profile.evolution.dispatch-ms:1000}")
+    public void dispatchEvolutions() {
+        evolutionQueue.drain();
+    }
 
-        // 3. 策略：每 10 次对话触发一次更新
-        if (profile.getChatCount() % 10 == 0) {
-            evolveProfile(userId, profile);
-        } else {
-            userProfileMapper.updateById(profile);
+    private Map<Long, Long> drainPendingChats() {
+        Map<Long, Long> deltas = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, LongAdder> entry : pendingChats.entrySet()) {
+            Long userId = entry.getKey();
+            long delta = entry.getValue().sumThenReset();
+            if (delta > 0) {
+                deltas.put(userId, delta);
+                idleSince.remove(userId);
+                continue;
+            }
+            // 长时间没有新消息的用户才移除计数器，避免移除时还有线程持有旧计数器导致丢计数
+            long since = idleSince.computeIfAbsent(userId, k -> now);
+            if (now - since >= IDLE_EVICT_MS && pendingChats.remove(userId, entry.getValue())) {
+                idleSince.remove(userId);
+                long late = entry.getValue().sumThenReset();
+                if (late > 0) pendingChats.computeIfAbsent(userId, k -> new LongAdder()).add(late);
+            }
         }
+        return deltas;
     }
 
-    private void evolveProfile(Long userId, UserProfile profile) {
+    private void writeBatch(List<Long> userIds, Map<Long, Long> deltas) {
+        List<UserProfile> rows = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            UserProfile row = new UserProfile();
+            row.setUserId(userId);
+            row.setChatCount(deltas.get(userId).intValue());
+            rows.add(row);
+        }
+        userProfileMapper.incrementChatCounts(rows);
+        flushes.incrementAndGet();
+        flushedUsers.addAndGet(userIds.size());
+    }
+
+    // 读回累加后的总数，本批增量跨过 evolveEvery 的整数倍时加入进化队列，以新增消息数作为优先级
+    private void triggerEvolutions(List<Long> userIds, Map<Long, Long> deltas) {
+        for (UserProfile profile : userProfileMapper.selectChatCounts(userIds)) {
+            long delta = deltas.get(profile.getUserId());
+            long after = profile.getChatCount() == null ? 0 : profile.getChatCount();
+            long before = after - delta;
+            if (after / evolveEvery > before / evolveEvery) {
+                evolutionQueue.submit(profile.getUserId(), delta);
+            }
+        }
+    }
+
+    private void evolveProfile(Long userId) {
         log.info("🧬 [Evolution] 开始进化用户画像 UserId: {}", userId);
 
         // 1. 获取最近 50 条聊天记录作为上下文
@@ -71,6 +215,8 @@ public class UserProfileService {
         List<ChatMessage> history = chatMessageMapper.selectList(query);
 
         if (history.isEmpty()) return;
+        long start = System.currentTimeMillis();
+        evolutions.incrementAndGet();
 
         // 拼接对话文本
         String chatContext = history.stream()
@@ -90,20 +236,43 @@ public class UserProfileService {
                 if (result.containsKey("tags")) tags = result.getString("tags");
             }
 
+            // 只写画像字段，chat_count 由批量累加语句独占维护
+            UserProfile profile = new UserProfile();
+            profile.setUserId(userId);
             profile.setSummary(summary);
             profile.setTags(tags);
 
             // 3. 调用智谱生成向量 (V_self)
-            // 将 summary 和 tags 拼接起来作为 Embedding 的输入
-            List<Double> vector = zhipuAiUtils.generateEmbedding(summary + " " + tags);
-            profile.setTargetVector(vector);
+            // 将 summary 和 tags 拼接起来作为 Embedding 的输入；画像文本未变化时直接命中向量缓存
+            // 生成失败时为 null，updateById 会跳过该列，保留原有向量
+            profile.setTargetVector(embeddingService.embed(summary + " " + tags));
             profile.setLastUpdated(LocalDateTime.now());
 
             userProfileMapper.updateById(profile);
+            // 通知推荐侧：V_self 已变化
+            eventPublisher.publishEvent(new ProfileEvolvedEvent(userId));
             log.info("✅ [Evolution] 用户画像更新完成: {}", summary);
 
         } catch (Exception e) {
+            evolutionFailures.incrementAndGet();
             log.error("❌ [Evolution] 画像更新失败", e);
+        } finally {
+            evolutionMillis.addAndGet(System.currentTimeMillis() - start);
         }
     }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long n = evolutions.get();
+        stats.put("checks", checks.get());
+        stats.put("pendingUsers", pendingChats.size());
+        stats.put("flushes", flushes.get());
+        stats.put("flushedUsers", flushedUsers.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("evolutions", n);
+        stats.put("evolutionFailures", evolutionFailures.get());
+        stats.put("avgEvolutionMs", n == 0 ? 0.0 : (double) evolutionMillis.get() / n);
+        stats.put("evolutionQueue", evolutionQueue.stats());
+        return stats;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+package com.example.persona_backend.utils;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发隔离舱 (Bulkhead)
+ * 限制同时访问某个上游的请求数，并发上限按 AIMD 自动调整：
+ * 调用成功且上限已被用满一半以上时缓慢增加 (每轮约 +1)，上游超时/报错时按比例收缩。
+ * 达到上限的请求最多排队等待 maxWaitMs，排队数超过 maxQueue 或等待超时立即拒绝，
+ * 避免上游变慢时把 Tomcat 工作线程全部阻塞在同一个服务商上。
+ */
+public class AdaptiveBulkhead {
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+    private final int maxQueue;
+    private final double backoffRatio;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+
+    // 以下指标均在 lock 内更新
+    private long acquired;
+    private long queued;
+    private long rejected;
+    private long succeeded;
+    private long dropped;
+    private long queueNanos;
+    private long maxQueueNanos;
+    private long rttNanos;
+
+    /**
+     * @param initialLimit 初始并发上限
+     * @param minLimit 收缩的下限
+     * @param maxLimit 增长的上限
+     * @param maxWaitMs 达到上限时的最长排队时间，0 表示不排队直接拒绝
+     * @param maxQueue 最多同时排队的请求数
+     * @param backoffRatio 上游过载时并发上限的收缩比例
+     */
+    public AdaptiveBulkhead(String name, int initialLimit, int minLimit, int maxLimit,
+                            long maxWaitMs, int maxQueue, double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit) throw new IllegalArgumentException("invalid limits for " + name);
+        if (backoffRatio <= 0 || backoffRatio >= 1) throw new IllegalArgumentException("backoffRatio must be in (0, 1)");
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMs));
+        this.maxQueue = Math.max(0, maxQueue);
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * 获取一个并发名额，必要时排队等待
+     * @throws RejectedException 达到上限且排队已满或等待超时
+     */
+    public Permit acquire() throws RejectedException {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (inFlight < currentLimit()) {
+                return grant(0);
+            }
+            if (maxWaitNanos == 0 || waiting >= maxQueue) {
+                rejected++;
+                throw new RejectedException(name, "并发已满 (" + inFlight + "/" + currentLimit() + ")");
+            }
+            waiting++;
+            queued++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= currentLimit()) {
+                    if (remaining <= 0) {
+                        rejected++;
+                        throw new RejectedException(name, "排队超时");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected++;
+                throw new RejectedException(name, "排队被中断");
+            } finally {
+                waiting--;
+            }
+            return grant(System.nanoTime() - start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在隔离舱内执行一次上游调用
+     * 任务抛出 IOException (超时、连接失败、HTTP 错误) 视为上游过载信号，其余异常不调整并发上限。
+     */
+    public <T> T call(Task<T> task) throws IOException {
+        Permit permit = acquire();
+        boolean ok = false;
+        try {
+            T result = task.run();
+            ok = true;
+            return result;
+        } catch (IOException e) {
+            permit.dropped();
+            throw e;
+        } finally {
+            if (ok) permit.success();
+            else permit.release();
+        }
+    }
+
+    private Permit grant(long waitedNanos) {
+        inFlight++;
+        acquired++;
+        queueNanos += waitedNanos;
+        maxQueueNanos = Math.max(maxQueueNanos, waitedNanos);
+        return new Permit(inFlight);
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    private void onRelease(Permit permit, Outcome outcome) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (outcome == Outcome.SUCCESS) {
+                succeeded++;
+                rttNanos += System.nanoTime() - permit.startNanos;
+                // 只有上限确实被用到时才增长，空闲时不会无限抬高
+                if (permit.inFlightAtStart * 2 >= limit) {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            } else if (outcome == Outcome.DROPPED) {
+                dropped++;
+                limit = Math.max(minLimit, limit * backoffRatio);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", currentLimit());
+            stats.put("inFlight", inFlight);
+            stats.put("waiting", waiting);
+            stats.put("acquired", acquired);
+            stats.put("queued", queued);
+            stats.put("rejected", rejected);
+            stats.put("succeeded", succeeded);
+            stats.put("dropped", dropped);
+            stats.put("avgQueueMs", acquired == 0 ? 0.0 : queueNanos / 1e6 / acquired);
+            stats.put("maxQueueMs", maxQueueNanos / 1e6);
+            stats.put("avgLatencyMs", succeeded == 0 ? 0.0 : rttNanos / 1e6 / succeeded);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private enum Outcome { SUCCESS, DROPPED, IGNORED }
+
+    /**
+     * 一个已获取的并发名额，必须且只会释放一次 (重复释放被忽略)
+     */
+    public final class Permit {
+
+        private final long startNanos = System.nanoTime();
+        private final int inFlightAtStart;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /** 调用成功 */
+        public void success() {
+            finish(Outcome.SUCCESS);
+        }
+
+        /** 上游超时或报错，收缩并发上限 */
+        public void dropped() {
+            finish(Outcome.DROPPED);
+        }
+
+        /** 调用未完成 (如客户端取消)，不调整并发上限 */
+        public void release() {
+            finish(Outcome.IGNORED);
+        }
+
+        private void finish(Outcome outcome) {
+            if (done.compareAndSet(false, true)) onRelease(this, outcome);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Task<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * 隔离舱拒绝请求；继承 IOException，已有的上游异常处理与降级逻辑直接生效
+     */
+    public static class RejectedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String bulkhead;
+
+        public RejectedException(String bulkhead, String reason) {
+            super("[" + bulkhead + "] " + reason);
+            this.bulkhead = bulkhead;
+        }
+
+        public String getBulkhead() {
+            return bulkhead;
+        }
+    }
+}
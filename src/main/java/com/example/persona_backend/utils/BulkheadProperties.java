@@ -0,0 +1,33 @@
+package com.example.persona_backend.utils;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 外部服务隔离舱配置 (bulkhead.*)
+ * 全局默认值作用于所有上游，upstreams.<名称> 下的配置覆盖对应上游
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "bulkhead")
+public class BulkheadProperties {
+    // 达到并发上限时的最长排队时间
+    private long maxWaitMs = 200;
+    private int maxQueue = 32;
+    // 上游过载时并发上限的收缩比例
+    private double backoffRatio = 0.75;
+    private Map<String, Upstream> upstreams = new LinkedHashMap<>();
+
+    @Data
+    public static class Upstream {
+        private Integer initialLimit;
+        private Integer minLimit;
+        private Integer maxLimit;
+        private Long maxWaitMs;
+        private Integer maxQueue;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.persona_backend.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 外部 AI 服务的隔离舱统一管理
+ * 每类上游调用各有一个自适应并发上限，某个服务商变慢时只会占满自己的名额，
+ * 其余请求快速失败并走各自的降级逻辑，不会拖垮聊天以外的接口。
+ */
+@Slf4j
+@Component
+public class BulkheadRegistry {
+
+    public static final String MOONSHOT_CHAT = "moonshot-chat";
+    public static final String MOONSHOT_RERANK = "moonshot-rerank";
+    // 画像分析、动态文案生成与润色
+    public static final String MOONSHOT_TASK = "moonshot-task";
+    public static final String ZHIPU_IMAGE = "zhipu-image";
+    public static final String ZHIPU_EMBEDDING = "zhipu-embedding";
+    public static final String VOLC_ASR = "volc-asr";
+    public static final String VOLC_TTS = "volc-tts";
+
+    // 各上游未配置 max-limit 时的默认并发上限
+    private static final Map<String, Integer> DEFAULT_MAX_LIMITS = Map.of(
+            MOONSHOT_CHAT, 32,
+            MOONSHOT_RERANK, 8,
+            MOONSHOT_TASK, 8,
+            ZHIPU_IMAGE, 4,
+            ZHIPU_EMBEDDING, 4,
+            VOLC_ASR, 16,
+            VOLC_TTS, 16
+    );
+
+    @Autowired
+    private BulkheadProperties properties = new BulkheadProperties();
+
+    private final Map<String, AdaptiveBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public AdaptiveBulkhead get(String upstream) {
+        return bulkheads.computeIfAbsent(upstream, this::create);
+    }
+
+    private AdaptiveBulkhead create(String upstream) {
+        BulkheadProperties.Upstream conf = properties.getUpstreams().getOrDefault(upstream, new BulkheadProperties.Upstream());
+        int maxLimit = conf.getMaxLimit() != null ? conf.getMaxLimit() : DEFAULT_MAX_LIMITS.getOrDefault(upstream, 8);
+        int minLimit = conf.getMinLimit() != null ? conf.getMinLimit() : 1;
+        // 默认从上限的一半起步，由 AIMD 逐步探测
+        int initialLimit = conf.getInitialLimit() != null ? conf.getInitialLimit() : Math.max(minLimit, maxLimit / 2);
+        long maxWaitMs = conf.getMaxWaitMs() != null ? conf.getMaxWaitMs() : properties.getMaxWaitMs();
+        int maxQueue = conf.getMaxQueue() != null ? conf.getMaxQueue() : properties.getMaxQueue();
+
+        log.info("✅ [Bulkhead] {}: limit={} (min={}, max={}), maxWait={}ms, maxQueue={}",
+                upstream, initialLimit, minLimit, maxLimit, maxWaitMs, maxQueue);
+        return new AdaptiveBulkhead(upstream, initialLimit, minLimit, maxLimit,
+                maxWaitMs, maxQueue, properties.getBackoffRatio());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, AdaptiveBulkhead> entry : new TreeMap<>(bulkheads).entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().stats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.persona_backend.utils;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 熔断器 (CLOSED -> OPEN -> HALF_OPEN)
+ * CLOSED：统计最近 windowSize 次调用，调用数达到 minimumCalls 且失败率超过阈值时打开；
+ * OPEN：openMs 内的调用立即失败，调用方直接走降级，不再等待上游超时；
+ * HALF_OPEN：冷却结束后放行 halfOpenProbes 个探测请求，全部成功则关闭，任一失败重新打开。
+ * 只有 IOException (超时、连接失败、HTTP 错误) 记为失败；隔离舱拒绝不是上游故障，不计入统计。
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMs;
+    private final int halfOpenProbes;
+
+    // 最近调用结果的环形窗口，true 表示失败
+    private final boolean[] window;
+    private int windowPos;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    // 每次状态切换加一，旧状态下发出的许可结束时不再计入统计
+    private long generation;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    private long rejected;
+    private long opened;
+
+    /**
+     * @param windowSize 统计失败率的最近调用数
+     * @param minimumCalls 窗口内至少多少次调用才计算失败率
+     * @param failureRateThreshold 打开熔断的失败率 (0, 1]
+     * @param openMs 打开后的冷却时间
+     * @param halfOpenProbes 半开状态放行的探测请求数
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openMs, int halfOpenProbes) {
+        if (windowSize < 1 || minimumCalls < 1) throw new IllegalArgumentException("invalid window for " + name);
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]");
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMs = openMs;
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+    }
+
+    /**
+     * 申请一次调用许可
+     * @throws OpenException 熔断打开中，或半开状态的探测名额已用完
+     */
+    public synchronized Permission acquirePermission() throws OpenException {
+        if (state == State.OPEN) {
+            long remaining = openedAt + openMs - System.currentTimeMillis();
+            if (remaining > 0) {
+                rejected++;
+                throw new OpenException(name, "熔断中，" + remaining + "ms 后重试");
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probeSuccesses >= halfOpenProbes) {
+                rejected++;
+                throw new OpenException(name, "半开探测中");
+            }
+            probesInFlight++;
+        }
+        return new Permission(generation);
+    }
+
+    /**
+     * 在熔断器保护下执行一次调用：IOException 记为失败，其余异常不计入统计
+     */
+    public <T> T call(AdaptiveBulkhead.Task<T> task) throws IOException {
+        Permission permission = acquirePermission();
+        boolean ok = false;
+        try {
+            T result = task.run();
+            ok = true;
+            return result;
+        } catch (AdaptiveBulkhead.RejectedException e) {
+            throw e;
+        } catch (IOException e) {
+            permission.failure();
+            throw e;
+        } finally {
+            if (ok) permission.success();
+            else permission.release();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private synchronized void record(Permission permission, Outcome outcome) {
+        if (permission.generation != generation) return;
+
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (outcome == Outcome.FAILURE) {
+                open();
+            } else if (outcome == Outcome.SUCCESS && ++probeSuccesses >= halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state != State.CLOSED || outcome == Outcome.IGNORED) return;
+
+        boolean failed = outcome == Outcome.FAILURE;
+        if (windowCount == window.length) {
+            if (window[windowPos]) windowFailures--;
+        } else {
+            windowCount++;
+        }
+        window[windowPos] = failed;
+        if (failed) windowFailures++;
+        windowPos = (windowPos + 1) % window.length;
+
+        if (failed && windowCount >= minimumCalls && windowFailures >= failureRateThreshold * windowCount) {
+            open();
+        }
+    }
+
+    private void open() {
+        transition(State.OPEN);
+        openedAt = System.currentTimeMillis();
+        opened++;
+    }
+
+    private void transition(State next) {
+        state = next;
+        generation++;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        if (next == State.CLOSED) {
+            windowPos = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("windowCalls", windowCount);
+        stats.put("windowFailures", windowFailures);
+        stats.put("failureRate", windowCount == 0 ? 0.0 : (double) windowFailures / windowCount);
+        stats.put("opened", opened);
+        stats.put("rejected", rejected);
+        return stats;
+    }
+
+    private enum Outcome { SUCCESS, FAILURE, IGNORED }
+
+    /**
+     * 一次调用许可，结束时必须报告结果；重复报告被忽略
+     */
+    public final class Permission {
+
+        private final long generation;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Permission(long generation) {
+            this.generation = generation;
+        }
+
+        public void success() {
+            finish(Outcome.SUCCESS);
+        }
+
+        public void failure() {
+            finish(Outcome.FAILURE);
+        }
+
+        /** 调用未完成或失败与上游无关，不计入统计 */
+        public void release() {
+            finish(Outcome.IGNORED);
+        }
+
+        private void finish(Outcome outcome) {
+            if (done.compareAndSet(false, true)) record(this, outcome);
+        }
+    }
+
+    /**
+     * 熔断打开时的快速失败；继承 IOException，调用方可按上游故障处理，也可单独捕获走专门的降级
+     */
+    public static class OpenException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String breaker;
+
+        public OpenException(String breaker, String reason) {
+            super("[" + breaker + "] " + reason);
+            this.breaker = breaker;
+        }
+
+        public String getBreaker() {
+            return breaker;
+        }
+
+        // 熔断期间每次调用都会抛出，不需要堆栈
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
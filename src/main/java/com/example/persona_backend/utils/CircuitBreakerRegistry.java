@@ -0,0 +1,55 @@
+package com.example.persona_backend.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 外部 AI 服务熔断器统一管理
+ * 同一服务商的所有调用 (聊天、精排、文案) 共用一个熔断器：服务商整体不可用时一起快速失败。
+ */
+@Slf4j
+@Component
+public class CircuitBreakerRegistry {
+
+    public static final String MOONSHOT = "moonshot";
+
+    @Value("${circuit-breaker.window-size:20}")
+    private int windowSize = 20;
+
+    @Value("${circuit-breaker.minimum-calls:10}")
+    private int minimumCalls = 10;
+
+    @Value("${circuit-breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold = 0.5;
+
+    // 打开后的冷却时间，结束后放行探测请求
+    @Value("${circuit-breaker.open-ms:30000}")
+    private long openMs = 30000;
+
+    @Value("${circuit-breaker.half-open-probes:3}")
+    private int halfOpenProbes = 3;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public CircuitBreaker get(String upstream) {
+        return breakers.computeIfAbsent(upstream, name -> {
+            log.info("✅ [CircuitBreaker] {}: window={}, minimumCalls={}, threshold={}, open={}ms",
+                    name, windowSize, minimumCalls, failureRateThreshold, openMs);
+            return new CircuitBreaker(name, windowSize, minimumCalls, failureRateThreshold, openMs, halfOpenProbes);
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, CircuitBreaker> entry : new TreeMap<>(breakers).entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().stats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,432 @@
+package com.example.persona_backend.utils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW (Hierarchical Navigable Small World) 近似最近邻图
+ * 节点编号由调用方分配 (即向量矩阵中的行号)，图本身不保存向量，只通过 {@link Vectors} 回调打分。
+ * 相似度越大越相近 (余弦相似度)。
+ * 注意：本类不是线程安全的，写入 (insert/update) 与查询的互斥由调用方负责。
+ */
+public class HnswGraph {
+
+    /**
+     * 向量打分回调
+     */
+    public interface Vectors {
+        /** 两个已入图节点之间的相似度 */
+        float similarity(int a, int b);
+
+        /** 查询向量与节点之间的相似度 */
+        float similarity(float[] query, int node);
+    }
+
+    /**
+     * 查询打分回调 (节点与当前查询的相似度)，供需要自定义打分方式的调用方使用，如量化向量
+     */
+    public interface Target {
+        float score(int node);
+    }
+
+    private final int m;
+    private final int maxConn0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Vectors vectors;
+    private final Random random;
+
+    // links[node][level] = {count, n1, n2, ...}
+    private int[][][] links = new int[0][][];
+    private int capacity;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int size;
+
+    /**
+     * @param m 每层最大连接数 (第 0 层为 2m)，越大召回越高、内存和构建耗时越大
+     * @param efConstruction 构建时的候选队列长度
+     */
+    public HnswGraph(int m, int efConstruction, Vectors vectors, long seed) {
+        if (m < 2) throw new IllegalArgumentException("HNSW m must be >= 2");
+        this.m = m;
+        this.maxConn0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.vectors = vectors;
+        this.random = new Random(seed);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int node) {
+        return node < capacity && links[node] != null;
+    }
+
+    /**
+     * 插入新节点
+     */
+    public void insert(int node) {
+        if (contains(node)) {
+            update(node);
+            return;
+        }
+        ensureCapacity(node + 1);
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxConnections(l) + 1];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        connect(node, level);
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * 节点向量发生变化后重新连边
+     * 只重建该节点的出边，其他节点指向它的旧边保留 (HNSW 常见的近似更新做法)
+     */
+    public void update(int node) {
+        if (!contains(node)) {
+            insert(node);
+            return;
+        }
+        if (size == 1) return;
+        connect(node, links[node].length - 1);
+    }
+
+    /**
+     * 近似 Top-K 查询
+     * @param query 查询向量
+     * @param k 返回数量
+     * @param ef 查询时的候选队列长度，越大召回越高、耗时越长
+     * @param accept 结果过滤条件 (如排除已关注)，为 null 时不过滤
+     * @return 按相似度降序排列的节点编号
+     */
+    public int[] search(float[] query, int k, int ef, IntPredicate accept) {
+        return search((Target) n -> vectors.similarity(query, n), k, ef, accept);
+    }
+
+    /**
+     * 使用自定义打分回调的近似 Top-K 查询，参数含义同上
+     */
+    public int[] search(Target target, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0 || k <= 0) return new int[0];
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedySearch(target, ep, l);
+        }
+
+        ScoredHeap results = searchLayer(target, ep, Math.max(ef, k), 0);
+
+        // 小顶堆依次弹出的是分数最低的，倒序填充即为降序
+        int[] sorted = new int[results.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = results.popNode();
+        }
+
+        int[] out = new int[Math.min(k, sorted.length)];
+        int count = 0;
+        for (int node : sorted) {
+            if (count == out.length) break;
+            if (accept == null || accept.test(node)) {
+                out[count++] = node;
+            }
+        }
+        return count == out.length ? out : Arrays.copyOf(out, count);
+    }
+
+    // ================== 构建 ==================
+
+    private void connect(int node, int level) {
+        Target target = n -> vectors.similarity(node, n);
+
+        int ep = entryPoint;
+        if (ep == node) {
+            // 更新入口节点本身时，从它的任一邻居出发
+            ep = anyNeighbor(node);
+            if (ep < 0) return;
+        }
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedySearch(target, ep, l);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            ScoredHeap candidates = searchLayer(target, ep, efConstruction, l);
+
+            // 转为按分数降序的数组，并去掉节点自身
+            int count = candidates.size();
+            int[] candNodes = new int[count];
+            float[] candScores = new float[count];
+            for (int i = count - 1; i >= 0; i--) {
+                candScores[i] = candidates.peekScore();
+                candNodes[i] = candidates.popNode();
+            }
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (candNodes[i] == node) continue;
+                candNodes[kept] = candNodes[i];
+                candScores[kept] = candScores[i];
+                kept++;
+            }
+            count = kept;
+            if (count == 0) continue;
+
+            int[] selected = selectNeighbors(candNodes, candScores, count, maxConnections(l));
+            int[] own = links[node][l];
+            Arrays.fill(own, 0);
+            own[0] = selected.length;
+            System.arraycopy(selected, 0, own, 1, selected.length);
+
+            for (int s : selected) {
+                addLink(s, node, l);
+            }
+            ep = candNodes[0];
+        }
+    }
+
+    private void addLink(int from, int to, int level) {
+        int[] list = links[from][level];
+        int count = list[0];
+        for (int i = 1; i <= count; i++) {
+            if (list[i] == to) return;
+        }
+        int maxConn = maxConnections(level);
+        if (count < maxConn) {
+            list[count + 1] = to;
+            list[0] = count + 1;
+            return;
+        }
+
+        // 已满：在原有邻居 + 新节点中重新挑选
+        int[] nodes = new int[count + 1];
+        float[] scores = new float[count + 1];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = list[i + 1];
+            scores[i] = vectors.similarity(from, nodes[i]);
+        }
+        nodes[count] = to;
+        scores[count] = vectors.similarity(from, to);
+        sortDescending(nodes, scores, count + 1);
+
+        int[] selected = selectNeighbors(nodes, scores, count + 1, maxConn);
+        Arrays.fill(list, 0);
+        list[0] = selected.length;
+        System.arraycopy(selected, 0, list, 1, selected.length);
+    }
+
+    /**
+     * 启发式邻居选择：优先保留彼此分散的邻居，提升图的连通性
+     * 输入需按分数降序排列
+     */
+    private int[] selectNeighbors(int[] nodes, float[] scores, int count, int max) {
+        int[] selected = new int[Math.min(max, count)];
+        boolean[] used = new boolean[count];
+        int selectedCount = 0;
+
+        for (int i = 0; i < count && selectedCount < selected.length; i++) {
+            boolean diverse = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (vectors.similarity(nodes[i], selected[j]) > scores[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[selectedCount++] = nodes[i];
+                used[i] = true;
+            }
+        }
+        // 名额没用完时，用被淘汰的最优候选补齐
+        for (int i = 0; i < count && selectedCount < selected.length; i++) {
+            if (!used[i]) selected[selectedCount++] = nodes[i];
+        }
+        return selected;
+    }
+
+    // ================== 搜索 ==================
+
+    private int greedySearch(Target target, int ep, int level) {
+        int current = ep;
+        float currentScore = target.score(current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] list = neighbors(current, level);
+            if (list == null) break;
+            for (int i = 1; i <= list[0]; i++) {
+                int candidate = list[i];
+                float s = target.score(candidate);
+                if (s > currentScore) {
+                    currentScore = s;
+                    current = candidate;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层 beam search，返回保留了 ef 个最优节点的小顶堆
+     */
+    private ScoredHeap searchLayer(Target target, int ep, int ef, int level) {
+        BitSet visited = new BitSet(capacity);
+        visited.set(ep);
+
+        float epScore = target.score(ep);
+        ScoredHeap candidates = new ScoredHeap(ef, true);
+        ScoredHeap results = new ScoredHeap(ef, false);
+        candidates.push(ep, epScore);
+        results.push(ep, epScore);
+
+        while (candidates.size() > 0) {
+            float bestScore = candidates.peekScore();
+            int best = candidates.popNode();
+            if (results.size() >= ef && bestScore < results.peekScore()) break;
+
+            int[] list = neighbors(best, level);
+            if (list == null) continue;
+            for (int i = 1; i <= list[0]; i++) {
+                int e = list[i];
+                if (visited.get(e)) continue;
+                visited.set(e);
+
+                float s = target.score(e);
+                if (results.size() < ef || s > results.peekScore()) {
+                    candidates.push(e, s);
+                    results.push(e, s);
+                    if (results.size() > ef) results.popNode();
+                }
+            }
+        }
+        return results;
+    }
+
+    private int[] neighbors(int node, int level) {
+        int[][] nodeLinks = links[node];
+        return (nodeLinks != null && level < nodeLinks.length) ? nodeLinks[level] : null;
+    }
+
+    private int anyNeighbor(int node) {
+        int[][] nodeLinks = links[node];
+        for (int[] list : nodeLinks) {
+            if (list[0] > 0) return list[1];
+        }
+        return -1;
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxConn0 : m;
+    }
+
+    private int randomLevel() {
+        double r = random.nextDouble();
+        return (int) (-Math.log(Math.max(r, Double.MIN_VALUE)) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) return;
+        int newCapacity = Math.max(required, Math.max(16, capacity + (capacity >> 1)));
+        links = Arrays.copyOf(links, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private static void sortDescending(int[] nodes, float[] scores, int count) {
+        // 邻居数量很小 (<= 2m)，插入排序即可
+        for (int i = 1; i < count; i++) {
+            int n = nodes[i];
+            float s = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < s) {
+                nodes[j + 1] = nodes[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            nodes[j + 1] = n;
+            scores[j + 1] = s;
+        }
+    }
+
+    /**
+     * 基于原始数组的二叉堆 (节点编号 + 分数)，避免装箱
+     */
+    private static final class ScoredHeap {
+        private final boolean max;
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+
+        ScoredHeap(int initialCapacity, boolean max) {
+            this.max = max;
+            this.nodes = new int[Math.max(initialCapacity + 1, 8)];
+            this.scores = new float[nodes.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float peekScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) break;
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int popNode() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float lastScore = scores[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < size && before(scores[right], scores[child])) child = right;
+                if (!before(scores[child], lastScore)) break;
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return top;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+}
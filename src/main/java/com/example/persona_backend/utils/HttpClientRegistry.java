@@ -0,0 +1,177 @@
+package com.example.persona_backend.utils;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 外部服务 HTTP 客户端统一管理
+ * 每个上游 (Moonshot / 智谱 / 火山引擎 / 生成图片下载) 各用一个 OkHttpClient，独立的连接池与 Dispatcher，
+ * 互不抢占连接；同一上游的所有调用方共用连接，HTTPS 上优先协商 HTTP/2 多路复用。
+ * 调用方需要不同超时时用 client(name).newBuilder() 派生，派生出的客户端仍共用连接池和 Dispatcher。
+ * 注意：Dispatcher 的并发上限只约束异步调用 (enqueue / WebSocket)，同步 execute() 不经过 Dispatcher 排队。
+ */
+@Slf4j
+@Component
+public class HttpClientRegistry {
+
+    public static final String MOONSHOT = "moonshot";
+    public static final String ZHIPU = "zhipu";
+    public static final String VOLC = "volc";
+    // 下载生成的图片等任意 URL
+    public static final String MEDIA = "media";
+
+    // 每个上游连接池保留的空闲连接数
+    @Value("${http.pool.max-idle-connections:32}")
+    private int maxIdleConnections = 32;
+
+    // 空闲连接保活时间，应小于上游服务端的 keep-alive 超时
+    @Value("${http.pool.keep-alive-seconds:120}")
+    private long keepAliveSeconds = 120;
+
+    @Value("${http.dispatcher.max-requests:128}")
+    private int maxRequests = 128;
+
+    // 单个 host 的异步并发上限 (OkHttp 默认只有 5)
+    @Value("${http.dispatcher.max-requests-per-host:64}")
+    private int maxRequestsPerHost = 64;
+
+    @Value("${http.connect-timeout-ms:10000}")
+    private long connectTimeoutMs = 10000;
+
+    @Value("${http.read-timeout-ms:60000}")
+    private long readTimeoutMs = 60000;
+
+    // HTTP/2 连接的心跳间隔，及时发现被中间设备断开的长连接；0 表示关闭
+    @Value("${http.ping-interval-seconds:30}")
+    private long pingIntervalSeconds = 30;
+
+    private final Map<String, OkHttpClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, Metrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * 获取上游对应的客户端，首次使用时创建
+     */
+    public OkHttpClient client(String upstream) {
+        return clients.computeIfAbsent(upstream, this::create);
+    }
+
+    private OkHttpClient create(String upstream) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        Metrics m = metrics.computeIfAbsent(upstream, k -> new Metrics());
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .eventListenerFactory(call -> m);
+        if (pingIntervalSeconds > 0) builder.pingInterval(pingIntervalSeconds, TimeUnit.SECONDS);
+
+        log.info("✅ [HttpClient] 创建上游客户端: {}", upstream);
+        return builder.build();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, OkHttpClient> entry : new TreeMap<>(clients).entrySet()) {
+            OkHttpClient client = entry.getValue();
+            Metrics m = metrics.get(entry.getKey());
+            long acquired = m.connectionsAcquired.get();
+            long connects = m.connectsStarted.get();
+
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("connections", client.connectionPool().connectionCount());
+            s.put("idleConnections", client.connectionPool().idleConnectionCount());
+            s.put("runningAsyncCalls", client.dispatcher().runningCallsCount());
+            // 排队数持续大于 0 说明异步并发已打满
+            s.put("queuedAsyncCalls", client.dispatcher().queuedCallsCount());
+            s.put("inFlightCalls", m.inFlight.get());
+            s.put("maxInFlightCalls", m.maxInFlight.get());
+            s.put("calls", m.callsStarted.get());
+            s.put("failedCalls", m.callsFailed.get());
+            s.put("newConnections", connects);
+            s.put("failedConnects", m.connectsFailed.get());
+            s.put("connectionReuseRate", acquired == 0 ? 0.0 : 1.0 - (double) Math.min(connects, acquired) / acquired);
+            s.put("http2Connections", m.http2Connections.get());
+            stats.put(entry.getKey(), s);
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (OkHttpClient client : clients.values()) {
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+
+    /**
+     * 按上游累计的调用与连接指标 (所有调用共用一个无状态监听器)
+     * WebSocket 连接在关闭前一直计为进行中的调用
+     */
+    private static final class Metrics extends okhttp3.EventListener {
+        final AtomicLong callsStarted = new AtomicLong();
+        final AtomicLong callsFailed = new AtomicLong();
+        final AtomicLong inFlight = new AtomicLong();
+        final AtomicLong maxInFlight = new AtomicLong();
+        final AtomicLong connectsStarted = new AtomicLong();
+        final AtomicLong connectsFailed = new AtomicLong();
+        final AtomicLong connectionsAcquired = new AtomicLong();
+        final AtomicLong http2Connections = new AtomicLong();
+
+        @Override
+        public void callStart(Call call) {
+            callsStarted.incrementAndGet();
+            long now = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(now, Math::max);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            inFlight.decrementAndGet();
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            callsFailed.incrementAndGet();
+            inFlight.decrementAndGet();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectsStarted.incrementAndGet();
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                                  Protocol protocol, IOException ioe) {
+            connectsFailed.incrementAndGet();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            if (protocol == Protocol.HTTP_2) http2Connections.incrementAndGet();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            connectionsAcquired.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.persona_backend.utils;
+
+import java.util.Arrays;
+
+/**
+ * int8 标量量化 (每个向量单独的 scale / offset)
+ * 按向量自身的 [min, max] 线性映射到 [-128, 127]：x ≈ offset + scale * code，
+ * 1024 维向量从 4 KB 降到 1 KB，用于召回粗排，最终排序仍需全精度向量重排。
+ * 编码按行主序存放在一个连续的 byte[] 中，第 row 行从 row * dim 开始。
+ */
+public final class Int8Quantizer {
+
+    private Int8Quantizer() {}
+
+    /**
+     * 量化 src 并写入第 row 行
+     */
+    public static void quantize(float[] src, byte[] codes, float[] scales, float[] offsets, int row) {
+        int dim = src.length;
+        int base = row * dim;
+
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (float x : src) {
+            if (x < min) min = x;
+            if (x > max) max = x;
+        }
+
+        float scale = (max - min) / 255f;
+        if (scale == 0f) {
+            // 常数向量：所有分量都等于 offset
+            Arrays.fill(codes, base, base + dim, (byte) 0);
+            scales[row] = 0f;
+            offsets[row] = min;
+            return;
+        }
+
+        // min 映射到 -128，max 映射到 127
+        float offset = min + 128f * scale;
+        for (int i = 0; i < dim; i++) {
+            int q = Math.round((src[i] - offset) / scale);
+            codes[base + i] = (byte) Math.max(-128, Math.min(127, q));
+        }
+        scales[row] = scale;
+        offsets[row] = offset;
+    }
+
+    /**
+     * 还原第 row 行的近似向量
+     */
+    public static void dequantize(byte[] codes, float scale, float offset, int row, float[] out) {
+        int base = row * out.length;
+        for (int i = 0; i < out.length; i++) {
+            out[i] = offset + scale * codes[base + i];
+        }
+    }
+
+    /**
+     * 全精度 query 与第 row 行量化向量的近似点积
+     * dot(q, offset + scale * code) = offset * sum(q) + scale * dot(q, code)
+     * @param querySum query 各分量之和 (调用方预先计算)
+     */
+    public static float dot(float[] query, float querySum, byte[] codes, float scale, float offset, int row) {
+        int dim = query.length;
+        return offset * querySum + scale * VectorUtils.dot(query, 0, codes, row * dim, dim);
+    }
+
+    /**
+     * 一对多批量打分，与 {@link VectorUtils#cosineBatch} 对应
+     * @param rowNorms 每一行原始向量的模长
+     */
+    public static void cosineBatch(float[] query, float queryNorm, byte[] codes, float[] scales, float[] offsets,
+                                   float[] rowNorms, int rows, float[] out) {
+        if (queryNorm == 0f) {
+            Arrays.fill(out, 0, rows, 0f);
+            return;
+        }
+        float querySum = VectorUtils.sum(query);
+        for (int row = 0; row < rows; row++) {
+            float n = rowNorms[row];
+            out[row] = n == 0f ? 0f : dot(query, querySum, codes, scales[row], offsets[row], row) / (queryNorm * n);
+        }
+    }
+}
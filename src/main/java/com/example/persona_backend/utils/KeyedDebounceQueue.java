@@ -0,0 +1,171 @@
+package com.example.persona_backend.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * 按 key 合并的防抖工作队列
+ * 同一个 key 在窗口内的多次提交合并为一次执行：距最后一次提交静默 debounceMs 后执行，
+ * 持续有新提交时最多推迟 maxDelayMs；同一个 key 同时只会有一个任务在执行，执行期间的新提交排到下一轮。
+ * drain() 按累计权重从高到低派发到 executor，全局同时执行的任务不超过 maxConcurrent。
+ * executor 拒绝任务时必须抛出 RejectedExecutionException (不能静默丢弃)，否则该 key 会一直占着执行名额。
+ */
+@Slf4j
+public class KeyedDebounceQueue<K> {
+
+    private final String name;
+    private final long debounceMs;
+    private final long maxDelayMs;
+    private final int maxConcurrent;
+    private final int maxPending;
+    private final Executor executor;
+    private final Consumer<K> worker;
+
+    // 以下状态均在 this 锁内访问
+    private final Map<K, Pending> pending = new HashMap<>();
+    private final Set<K> running = new HashSet<>();
+    private long submitted;
+    private long coalesced;
+    private long dropped;
+    private long dispatched;
+    private long executed;
+    private long failed;
+    private long waitMillis;
+
+    /**
+     * @param debounceMs 最后一次提交后静默多久才执行
+     * @param maxDelayMs 首次提交后最多推迟多久
+     * @param maxConcurrent 全局同时执行的任务数上限
+     * @param maxPending 最多同时等待的 key 数，超出后新 key 的提交被丢弃
+     * @param worker 实际执行的任务，在 executor 线程中调用
+     */
+    public KeyedDebounceQueue(String name, long debounceMs, long maxDelayMs, int maxConcurrent, int maxPending,
+                              Executor executor, Consumer<K> worker) {
+        if (maxConcurrent < 1) throw new IllegalArgumentException("maxConcurrent must be positive");
+        this.name = name;
+        this.debounceMs = Math.max(0, debounceMs);
+        this.maxDelayMs = Math.max(this.debounceMs, maxDelayMs);
+        this.maxConcurrent = maxConcurrent;
+        this.maxPending = Math.max(1, maxPending);
+        this.executor = executor;
+        this.worker = worker;
+    }
+
+    /**
+     * 提交一次请求
+     * @param weight 本次请求的权重 (如新增的消息数)，等待中的同一 key 权重累加，决定派发顺序
+     * @return false 表示等待队列已满被丢弃
+     */
+    public synchronized boolean submit(K key, long weight) {
+        long now = System.currentTimeMillis();
+        submitted++;
+        Pending p = pending.get(key);
+        if (p != null) {
+            coalesced++;
+            p.lastAt = now;
+            p.weight += weight;
+            return true;
+        }
+        if (pending.size() >= maxPending) {
+            dropped++;
+            if (dropped == 1 || dropped % 100 == 0) {
+                log.warn("⚠️ [{}] 等待队列已满 ({}), 累计丢弃 {} 次提交", name, pending.size(), dropped);
+            }
+            return false;
+        }
+        pending.put(key, new Pending(now, weight));
+        return true;
+    }
+
+    /**
+     * 派发已到期的 key，权重高的优先；返回本次派发的任务数
+     */
+    public int drain() {
+        List<K> ready = new ArrayList<>();
+        synchronized (this) {
+            int slots = maxConcurrent - running.size();
+            if (slots <= 0 || pending.isEmpty()) return 0;
+
+            long now = System.currentTimeMillis();
+            List<Map.Entry<K, Pending>> due = new ArrayList<>();
+            for (Map.Entry<K, Pending> e : pending.entrySet()) {
+                if (!running.contains(e.getKey()) && e.getValue().isDue(now)) due.add(e);
+            }
+            due.sort((a, b) -> Long.compare(b.getValue().weight, a.getValue().weight));
+            for (Map.Entry<K, Pending> e : due.subList(0, Math.min(slots, due.size()))) {
+                waitMillis += now - e.getValue().firstAt;
+                dispatched++;
+                ready.add(e.getKey());
+            }
+            for (K key : ready) {
+                pending.remove(key);
+                running.add(key);
+            }
+        }
+
+        int count = 0;
+        for (K key : ready) {
+            try {
+                executor.execute(() -> run(key));
+                count++;
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    running.remove(key);
+                    dropped++;
+                }
+                log.warn("⚠️ [{}] 线程池拒绝任务: {}", name, key);
+            }
+        }
+        return count;
+    }
+
+    private void run(K key) {
+        boolean ok = false;
+        try {
+            worker.accept(key);
+            ok = true;
+        } catch (Exception e) {
+            log.error("❌ [{}] 任务执行失败: {}", name, key, e);
+        } finally {
+            synchronized (this) {
+                running.remove(key);
+                if (ok) executed++;
+                else failed++;
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("running", running.size());
+        stats.put("submitted", submitted);
+        // 被合并进已在等待的同一 key 的提交数
+        stats.put("coalesced", coalesced);
+        stats.put("dropped", dropped);
+        stats.put("executed", executed);
+        stats.put("failed", failed);
+        stats.put("avgWaitMs", dispatched == 0 ? 0.0 : (double) waitMillis / dispatched);
+        return stats;
+    }
+
+    private final class Pending {
+        final long firstAt;
+        long lastAt;
+        long weight;
+
+        Pending(long now, long weight) {
+            this.firstAt = now;
+            this.lastAt = now;
+            this.weight = weight;
+        }
+
+        boolean isDue(long now) {
+            return now - lastAt >= debounceMs || now - firstAt >= maxDelayMs;
+        }
+    }
+}
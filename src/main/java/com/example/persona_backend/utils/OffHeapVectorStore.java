@@ -0,0 +1,95 @@
+package com.example.persona_backend.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 堆外的 float32 行向量存储 (int8 量化索引的全精度副本，粗排候选在此重排)
+ * 按固定行数分段，每段一个 FloatBuffer：可直接映射快照文件中的 float32 段 (MapMode.PRIVATE，写入不会回写文件)，
+ * 之后新增的行写入 allocateDirect 分配的段。向量不占用 Java 堆，重排时也不再访问数据库。
+ * 本身不做同步，由调用方 (PersonaVectorIndex 的读写锁) 保证并发安全。
+ */
+public final class OffHeapVectorStore {
+
+    // 单段上限 (MappedByteBuffer 不能超过 2 GB)，同时也是直接内存的分配粒度
+    private static final int SEGMENT_BYTES = 1 << 26;
+
+    private final int dimension;
+    private final int rowsPerSegment;
+    private FloatBuffer[] segments = new FloatBuffer[0];
+
+    public OffHeapVectorStore(int dimension) {
+        this.dimension = dimension;
+        this.rowsPerSegment = Math.max(1, SEGMENT_BYTES / (Math.max(1, dimension) * Float.BYTES));
+    }
+
+    /**
+     * 映射文件中从 pos 开始的 rows 行 float32 (小端序)，不拷贝到堆中
+     * PRIVATE 映射要求 channel 以读写方式打开 (写入只落在私有副本中，不会修改文件)，映射在 channel 关闭后仍然有效
+     */
+    public static OffHeapVectorStore map(FileChannel channel, long pos, int rows, int dimension) throws IOException {
+        OffHeapVectorStore store = new OffHeapVectorStore(dimension);
+        if (rows <= 0 || dimension <= 0) return store;
+
+        int count = (rows + store.rowsPerSegment - 1) / store.rowsPerSegment;
+        long segmentBytes = (long) store.rowsPerSegment * dimension * Float.BYTES;
+        store.segments = new FloatBuffer[count];
+        for (int s = 0; s < count; s++) {
+            int n = Math.min(store.rowsPerSegment, rows - s * store.rowsPerSegment);
+            store.segments[s] = channel.map(FileChannel.MapMode.PRIVATE, pos + s * segmentBytes, (long) n * dimension * Float.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+        }
+        return store;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 写入第 row 行，所在段不存在或容量不足时分配
+     */
+    public void put(int row, float[] vector) {
+        writableSegment(row).put(offset(row), vector, 0, dimension);
+    }
+
+    /**
+     * 读取第 row 行到 out (长度至少为 dimension)
+     */
+    public void get(int row, float[] out) {
+        segments[row / rowsPerSegment].get(offset(row), out, 0, dimension);
+    }
+
+    // 用于删除行后的压缩
+    public void copy(int from, int to, float[] buffer) {
+        get(from, buffer);
+        put(to, buffer);
+    }
+
+    private int offset(int row) {
+        return (row % rowsPerSegment) * dimension;
+    }
+
+    private FloatBuffer writableSegment(int row) {
+        int s = row / rowsPerSegment;
+        if (s >= segments.length) {
+            segments = Arrays.copyOf(segments, s + 1);
+        }
+        FloatBuffer segment = segments[s];
+        if (segment == null || segment.capacity() < offset(row) + dimension) {
+            // 映射的最后一段只有快照中的行数，追加时换成完整大小的直接内存段
+            FloatBuffer grown = ByteBuffer.allocateDirect(rowsPerSegment * dimension * Float.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+            if (segment != null) grown.put(0, segment, 0, segment.capacity());
+            segments[s] = grown;
+            segment = grown;
+        }
+        return segment;
+    }
+}
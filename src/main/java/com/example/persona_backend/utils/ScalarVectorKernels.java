@@ -0,0 +1,68 @@
+package com.example.persona_backend.utils;
+
+/**
+ * 标量实现，未开启 jdk.incubator.vector 模块时使用
+ */
+final class ScalarVectorKernels implements VectorKernels {
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float sumOfSquares(float[] v, int offset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            float x = v[offset + i];
+            sum += x * x;
+        }
+        return sum;
+    }
+
+    @Override
+    public double sumOfSquares(double[] v, int offset, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            double x = v[offset + i];
+            sum += x * x;
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(float[] acc, float[] v, int length) {
+        for (int i = 0; i < length; i++) {
+            acc[i] += v[i];
+        }
+    }
+
+    @Override
+    public void addTo(double[] acc, double[] v, int length) {
+        for (int i = 0; i < length; i++) {
+            acc[i] += v[i];
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.persona_backend.utils;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 JDK Vector API 的 SIMD 实现
+ * 需要以 --add-modules jdk.incubator.vector 启动，否则不会被加载
+ */
+final class SimdVectorKernels implements VectorKernels {
+
+    private static final VectorSpecies<Float> FLOAT = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLE = DoubleVector.SPECIES_PREFERRED;
+    // 与 FLOAT 通道数相同的 byte 形状，用于 int8 -> float 转换；通道数不足 8 时 (没有 32 位形状) 退化为标量
+    private static final VectorSpecies<Byte> BYTE = FLOAT.length() >= 8
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(FLOAT.length() * Byte.SIZE))
+            : null;
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(FLOAT);
+        int i = 0;
+        int upper = FLOAT.loopBound(length);
+        for (; i < upper; i += FLOAT.length()) {
+            FloatVector va = FloatVector.fromArray(FLOAT, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector acc = DoubleVector.zero(DOUBLE);
+        int i = 0;
+        int upper = DOUBLE.loopBound(length);
+        for (; i < upper; i += DOUBLE.length()) {
+            DoubleVector va = DoubleVector.fromArray(DOUBLE, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(DOUBLE, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int i = 0;
+        float sum = 0f;
+        if (BYTE != null) {
+            FloatVector acc = FloatVector.zero(FLOAT);
+            int upper = FLOAT.loopBound(length);
+            for (; i < upper; i += FLOAT.length()) {
+                FloatVector va = FloatVector.fromArray(FLOAT, a, aOffset + i);
+                FloatVector vb = (FloatVector) ByteVector.fromArray(BYTE, b, bOffset + i)
+                        .convertShape(VectorOperators.B2F, FLOAT, 0);
+                acc = va.fma(vb, acc);
+            }
+            sum = acc.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float sumOfSquares(float[] v, int offset, int length) {
+        return dot(v, offset, v, offset, length);
+    }
+
+    @Override
+    public double sumOfSquares(double[] v, int offset, int length) {
+        return dot(v, offset, v, offset, length);
+    }
+
+    @Override
+    public void addTo(float[] acc, float[] v, int length) {
+        int i = 0;
+        int upper = FLOAT.loopBound(length);
+        for (; i < upper; i += FLOAT.length()) {
+            FloatVector.fromArray(FLOAT, acc, i)
+                    .add(FloatVector.fromArray(FLOAT, v, i))
+                    .intoArray(acc, i);
+        }
+        for (; i < length; i++) {
+            acc[i] += v[i];
+        }
+    }
+
+    @Override
+    public void addTo(double[] acc, double[] v, int length) {
+        int i = 0;
+        int upper = DOUBLE.loopBound(length);
+        for (; i < upper; i += DOUBLE.length()) {
+            DoubleVector.fromArray(DOUBLE, acc, i)
+                    .add(DoubleVector.fromArray(DOUBLE, v, i))
+                    .intoArray(acc, i);
+        }
+        for (; i < length; i++) {
+            acc[i] += v[i];
+        }
+    }
+}
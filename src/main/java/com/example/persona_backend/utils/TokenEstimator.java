@@ -0,0 +1,45 @@
+package com.example.persona_backend.utils;
+
+/**
+ * 大模型 token 数估算 (不调用分词接口，用于组装上下文时的预算控制)
+ * 按偏保守的比例估算：中日韩字符每个约 1 token，其他字符 (英文、数字、标点、空白) 约 4 个 1 token，
+ * 每条消息另加固定开销 (角色标记等)。估算值通常略高于实际值，按它控制预算不会超出模型窗口。
+ */
+public final class TokenEstimator {
+
+    // 每条消息的角色、分隔符等固定开销
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {}
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) cjk++;
+            else other++;
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * 一条对话消息 (role + content) 的估算 token 数
+     */
+    public static int estimateMessage(String content) {
+        return estimate(content) + MESSAGE_OVERHEAD;
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL
+                // 全角标点与 emoji 同样按 1 token 计
+                || Character.getType(cp) == Character.OTHER_SYMBOL
+                || (cp >= 0x3000 && cp <= 0x303F) || (cp >= 0xFF00 && cp <= 0xFFEF);
+    }
+}
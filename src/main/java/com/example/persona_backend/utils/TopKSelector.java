@@ -0,0 +1,83 @@
+package com.example.persona_backend.utils;
+
+/**
+ * 固定容量的 Top-K 选择器 (行号 + 分数的原始数组小顶堆)
+ * 单次遍历 O(N log K)，不产生装箱对象。堆顶是当前 Top-K 中最差的一个：
+ * 分数更低，或分数相同但行号更大 (保证结果稳定，与全量排序一致)。
+ */
+public final class TopKSelector {
+
+    private final int k;
+    private final int[] rows;
+    private final float[] scores;
+    private int size;
+
+    public TopKSelector(int k) {
+        this.k = Math.max(0, k);
+        this.rows = new int[this.k];
+        this.scores = new float[this.k];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 尝试加入一个候选，不够好时直接丢弃
+     */
+    public void offer(int row, float score) {
+        if (size < k) {
+            siftUp(size++, row, score);
+        } else if (k > 0 && better(row, score, rows[0], scores[0])) {
+            siftDown(row, score);
+        }
+    }
+
+    /**
+     * 取出结果并清空，按分数降序排列
+     */
+    public int[] drainDescending() {
+        int[] out = new int[size];
+        for (int i = out.length - 1; i >= 0; i--) {
+            out[i] = rows[0];
+            int lastRow = rows[--size];
+            float lastScore = scores[size];
+            if (size > 0) siftDown(lastRow, lastScore);
+        }
+        return out;
+    }
+
+    private void siftUp(int i, int row, float score) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(rows[parent], scores[parent], row, score)) break;
+            rows[i] = rows[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        rows[i] = row;
+        scores[i] = score;
+    }
+
+    // 用 (row, score) 替换堆顶并下沉
+    private void siftDown(int row, float score) {
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && better(rows[child], scores[child], rows[right], scores[right])) child = right;
+            if (!better(row, score, rows[child], scores[child])) break;
+            rows[i] = rows[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        rows[i] = row;
+        scores[i] = score;
+    }
+
+    private static boolean better(int rowA, float scoreA, int rowB, float scoreB) {
+        int c = Float.compare(scoreA, scoreB);
+        return c != 0 ? c > 0 : rowA < rowB;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.persona_backend.utils;
+
+/**
+ * 向量计算内核 (SIMD / 标量两套实现)，由 {@link VectorUtils} 在启动时选择
+ */
+interface VectorKernels {
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /** float 与 int8 编码的点积 (量化向量打分) */
+    float dot(float[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    float sumOfSquares(float[] v, int offset, int length);
+
+    double sumOfSquares(double[] v, int offset, int length);
+
+    void addTo(float[] acc, float[] v, int length);
+
+    void addTo(double[] acc, double[] v, int length);
+}
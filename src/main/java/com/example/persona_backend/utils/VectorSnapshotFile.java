@@ -0,0 +1,213 @@
+package com.example.persona_backend.utils;
+
+import lombok.Data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 向量索引快照文件 (小端序)
+ * <pre>
+ * header : magic "PVSNAP01" | formatVersion:int | encoding:int | dimension:int | rows:int | createdAt:long
+ * ids    : long[rows]
+ * version: int[rows]     (对应 persona_vector.version，用于启动时增量回放)
+ * norms  : float[rows]
+ * float32: float[rows * dimension]
+ * int8   : scales:float[rows] | offsets:float[rows] | codes:byte[rows * dimension] | float32:float[rows * dimension]
+ * </pre>
+ * 读取时通过 MappedByteBuffer 映射文件，按段批量拷贝到数组中，不经过逐行解析；
+ * int8 快照末尾的全精度向量 (重排用) 不拷贝到堆中，直接以 OffHeapVectorStore 的形式映射；
+ * 写入先写临时文件再原子替换，读到的永远是完整的快照。
+ */
+public final class VectorSnapshotFile {
+
+    public static final int ENCODING_FLOAT32 = 0;
+    public static final int ENCODING_INT8 = 1;
+
+    private static final long MAGIC = 0x3130_5041_4E53_5650L; // "PVSNAP01" (小端序)
+    // 2: int8 快照追加全精度向量段
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+
+    // 单次映射的窗口大小，MappedByteBuffer 不能超过 2 GB
+    private static final int WINDOW_BYTES = 1 << 28;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private VectorSnapshotFile() {}
+
+    @Data
+    public static class Snapshot {
+        private int encoding;
+        private int dimension;
+        private int rows;
+        private long createdAt;
+        private long[] ids;
+        private int[] versions;
+        private float[] norms;
+        // ENCODING_FLOAT32
+        private float[] vectors;
+        // ENCODING_INT8
+        private float[] scales;
+        private float[] offsets;
+        private byte[] codes;
+        private OffHeapVectorStore fullPrecision;
+    }
+
+    public static void write(Path path, Snapshot snapshot) throws IOException {
+        int rows = snapshot.getRows();
+        int dim = snapshot.getDimension();
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(snapshot.getEncoding())
+                    .putInt(dim)
+                    .putInt(rows)
+                    .putLong(snapshot.getCreatedAt());
+
+            for (int i = 0; i < rows; i++) {
+                ensureRemaining(channel, buffer, Long.BYTES);
+                buffer.putLong(snapshot.getIds()[i]);
+            }
+            for (int i = 0; i < rows; i++) {
+                ensureRemaining(channel, buffer, Integer.BYTES);
+                buffer.putInt(snapshot.getVersions()[i]);
+            }
+            putFloats(channel, buffer, snapshot.getNorms(), rows);
+            if (snapshot.getEncoding() == ENCODING_INT8) {
+                putFloats(channel, buffer, snapshot.getScales(), rows);
+                putFloats(channel, buffer, snapshot.getOffsets(), rows);
+                long total = (long) rows * dim;
+                for (long i = 0; i < total; ) {
+                    ensureRemaining(channel, buffer, 1);
+                    int n = (int) Math.min(buffer.remaining(), total - i);
+                    buffer.put(snapshot.getCodes(), (int) i, n);
+                    i += n;
+                }
+                float[] row = new float[dim];
+                for (int i = 0; i < rows; i++) {
+                    snapshot.getFullPrecision().get(i, row);
+                    putFloats(channel, buffer, row, dim);
+                }
+            } else {
+                putFloats(channel, buffer, snapshot.getVectors(), rows * dim);
+            }
+            flush(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取快照，文件不完整或格式不符时抛出 IOException
+     */
+    public static Snapshot read(Path path) throws IOException {
+        // 以读写方式打开：int8 的全精度向量段需要 PRIVATE 映射，读取过程不会写文件
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) throw new IOException("snapshot too small: " + fileSize);
+
+            ByteBuffer header = map(channel, 0, HEADER_BYTES);
+            if (header.getLong() != MAGIC) throw new IOException("bad snapshot magic");
+            int formatVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION) throw new IOException("unsupported snapshot version " + formatVersion);
+
+            Snapshot snapshot = new Snapshot();
+            snapshot.setEncoding(header.getInt());
+            snapshot.setDimension(header.getInt());
+            snapshot.setRows(header.getInt());
+            snapshot.setCreatedAt(header.getLong());
+            int rows = snapshot.getRows();
+            int dim = snapshot.getDimension();
+
+            long vectorBytes = snapshot.getEncoding() == ENCODING_INT8
+                    ? 2L * rows * Float.BYTES + (long) rows * dim + (long) rows * dim * Float.BYTES
+                    : (long) rows * dim * Float.BYTES;
+            long expected = HEADER_BYTES + (long) rows * (Long.BYTES + Integer.BYTES + Float.BYTES) + vectorBytes;
+            if (rows < 0 || dim < 0 || fileSize != expected) {
+                throw new IOException("snapshot size mismatch: expected " + expected + ", actual " + fileSize);
+            }
+
+            long pos = HEADER_BYTES;
+            long[] ids = new long[rows];
+            map(channel, pos, (long) rows * Long.BYTES).asLongBuffer().get(ids);
+            pos += (long) rows * Long.BYTES;
+            int[] versions = new int[rows];
+            map(channel, pos, (long) rows * Integer.BYTES).asIntBuffer().get(versions);
+            pos += (long) rows * Integer.BYTES;
+            snapshot.setIds(ids);
+            snapshot.setVersions(versions);
+            snapshot.setNorms(readFloats(channel, pos, rows));
+            pos += (long) rows * Float.BYTES;
+
+            if (snapshot.getEncoding() == ENCODING_INT8) {
+                snapshot.setScales(readFloats(channel, pos, rows));
+                pos += (long) rows * Float.BYTES;
+                snapshot.setOffsets(readFloats(channel, pos, rows));
+                pos += (long) rows * Float.BYTES;
+                byte[] codes = new byte[rows * dim];
+                for (int done = 0; done < codes.length; ) {
+                    int n = Math.min(WINDOW_BYTES, codes.length - done);
+                    map(channel, pos + done, n).get(codes, done, n);
+                    done += n;
+                }
+                snapshot.setCodes(codes);
+                pos += codes.length;
+                snapshot.setFullPrecision(OffHeapVectorStore.map(channel, pos, rows, dim));
+            } else {
+                snapshot.setVectors(readFloats(channel, pos, rows * dim));
+            }
+            return snapshot;
+        }
+    }
+
+    private static float[] readFloats(FileChannel channel, long pos, int count) throws IOException {
+        float[] out = new float[count];
+        int perWindow = WINDOW_BYTES / Float.BYTES;
+        for (int done = 0; done < count; ) {
+            int n = Math.min(perWindow, count - done);
+            map(channel, pos + (long) done * Float.BYTES, (long) n * Float.BYTES).asFloatBuffer().get(out, done, n);
+            done += n;
+        }
+        return out;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long pos, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putFloats(FileChannel channel, ByteBuffer buffer, float[] values, int count) throws IOException {
+        for (int done = 0; done < count; ) {
+            ensureRemaining(channel, buffer, Float.BYTES);
+            int n = Math.min(buffer.remaining() / Float.BYTES, count - done);
+            buffer.asFloatBuffer().put(values, done, n);
+            buffer.position(buffer.position() + n * Float.BYTES);
+            done += n;
+        }
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush(channel, buffer);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
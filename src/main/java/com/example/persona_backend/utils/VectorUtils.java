@@ -0,0 +1,189 @@
+package com.example.persona_backend.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 向量相似度计算工具类 (推荐系统召回 / 质心计算共用)
+ * 优先使用 JDK Vector API (SIMD)，运行时未开启 jdk.incubator.vector 模块时自动退化为标量实现。
+ * 可通过 -Dpersona.vector.simd=false 强制关闭 SIMD。
+ */
+public final class VectorUtils {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorUtils.class);
+
+    private static final VectorKernels KERNELS = loadKernels();
+
+    private VectorUtils() {}
+
+    public static boolean isSimdEnabled() {
+        return !(KERNELS instanceof ScalarVectorKernels);
+    }
+
+    // ================== 点积 / 模长 ==================
+
+    public static float dot(float[] a, float[] b) {
+        return KERNELS.dot(a, 0, b, 0, Math.min(a.length, b.length));
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNELS.dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static float dot(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+        return KERNELS.dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static double dot(double[] a, double[] b) {
+        return KERNELS.dot(a, 0, b, 0, Math.min(a.length, b.length));
+    }
+
+    public static float norm(float[] v) {
+        return norm(v, 0, v.length);
+    }
+
+    public static float norm(float[] v, int offset, int length) {
+        return (float) Math.sqrt(KERNELS.sumOfSquares(v, offset, length));
+    }
+
+    public static double norm(double[] v) {
+        return Math.sqrt(KERNELS.sumOfSquares(v, 0, v.length));
+    }
+
+    public static float sum(float[] v) {
+        float sum = 0f;
+        for (float x : v) {
+            sum += x;
+        }
+        return sum;
+    }
+
+    // ================== 余弦相似度 ==================
+
+    /**
+     * 余弦相似度，维度不一致或任一向量为零向量时返回 0
+     */
+    public static float cosine(float[] a, float[] b) {
+        if (a == null || b == null || a.length != b.length) return 0f;
+        float normA = norm(a);
+        float normB = norm(b);
+        return (normA == 0f || normB == 0f) ? 0f : dot(a, b) / (normA * normB);
+    }
+
+    public static double cosine(double[] a, double[] b) {
+        if (a == null || b == null || a.length != b.length) return 0.0;
+        double normA = norm(a);
+        double normB = norm(b);
+        return (normA == 0 || normB == 0) ? 0.0 : dot(a, b) / (normA * normB);
+    }
+
+    /**
+     * 一对多批量打分：计算 query 与行主序矩阵前 rows 行的余弦相似度
+     * @param queryNorm query 的模长 (调用方预先计算，避免重复)
+     * @param rowNorms 每一行的模长 (预先计算)
+     * @param out 输出，长度至少为 rows
+     */
+    public static void cosineBatch(float[] query, float queryNorm, float[] matrix, float[] rowNorms,
+                                   int dim, int rows, float[] out) {
+        if (queryNorm == 0f) {
+            Arrays.fill(out, 0, rows, 0f);
+            return;
+        }
+        for (int row = 0, offset = 0; row < rows; row++, offset += dim) {
+            float n = rowNorms[row];
+            out[row] = n == 0f ? 0f : KERNELS.dot(query, 0, matrix, offset, dim) / (queryNorm * n);
+        }
+    }
+
+    // ================== 质心计算 ==================
+
+    /**
+     * acc += v
+     */
+    public static void addTo(float[] acc, float[] v) {
+        KERNELS.addTo(acc, v, Math.min(acc.length, v.length));
+    }
+
+    public static void addTo(double[] acc, double[] v) {
+        KERNELS.addTo(acc, v, Math.min(acc.length, v.length));
+    }
+
+    /**
+     * acc -= v
+     */
+    public static void subtractFrom(float[] acc, float[] v) {
+        int length = Math.min(acc.length, v.length);
+        for (int i = 0; i < length; i++) {
+            acc[i] -= v[i];
+        }
+    }
+
+    public static void scale(float[] v, float factor) {
+        for (int i = 0; i < v.length; i++) {
+            v[i] *= factor;
+        }
+    }
+
+    public static void scale(double[] v, double factor) {
+        for (int i = 0; i < v.length; i++) {
+            v[i] *= factor;
+        }
+    }
+
+    /**
+     * 加权融合：alpha * v1 + (1 - alpha) * v2，长度取两者较短者
+     */
+    public static float[] fuse(float[] v1, float[] v2, double alpha) {
+        int size = Math.min(v1.length, v2.length);
+        if (size == 0) return v1;
+
+        float[] result = new float[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = (float) (v1[i] * alpha + v2[i] * (1 - alpha));
+        }
+        return result;
+    }
+
+    // ================== 类型转换 ==================
+
+    public static float[] toFloatArray(List<Double> list) {
+        float[] out = new float[list.size()];
+        for (int i = 0; i < out.length; i++) {
+            Double v = list.get(i);
+            out[i] = v != null ? v.floatValue() : 0f;
+        }
+        return out;
+    }
+
+    public static double[] toDoubleArray(List<Double> list) {
+        double[] out = new double[list.size()];
+        for (int i = 0; i < out.length; i++) {
+            Double v = list.get(i);
+            out[i] = v != null ? v : 0.0;
+        }
+        return out;
+    }
+
+    private static VectorKernels loadKernels() {
+        boolean wanted = Boolean.parseBoolean(System.getProperty("persona.vector.simd", "true"));
+        if (wanted && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // 反射加载，避免未开启模块时触发 NoClassDefFoundError
+                VectorKernels simd = (VectorKernels) Class
+                        .forName("com.example.persona_backend.utils.SimdVectorKernels")
+                        .getDeclaredConstructor()
+                        .newInstance();
+                logger.info("✅ [VectorUtils] SIMD 向量计算已启用 (jdk.incubator.vector)");
+                return simd;
+            } catch (Throwable e) {
+                logger.warn("⚠️ [VectorUtils] SIMD 初始化失败，退化为标量实现: {}", e.toString());
+            }
+        } else {
+            logger.info("[VectorUtils] 未开启 jdk.incubator.vector，使用标量实现");
+        }
+        return new ScalarVectorKernels();
+    }
+}
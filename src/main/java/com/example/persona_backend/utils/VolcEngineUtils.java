@@ -8,6 +8,8 @@ import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import okio.ByteString;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -45,10 +47,23 @@ public class VolcEngineUtils {
     private static final String TTS_WS_URL = "wss://openspeech.bytedance.com/api/v3/tts/unidirectional/stream";
     private static final String TTS_RESOURCE_ID = "seed-tts-2.0";
 
-    private final OkHttpClient client = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)
-            .readTimeout(30, TimeUnit.SECONDS)
-            .build();
+    @Autowired
+    private HttpClientRegistry httpClientRegistry;
+
+    private OkHttpClient client;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @PostConstruct
+    public void init() {
+        // ASR / TTS 都是短时 WebSocket 会话，不发送心跳帧
+        client = httpClientRegistry.client(HttpClientRegistry.VOLC).newBuilder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .pingInterval(0, TimeUnit.SECONDS)
+                .build();
+    }
 
     // ==========================================================================
     //  Part 1: 语音识别 (ASR) - 一句话识别 (基于 WebSocket V2)
@@ -61,6 +76,14 @@ public class VolcEngineUtils {
      * @return 识别出的文本，失败返回错误信息
      */
     public String recognizeAudio(byte[] audioData, String format) {
+        AdaptiveBulkhead.Permit permit;
+        try {
+            permit = bulkheadRegistry.get(BulkheadRegistry.VOLC_ASR).acquire();
+        } catch (AdaptiveBulkhead.RejectedException e) {
+            log.warn("⚠️ [ASR] {}", e.getMessage());
+            return "识别失败: 语音服务繁忙";
+        }
+
         final String reqId = UUID.randomUUID().toString();
         final CountDownLatch latch = new CountDownLatch(1);
         final StringBuilder resultText = new StringBuilder();
@@ -141,12 +164,19 @@ public class VolcEngineUtils {
 
         try {
             boolean finished = latch.await(20, TimeUnit.SECONDS);
-            if (!finished) return "识别超时";
+            if (!finished) {
+                permit.dropped();
+                return "识别超时";
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
 
-        if (errorMsg.length() > 0) return "识别失败: " + errorMsg;
+        if (errorMsg.length() > 0) {
+            permit.dropped();
+            return "识别失败: " + errorMsg;
+        }
+        permit.success();
         return resultText.length() > 0 ? resultText.toString() : "未识别出内容";
     }
 
@@ -199,6 +229,15 @@ public class VolcEngineUtils {
     public byte[] synthesizeSpeech(String text, String instruction) {
         log.info("🔊 [TTS 2.0] 开始合成: \"{}\", 指令: {}, 音色: {}", text, instruction, defaultVoiceType);
 
+        AdaptiveBulkhead.Permit permit;
+        try {
+            permit = bulkheadRegistry.get(BulkheadRegistry.VOLC_TTS).acquire();
+        } catch (AdaptiveBulkhead.RejectedException e) {
+            // 与合成失败一样返回 null，调用方降级为文字消息
+            log.warn("⚠️ [TTS 2.0] {}", e.getMessage());
+            return null;
+        }
+
         Request request = new Request.Builder()
                 .url(TTS_WS_URL)
                 .header("X-Api-App-Id", appId)
@@ -260,6 +299,8 @@ public class VolcEngineUtils {
             Thread.currentThread().interrupt();
         }
 
+        if (isSuccess[0]) permit.success();
+        else permit.dropped();
         return (isSuccess[0] && audioBuffer.size() > 0) ? audioBuffer.toByteArray() : null;
     }
 
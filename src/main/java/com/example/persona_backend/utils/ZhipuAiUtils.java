@@ -14,12 +14,15 @@ import okhttp3.RequestBody;
 import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import okhttp3.*;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -34,15 +37,24 @@ public class ZhipuAiUtils {
     @Value("${zhipu.api.key:}")
     private String apiKey;
 
+    @Autowired
+    private HttpClientRegistry httpClientRegistry;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    // 生图走 SDK 自带的客户端；Embedding 直接调用 HTTP 接口，使用共享连接池
     private ZhipuAiClient client;
-    private final OkHttpClient httpClient = new OkHttpClient();
+    private OkHttpClient httpClient;
 
     private static final String EMBEDDING_URL = "https://open.bigmodel.cn/api/paas/v4/embeddings";
+    public static final String EMBEDDING_MODEL = "embedding-2";
     // 指定使用最新的 CogView-4 模型
     private static final String MODEL_NAME = Constants.ModelCogView4250304;
 
     @PostConstruct
     public void init() {
+        httpClient = httpClientRegistry.client(HttpClientRegistry.ZHIPU);
         if (apiKey != null && !apiKey.isEmpty()) {
             this.client = ZhipuAiClient.builder()
                     .apiKey(apiKey)
@@ -68,7 +80,16 @@ public class ZhipuAiUtils {
                     .size("1024x1024")
                     .build();
 
-            ImageResponse response = client.images().createImage(request);
+            // SDK 调用在生图隔离舱内进行，名额已满时直接失败
+            AdaptiveBulkhead.Permit permit = bulkheadRegistry.get(BulkheadRegistry.ZHIPU_IMAGE).acquire();
+            ImageResponse response;
+            try {
+                response = client.images().createImage(request);
+                permit.success();
+            } catch (RuntimeException e) {
+                permit.dropped();
+                throw e;
+            }
 
             if (response != null && response.getData() != null) {
                 Object resultData = response.getData();
@@ -119,16 +140,22 @@ public class ZhipuAiUtils {
             throw new RuntimeException("Image generation failed: " + e.getMessage());
         }
     }
-    public List<Double> generateEmbedding(String text) {
+
+    /**
+     * 批量生成向量：一次请求提交多条文本 (input 为数组)
+     * @return 与输入一一对应的向量；任何一条缺失或请求失败时返回空列表，由调用方整体重试
+     */
+    public List<float[]> generateEmbeddings(List<String> texts) {
         if (apiKey == null || apiKey.isEmpty()) {
             logger.warn("API Key missing for embedding");
             return new ArrayList<>();
         }
+        if (texts == null || texts.isEmpty()) return new ArrayList<>();
 
         try {
             JSONObject jsonBody = new JSONObject();
-            jsonBody.put("model", "embedding-2");
-            jsonBody.put("input", text);
+            jsonBody.put("model", EMBEDDING_MODEL);
+            jsonBody.put("input", new JSONArray(texts));
 
             Request request = new Request.Builder()
                     .url(EMBEDDING_URL)
@@ -137,26 +164,39 @@ public class ZhipuAiUtils {
                     .post(RequestBody.create(jsonBody.toString(), MediaType.parse("application/json")))
                     .build();
 
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    logger.error("Embedding API error: {}", response.code());
-                    return new ArrayList<>();
-                }
-
-                String resStr = response.body().string();
-                JSONObject resJson = JSON.parseObject(resStr);
+            JSONArray data = JSON.parseObject(postEmbedding(request)).getJSONArray("data");
+            if (data == null || data.size() != texts.size()) {
+                logger.error("Embedding API returned {} items for {} inputs", data == null ? 0 : data.size(), texts.size());
+                return new ArrayList<>();
+            }
 
-                // 智谱 API 返回结构: data[0].embedding
-                if (resJson.containsKey("data")) {
-                    JSONArray data = resJson.getJSONArray("data");
-                    if (data != null && !data.isEmpty()) {
-                        return data.getJSONObject(0).getList("embedding", Double.class);
-                    }
-                }
+            // 按 index 字段还原输入顺序
+            float[][] vectors = new float[texts.size()][];
+            for (int i = 0; i < data.size(); i++) {
+                JSONObject item = data.getJSONObject(i);
+                int index = item.containsKey("index") ? item.getIntValue("index") : i;
+                if (index < 0 || index >= vectors.length) return new ArrayList<>();
+                vectors[index] = item.getObject("embedding", float[].class);
             }
+            for (float[] v : vectors) {
+                if (v == null || v.length == 0) return new ArrayList<>();
+            }
+            return new ArrayList<>(Arrays.asList(vectors));
         } catch (Exception e) {
-            logger.error("Embedding generation failed", e);
+            logger.error("Batch embedding generation failed (batch size {})", texts.size(), e);
         }
         return new ArrayList<>();
     }
-}
\ No newline at end of file
+
+    /**
+     * 在 Embedding 隔离舱内发送请求并返回响应体，HTTP 错误码抛出 IOException
+     */
+    private String postEmbedding(Request request) throws IOException {
+        return bulkheadRegistry.get(BulkheadRegistry.ZHIPU_EMBEDDING).call(() -> {
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (!response.isSuccessful()) throw new IOException("Embedding API error: " + response.code());
+                return response.body().string();
+            }
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.utils.AdaptiveBulkhead;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveBulkheadTest {
+
+    @Test
+    void testAcquire_RejectsWhenFullWithoutQueue() throws Exception {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", 2, 1, 4, 0, 0, 0.5);
+        AdaptiveBulkhead.Permit p1 = bulkhead.acquire();
+        bulkhead.acquire();
+
+        assertThrows(AdaptiveBulkhead.RejectedException.class, bulkhead::acquire);
+        assertEquals(1L, bulkhead.stats().get("rejected"));
+
+        // 释放后可以再次获取
+        p1.release();
+        assertNotNull(bulkhead.acquire());
+    }
+
+    @Test
+    void testAcquire_WaitsForReleasedPermit() throws Exception {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", 1, 1, 1, 2000, 4, 0.5);
+        AdaptiveBulkhead.Permit held = bulkhead.acquire();
+        CountDownLatch acquired = new CountDownLatch(1);
+
+        Thread waiter = new Thread(() -> {
+            try {
+                bulkhead.acquire().success();
+                acquired.countDown();
+            } catch (IOException ignored) {
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        held.success();
+
+        assertTrue(acquired.await(2, TimeUnit.SECONDS));
+        assertEquals(1L, bulkhead.stats().get("queued"));
+        assertEquals(0L, bulkhead.stats().get("rejected"));
+        assertTrue((double) bulkhead.stats().get("maxQueueMs") > 0);
+    }
+
+    @Test
+    void testAcquire_QueueTimeout() throws Exception {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", 1, 1, 1, 20, 4, 0.5);
+        bulkhead.acquire();
+
+        assertThrows(AdaptiveBulkhead.RejectedException.class, bulkhead::acquire);
+        assertEquals(0, bulkhead.stats().get("waiting"));
+    }
+
+    @Test
+    void testLimit_ShrinksOnTimeoutAndRecoversOnSuccess() throws Exception {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", 8, 1, 8, 0, 0, 0.5);
+
+        assertThrows(SocketTimeoutException.class, () -> bulkhead.call(() -> {
+            throw new SocketTimeoutException("timeout");
+        }));
+        assertEquals(4, bulkhead.stats().get("limit"));
+        assertEquals(1L, bulkhead.stats().get("dropped"));
+
+        // 并发用满时成功调用逐步抬高上限
+        for (int round = 0; round < 20; round++) {
+            AdaptiveBulkhead.Permit[] permits = new AdaptiveBulkhead.Permit[(int) bulkhead.stats().get("limit")];
+            for (int i = 0; i < permits.length; i++) permits[i] = bulkhead.acquire();
+            for (AdaptiveBulkhead.Permit p : permits) p.success();
+        }
+        assertEquals(8, bulkhead.stats().get("limit"));
+        assertEquals(0, bulkhead.stats().get("inFlight"));
+    }
+
+    @Test
+    void testCall_NonIoFailureKeepsLimit() {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", 4, 1, 8, 0, 0, 0.5);
+
+        assertThrows(IllegalStateException.class, () -> bulkhead.call(() -> {
+            throw new IllegalStateException("bad json");
+        }));
+        assertEquals(4, bulkhead.stats().get("limit"));
+        assertEquals(0, bulkhead.stats().get("inFlight"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.config.AsyncConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncConfigTest {
+
+    @Test
+    void testProfileEvolutionExecutor_RejectsWhenQueueFull() throws Exception {
+        AsyncConfig config = new AsyncConfig();
+        ReflectionTestUtils.setField(config, "threads", 1);
+        ReflectionTestUtils.setField(config, "maxThreads", 1);
+        ReflectionTestUtils.setField(config, "queueCapacity", 1);
+        ThreadPoolTaskExecutor executor = config.profileEvolutionExecutor();
+        executor.initialize();
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+            executor.execute(() -> awaitQuietly(release));
+
+            // 线程和队列都已占满，新任务被拒绝 (抛给提交方) 而不是在调用线程执行
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> fail("should be dropped")));
+            assertEquals(1L, config.profileEvolutionStats().get("rejected"));
+            assertEquals(1, config.profileEvolutionStats().get("queued"));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.persona_backend;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.example.persona_backend.entity.PersonaVector;
+import com.example.persona_backend.entity.UserBehaviorCentroid;
+import com.example.persona_backend.event.BehaviorCentroidChangedEvent;
+import com.example.persona_backend.event.PersonaVectorChangedEvent;
+import com.example.persona_backend.mapper.FollowMapper;
+import com.example.persona_backend.mapper.PersonaVectorMapper;
+import com.example.persona_backend.mapper.UserBehaviorCentroidMapper;
+import com.example.persona_backend.service.BehaviorCentroidService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BehaviorCentroidServiceTest {
+
+    @Mock
+    private UserBehaviorCentroidMapper centroidMapper;
+    @Mock
+    private PersonaVectorMapper personaVectorMapper;
+    @Mock
+    private FollowMapper followMapper;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private BehaviorCentroidService behaviorCentroidService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(behaviorCentroidService, "transactionTemplate", new TransactionTemplate(transactionManager));
+    }
+
+    @Test
+    void testGetBehaviorVector_SingleLookup() {
+        when(centroidMapper.selectById(1L)).thenReturn(centroid(1L, new float[]{2f, 4f}, 2));
+
+        assertArrayEquals(new float[]{1f, 2f}, behaviorCentroidService.getBehaviorVector(1L));
+        // 不再按关注列表批量加载向量
+        verifyNoInteractions(followMapper, personaVectorMapper);
+    }
+
+    @Test
+    void testGetBehaviorVector_LazyRebuildForExistingUser() {
+        when(centroidMapper.selectById(1L)).thenReturn(null);
+        when(followMapper.selectFollowedPersonaIds(1L)).thenReturn(List.of(10L, 11L));
+        when(personaVectorMapper.selectBatchIds(anyList())).thenReturn(Arrays.asList(
+                vector(10L, 1f, 0f), vector(11L, 0f, 1f)));
+
+        assertArrayEquals(new float[]{0.5f, 0.5f}, behaviorCentroidService.getBehaviorVector(1L));
+
+        ArgumentCaptor<UserBehaviorCentroid> captor = ArgumentCaptor.forClass(UserBehaviorCentroid.class);
+        verify(centroidMapper).insert(captor.capture());
+        assertEquals(2, captor.getValue().getFollowCount());
+    }
+
+    @Test
+    void testGetBehaviorVector_NoFollows() {
+        when(centroidMapper.selectById(1L)).thenReturn(centroid(1L, new float[0], 0));
+
+        assertNull(behaviorCentroidService.getBehaviorVector(1L));
+    }
+
+    @Test
+    void testOnFollowChanged_AddAndRemove() {
+        UserBehaviorCentroid existing = centroid(1L, new float[]{1f, 0f}, 1);
+        when(centroidMapper.selectOne(any(Wrapper.class))).thenReturn(existing);
+        when(personaVectorMapper.selectById(11L)).thenReturn(vector(11L, 0f, 1f));
+
+        behaviorCentroidService.onFollowChanged(1L, 11L, true);
+        assertArrayEquals(new float[]{1f, 1f}, existing.getVectorSum());
+        assertEquals(2, existing.getFollowCount());
+        verifyNoInteractions(followMapper);
+
+        // 取关按剩余的关注列表重建
+        when(followMapper.selectFollowedPersonaIds(1L)).thenReturn(List.of(10L));
+        when(personaVectorMapper.selectBatchIds(List.of(10L))).thenReturn(List.of(vector(10L, 1f, 0f)));
+
+        behaviorCentroidService.onFollowChanged(1L, 11L, false);
+        assertArrayEquals(new float[]{1f, 0f}, existing.getVectorSum());
+        assertEquals(1, existing.getFollowCount());
+
+        verify(centroidMapper, times(2)).updateById(existing);
+    }
+
+    @Test
+    void testOnFollowChanged_LastUnfollowResetsSum() {
+        UserBehaviorCentroid existing = centroid(1L, new float[]{0.3f, 0.7f}, 1);
+        when(centroidMapper.selectOne(any(Wrapper.class))).thenReturn(existing);
+        when(followMapper.selectFollowedPersonaIds(1L)).thenReturn(List.of());
+
+        behaviorCentroidService.onFollowChanged(1L, 10L, false);
+
+        assertEquals(0, existing.getFollowCount());
+        assertEquals(0, existing.getVectorSum().length);
+    }
+
+    @Test
+    void testOnFollowChanged_UnfollowPersonaFollowedBeforeItHadVector() {
+        // 关注 12 时它还没有向量，质心只包含 10
+        UserBehaviorCentroid existing = centroid(1L, new float[]{1f, 0f}, 1);
+        when(centroidMapper.selectOne(any(Wrapper.class))).thenReturn(existing);
+        when(personaVectorMapper.selectById(12L)).thenReturn(null);
+        behaviorCentroidService.onFollowChanged(1L, 12L, true);
+        assertEquals(1, existing.getFollowCount());
+
+        // 之后 12 生成了向量，再取关：不能减去从未加过的向量
+        when(followMapper.selectFollowedPersonaIds(1L)).thenReturn(List.of(10L));
+        when(personaVectorMapper.selectBatchIds(List.of(10L))).thenReturn(List.of(vector(10L, 1f, 0f)));
+
+        behaviorCentroidService.onFollowChanged(1L, 12L, false);
+
+        assertArrayEquals(new float[]{1f, 0f}, existing.getVectorSum());
+        assertEquals(1, existing.getFollowCount());
+    }
+
+    @Test
+    void testOnFollowChanged_UnfollowAfterVectorRefreshed() {
+        UserBehaviorCentroid existing = centroid(1L, new float[]{1f, 0f}, 1);
+        when(centroidMapper.selectOne(any(Wrapper.class))).thenReturn(existing);
+        when(personaVectorMapper.selectById(11L)).thenReturn(vector(11L, 0f, 1f));
+        behaviorCentroidService.onFollowChanged(1L, 11L, true);
+        assertArrayEquals(new float[]{1f, 1f}, existing.getVectorSum());
+
+        // 11 的向量在取关前被刷新为 (0.6, 0.8)，取关后只剩 10 的贡献
+        when(followMapper.selectFollowedPersonaIds(1L)).thenReturn(List.of(10L));
+        when(personaVectorMapper.selectBatchIds(List.of(10L))).thenReturn(List.of(vector(10L, 1f, 0f)));
+
+        behaviorCentroidService.onFollowChanged(1L, 11L, false);
+
+        assertArrayEquals(new float[]{1f, 0f}, existing.getVectorSum());
+        assertEquals(1, existing.getFollowCount());
+    }
+
+    @Test
+    void testOnFollowChanged_PersonaWithoutVectorIgnored() {
+        when(personaVectorMapper.selectById(12L)).thenReturn(null);
+
+        behaviorCentroidService.onFollowChanged(1L, 12L, true);
+
+        verifyNoInteractions(centroidMapper);
+    }
+
+    @Test
+    void testOnPersonaVectorChanged_FollowersCorrectedByDelta() {
+        // 用户 1、2 关注了 11，11 的向量从 (0, 1) 刷新为 (0.6, 0.8)
+        LocalDateTime changedAt = LocalDateTime.now();
+        when(followMapper.selectFollowerIds(11L)).thenReturn(List.of(1L, 2L));
+        // 用户 1 的质心在刷新前计算，包含旧向量；用户 2 的质心在写入向量之后才更新过
+        UserBehaviorCentroid before = centroid(1L, new float[]{1f, 1f}, 2);
+        before.setUpdatedAt(changedAt.minusHours(1));
+        UserBehaviorCentroid after = centroid(2L, new float[]{0.6f, 0.8f}, 1);
+        after.setUpdatedAt(changedAt.plusSeconds(1));
+        when(centroidMapper.selectList(any(Wrapper.class))).thenReturn(List.of(before, after));
+        when(followMapper.selectFollowedPersonaIds(2L)).thenReturn(List.of(11L));
+        when(personaVectorMapper.selectBatchIds(List.of(11L))).thenReturn(List.of(vector(11L, 0.6f, 0.8f)));
+
+        behaviorCentroidService.onPersonaVectorChanged(new PersonaVectorChangedEvent(
+                11L, new float[]{0f, 1f}, new float[]{0.6f, 0.8f}, changedAt));
+
+        // 用户 1 原地减旧加新，不查关注列表
+        assertArrayEquals(new float[]{1.6f, 0.8f}, before.getVectorSum(), 1e-6f);
+        assertEquals(2, before.getFollowCount());
+        verify(followMapper, never()).selectFollowedPersonaIds(1L);
+        // 用户 2 可能已包含新向量，按关注列表重算，不会重复累加
+        assertArrayEquals(new float[]{0.6f, 0.8f}, after.getVectorSum(), 1e-6f);
+        assertEquals(1, after.getFollowCount());
+
+        verify(centroidMapper).updateById(before);
+        verify(centroidMapper).updateById(after);
+        verify(centroidMapper, never()).deleteBatchIds(anyList());
+        ArgumentCaptor<BehaviorCentroidChangedEvent> event = ArgumentCaptor.forClass(BehaviorCentroidChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(List.of(1L, 2L), event.getValue().getUserIds());
+    }
+
+    @Test
+    void testOnPersonaVectorChanged_FirstVectorAddedToFollowers() {
+        // 用户 1 关注 12 时它还没有向量，质心为空
+        LocalDateTime changedAt = LocalDateTime.now();
+        when(followMapper.selectFollowerIds(12L)).thenReturn(List.of(1L));
+        UserBehaviorCentroid existing = centroid(1L, new float[0], 0);
+        existing.setUpdatedAt(changedAt.minusDays(1));
+        when(centroidMapper.selectList(any(Wrapper.class))).thenReturn(List.of(existing));
+
+        behaviorCentroidService.onPersonaVectorChanged(new PersonaVectorChangedEvent(
+                12L, null, new float[]{0.6f, 0.8f}, changedAt));
+
+        assertArrayEquals(new float[]{0.6f, 0.8f}, existing.getVectorSum(), 1e-6f);
+        assertEquals(1, existing.getFollowCount());
+        verify(centroidMapper).updateById(existing);
+        verifyNoInteractions(personaVectorMapper);
+    }
+
+    @Test
+    void testOnPersonaVectorChanged_ChunkedByFiveHundred() {
+        List<Long> followerIds = new ArrayList<>();
+        for (long id = 1; id <= 1200; id++) followerIds.add(id);
+        when(followMapper.selectFollowerIds(11L)).thenReturn(followerIds);
+        when(centroidMapper.selectList(any(Wrapper.class))).thenReturn(List.of());
+
+        behaviorCentroidService.onPersonaVectorChanged(new PersonaVectorChangedEvent(
+                11L, new float[]{0f, 1f}, new float[]{0.6f, 0.8f}, LocalDateTime.now()));
+
+        // 每批一个事务、一次加锁查询、一次失效通知
+        verify(transactionManager, times(3)).commit(any());
+        verify(centroidMapper, times(3)).selectList(any(Wrapper.class));
+        ArgumentCaptor<BehaviorCentroidChangedEvent> event = ArgumentCaptor.forClass(BehaviorCentroidChangedEvent.class);
+        verify(eventPublisher, times(3)).publishEvent(event.capture());
+        assertEquals(List.of(500, 500, 200), event.getAllValues().stream().map(e -> e.getUserIds().size()).toList());
+    }
+
+    @Test
+    void testOnPersonaVectorChanged_NoFollowers() {
+        when(followMapper.selectFollowerIds(11L)).thenReturn(List.of());
+
+        behaviorCentroidService.onPersonaVectorChanged(new PersonaVectorChangedEvent(
+                11L, null, new float[]{0.6f, 0.8f}, LocalDateTime.now()));
+
+        verifyNoInteractions(centroidMapper, eventPublisher);
+    }
+
+    private UserBehaviorCentroid centroid(Long userId, float[] sum, int count) {
+        UserBehaviorCentroid centroid = new UserBehaviorCentroid();
+        centroid.setUserId(userId);
+        centroid.setVectorSum(sum);
+        centroid.setFollowCount(count);
+        return centroid;
+    }
+
+    private PersonaVector vector(Long personaId, float... values) {
+        PersonaVector pv = new PersonaVector();
+        pv.setPersonaId(personaId);
+        pv.setEmbedding(values);
+        return pv;
+    }
+}
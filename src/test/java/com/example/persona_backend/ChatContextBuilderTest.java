@@ -0,0 +1,119 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.entity.ChatMessage;
+import com.example.persona_backend.service.AiService;
+import com.example.persona_backend.service.ChatContextBuilder;
+import com.example.persona_backend.utils.TokenEstimator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatContextBuilderTest {
+
+    @Mock
+    private AiService aiService;
+
+    @InjectMocks
+    private ChatContextBuilder builder;
+
+    @BeforeEach
+    void setUp() {
+        // 摘要任务直接在当前线程执行
+        ReflectionTestUtils.setField(builder, "summaryExecutor", (Executor) Runnable::run);
+    }
+
+    @Test
+    void testShortConversation_KeepsAllTurnsOnSmallModel() {
+        ChatContextBuilder.PromptContext context = builder.build(1L, 7L, "你是一只猫",
+                List.of(msg(1, "user", "你好"), msg(2, "assistant", "喵")), "在干嘛");
+
+        List<Map<String, String>> messages = context.getMessages();
+        assertEquals(List.of("system", "user", "assistant", "user"), roles(messages));
+        assertEquals("在干嘛", messages.get(3).get("content"));
+        assertEquals("moonshot-v1-8k", context.getModel());
+    }
+
+    @Test
+    void testBudget_KeepsMostRecentTurns() {
+        ReflectionTestUtils.setField(builder, "budgetTokens", 300);
+        List<ChatMessage> history = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            // 每条约 100 token
+            history.add(msg(i, i % 2 == 1 ? "user" : "assistant", "喵".repeat(96)));
+        }
+
+        ChatContextBuilder.PromptContext context = builder.build(1L, 7L, "猫", history, "hi");
+
+        // 只放得下最近 2 条历史
+        List<Map<String, String>> messages = context.getMessages();
+        assertEquals(4, messages.size());
+        assertSame(history.get(9).getContent(), messages.get(2).get("content"));
+        assertTrue(context.getEstimatedTokens() <= 300);
+        assertEquals(8L, builder.stats().get("droppedMessages"));
+    }
+
+    @Test
+    void testLargePrompt_UsesLargeModel() {
+        String longPersona = "喵".repeat(8000);
+
+        ChatContextBuilder.PromptContext context = builder.build(1L, 7L, longPersona, List.of(), "hi");
+
+        // System Prompt 与本轮消息必定保留，超出小窗口时换用 32k 模型
+        assertEquals(2, context.getMessages().size());
+        assertEquals("moonshot-v1-32k", context.getModel());
+    }
+
+    @Test
+    void testDroppedTurns_FoldedIntoRollingSummary() {
+        ReflectionTestUtils.setField(builder, "budgetTokens", 300);
+        ReflectionTestUtils.setField(builder, "summaryMinMessages", 4);
+        when(aiService.summarizeConversation(isNull(), anyString(), anyInt())).thenReturn("用户养了一只橘猫");
+        List<ChatMessage> history = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            history.add(msg(i, i % 2 == 1 ? "user" : "assistant", "喵".repeat(96)));
+        }
+
+        builder.build(1L, 7L, "猫", history, "hi");
+        ChatContextBuilder.PromptContext next = builder.build(1L, 7L, "猫", history, "hi");
+
+        // 被挤出的消息只摘要一次，之后以 system 消息代替原文
+        verify(aiService, times(1)).summarizeConversation(isNull(), anyString(), anyInt());
+        assertEquals("system", next.getMessages().get(1).get("role"));
+        assertTrue(next.getMessages().get(1).get("content").contains("用户养了一只橘猫"));
+        assertTrue(next.getEstimatedTokens() <= 300);
+    }
+
+    @Test
+    void testTokenEstimator_CountsCjkPerCharacter() {
+        assertEquals(0, TokenEstimator.estimate(""));
+        assertEquals(4, TokenEstimator.estimate("你好世界"));
+        assertEquals(3, TokenEstimator.estimate("hello world!"));
+    }
+
+    private static ChatMessage msg(long id, String role, String content) {
+        ChatMessage m = new ChatMessage();
+        m.setId(id);
+        m.setRole(role);
+        m.setContent(content);
+        m.setMsgType(0);
+        return m;
+    }
+
+    private static List<String> roles(List<Map<String, String>> messages) {
+        return messages.stream().map(m -> m.get("role")).toList();
+    }
+}
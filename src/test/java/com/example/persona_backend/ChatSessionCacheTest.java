@@ -0,0 +1,114 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.entity.ChatMessage;
+import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.entity.UserProfile;
+import com.example.persona_backend.event.PersonaChangedEvent;
+import com.example.persona_backend.event.ProfileEvolvedEvent;
+import com.example.persona_backend.service.ChatSessionCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatSessionCacheTest {
+
+    private ChatSessionCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ChatSessionCache();
+        ReflectionTestUtils.setField(cache, "historySize", 3);
+    }
+
+    @Test
+    void testHistory_WriteThroughKeepsLatestInOrder() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.history(1L, 7L, () -> { loads.incrementAndGet(); return List.of(msg(1), msg(2)); });
+
+        cache.append(msg(3));
+        cache.append(msg(4));
+        List<ChatMessage> history = cache.history(1L, 7L, () -> { loads.incrementAndGet(); return List.of(); });
+
+        // 环形缓冲区只保留最近 3 条，且只加载过一次
+        assertEquals(List.of(2L, 3L, 4L), ids(history));
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.stats().get("historyHits"));
+    }
+
+    @Test
+    void testAppend_IgnoredForUncachedSession() {
+        cache.append(msg(1));
+
+        assertEquals(0, cache.stats().get("sessions"));
+        assertEquals(List.of(1L), ids(cache.history(1L, 7L, () -> List.of(msg(1)))));
+    }
+
+    @Test
+    void testHistory_MergesMessagesAppendedWhileLoading() {
+        // 加载期间写入的第 3 条不在查询结果中，第 2 条两边都有
+        List<ChatMessage> history = cache.history(1L, 7L, () -> {
+            cache.append(msg(2));
+            cache.append(msg(3));
+            return new ArrayList<>(List.of(msg(1), msg(2)));
+        });
+
+        assertEquals(List.of(1L, 2L, 3L), ids(history));
+    }
+
+    @Test
+    void testProfileAndPersona_InvalidatedByEvents() {
+        AtomicInteger profileLoads = new AtomicInteger();
+        AtomicInteger personaLoads = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            // 画像不存在 (null) 同样缓存
+            assertNull(cache.profile(1L, () -> { profileLoads.incrementAndGet(); return null; }));
+            cache.persona(7L, () -> { personaLoads.incrementAndGet(); return new Persona(); });
+        }
+        assertEquals(1, profileLoads.get());
+        assertEquals(1, personaLoads.get());
+
+        cache.onProfileEvolved(new ProfileEvolvedEvent(1L));
+        cache.onPersonaChanged(new PersonaChangedEvent(7L));
+        assertNotNull(cache.profile(1L, () -> { profileLoads.incrementAndGet(); return new UserProfile(); }));
+        cache.persona(7L, () -> { personaLoads.incrementAndGet(); return new Persona(); });
+
+        assertEquals(2, profileLoads.get());
+        assertEquals(2, personaLoads.get());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedSession() {
+        ReflectionTestUtils.setField(cache, "maxSessions", 2);
+        cache.history(1L, 1L, List::of);
+        cache.history(1L, 2L, List::of);
+        cache.history(1L, 1L, List::of);
+        cache.history(1L, 3L, List::of);
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.history(1L, 1L, () -> { loads.incrementAndGet(); return List.of(); });
+        assertEquals(0, loads.get());
+        cache.history(1L, 2L, () -> { loads.incrementAndGet(); return List.of(); });
+        assertEquals(1, loads.get());
+    }
+
+    private static ChatMessage msg(long id) {
+        ChatMessage m = new ChatMessage();
+        m.setId(id);
+        m.setUserId(1L);
+        m.setPersonaId(7L);
+        m.setRole("user");
+        m.setContent("m" + id);
+        return m;
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.entity.ChatMessage;
+import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.mapper.ChatMessageMapper;
+import com.example.persona_backend.mapper.PersonaMapper;
+import com.example.persona_backend.mapper.UserProfileMapper;
+import com.example.persona_backend.service.ChatContextBuilder;
+import com.example.persona_backend.service.ChatService;
+import com.example.persona_backend.service.ChatSessionCache;
+import com.example.persona_backend.service.UserProfileService;
+import com.example.persona_backend.utils.AdaptiveBulkhead;
+import com.example.persona_backend.utils.AliyunOSSOperator;
+import com.example.persona_backend.utils.BulkheadRegistry;
+import com.example.persona_backend.utils.CircuitBreaker;
+import com.example.persona_backend.utils.CircuitBreakerRegistry;
+import com.example.persona_backend.utils.VolcEngineUtils;
+import com.example.persona_backend.utils.ZhipuAiUtils;
+import okhttp3.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatStreamTest {
+
+    @Mock
+    private ChatMessageMapper chatMessageMapper;
+    @Mock
+    private PersonaMapper personaMapper;
+    @Mock
+    private UserProfileMapper userProfileMapper;
+    @Mock
+    private UserProfileService userProfileService;
+    @Mock
+    private VolcEngineUtils volcEngineUtils;
+    @Mock
+    private ZhipuAiUtils zhipuAiUtils;
+    @Mock
+    private AliyunOSSOperator aliyunOSSOperator;
+
+    @Mock
+    private OkHttpClient client;
+    @Mock
+    private Call call;
+
+    @InjectMocks
+    private ChatService chatService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(chatService, "apiKey", "test-api-key");
+        ReflectionTestUtils.setField(chatService, "apiUrl", "http://test-api.com");
+        ReflectionTestUtils.setField(chatService, "client", client);
+        ReflectionTestUtils.setField(chatService, "bulkheadRegistry", new BulkheadRegistry());
+        ReflectionTestUtils.setField(chatService, "circuitBreakerRegistry", new CircuitBreakerRegistry());
+        ReflectionTestUtils.setField(chatService, "chatSessionCache", new ChatSessionCache());
+        ReflectionTestUtils.setField(chatService, "chatContextBuilder", new ChatContextBuilder());
+        // 回复后处理直接在当前线程执行，便于验证
+        ReflectionTestUtils.setField(chatService, "chatReplyExecutor", (Executor) Runnable::run);
+
+        Persona persona = new Persona();
+        persona.setId(7L);
+        persona.setName("Cat");
+        when(personaMapper.selectById(7L)).thenReturn(persona);
+        // 熔断 / 隔离舱拒绝时不会调用上游
+        lenient().when(chatMessageMapper.selectList(any())).thenReturn(new ArrayList<>());
+        lenient().when(client.newCall(any(Request.class))).thenReturn(call);
+    }
+
+    @Test
+    void testStreamChat_RelaysDeltasAndPersistsOnce() {
+        respondWith("data: {\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}\n\n" +
+                "data: {\"choices\":[{\"delta\":{\"content\":\"你好\"}}]}\n\n" +
+                "data: {\"choices\":[{\"delta\":{\"content\":\"，喵\"}}]}\n\n" +
+                "data: [DONE]\n\n");
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        chatService.streamChat(1L, 7L, "hi", false, emitter);
+
+        // 请求以 stream 模式发出
+        ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+        verify(client).newCall(request.capture());
+        assertTrue(bodyOf(request.getValue()).contains("\"stream\":true"));
+        // 短对话放得进 8k 窗口，使用更快的小模型
+        assertTrue(bodyOf(request.getValue()).contains("\"model\":\"moonshot-v1-8k\""));
+
+        assertEquals(List.of("delta", "delta", "done"), emitter.names());
+        assertTrue(emitter.completed);
+
+        // 用户消息 + 完整的 AI 回复各保存一次
+        ArgumentCaptor<ChatMessage> saved = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(chatMessageMapper, times(2)).insert(saved.capture());
+        ChatMessage aiMsg = saved.getAllValues().get(1);
+        assertEquals("assistant", aiMsg.getRole());
+        assertEquals("你好，喵", aiMsg.getContent());
+        verify(userProfileService).checkAndEvolveProfile(1L);
+    }
+
+    @Test
+    void testStreamChat_SecondTurnBuiltFromSessionCache() {
+        respondWith("data: {\"choices\":[{\"delta\":{\"content\":\"喵\"}}]}\n\n" +
+                "data: [DONE]\n\n");
+
+        chatService.streamChat(1L, 7L, "hi", false, new RecordingEmitter());
+        chatService.streamChat(1L, 7L, "还在吗", false, new RecordingEmitter());
+
+        // 历史、画像、Persona 只在第一轮查库
+        verify(chatMessageMapper, times(1)).selectList(any());
+        verify(personaMapper, times(1)).selectById(7L);
+        verify(userProfileMapper, times(1)).selectById(1L);
+
+        // 第二轮的上下文包含第一轮的回复 (写库时同步追加到缓存)
+        ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+        verify(client, times(2)).newCall(request.capture());
+        String body = bodyOf(request.getAllValues().get(1));
+        assertTrue(body.contains("\"content\":\"喵\""));
+        assertTrue(body.contains("还在吗"));
+    }
+
+    @Test
+    void testStreamChat_DrawCommandNotStreamed() {
+        when(zhipuAiUtils.generateImage("a cat")).thenReturn("http://127.0.0.1:9/cat.png");
+        respondWith("data: {\"choices\":[{\"delta\":{\"content\":\"{\\\"action\\\": \\\"DRAW\\\", \"}}]}\n\n" +
+                "data: {\"choices\":[{\"delta\":{\"content\":\"\\\"prompt\\\": \\\"a cat\\\"}\"}}]}\n\n" +
+                "data: [DONE]\n\n");
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        chatService.streamChat(1L, 7L, "发张自拍", false, emitter);
+
+        // 指令 JSON 不推送给用户，只返回最终的图片消息
+        assertEquals(List.of("done"), emitter.names());
+        ArgumentCaptor<ChatMessage> saved = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(chatMessageMapper, times(2)).insert(saved.capture());
+        assertEquals(1, saved.getAllValues().get(1).getMsgType());
+    }
+
+    @Test
+    void testStreamChat_DrawRunsOnReplyExecutor() {
+        List<Runnable> tasks = new ArrayList<>();
+        ReflectionTestUtils.setField(chatService, "chatReplyExecutor", (Executor) tasks::add);
+        when(zhipuAiUtils.generateImage("a cat")).thenReturn("http://127.0.0.1:9/cat.png");
+        respondWith("data: {\"choices\":[{\"delta\":{\"content\":\"{\\\"action\\\": \\\"DRAW\\\", \\\"prompt\\\": \\\"a cat\\\"}\"}}]}\n\n" +
+                "data: [DONE]\n\n");
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        chatService.streamChat(1L, 7L, "发张自拍", false, emitter);
+
+        // OkHttp 回调线程只读取流，生图与写库交给后处理线程池
+        verify(zhipuAiUtils, never()).generateImage(any());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        verify(zhipuAiUtils).generateImage("a cat");
+        assertEquals(List.of("done"), emitter.names());
+    }
+
+    @Test
+    void testStreamChat_TruncatedStreamNotPersisted() {
+        // 连接在 [DONE] 之前断开
+        respondWith("data: {\"choices\":[{\"delta\":{\"content\":\"你好\"}}]}\n\n");
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        chatService.streamChat(1L, 7L, "hi", false, emitter);
+
+        assertEquals(List.of("delta", "done"), emitter.names());
+        assertTrue(emitter.events.get(1).contains("回复中断"));
+        assertTrue(emitter.completed);
+        // 只保存了用户消息，半截回复不入库
+        verify(chatMessageMapper, times(1)).insert(any(ChatMessage.class));
+    }
+
+    @Test
+    void testStreamChat_ClientGoneDiscardsReply() {
+        respondWith("data: {\"choices\":[{\"delta\":{\"content\":\"你好\"}}]}\n\n" +
+                "data: [DONE]\n\n");
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.failSends = true;
+
+        chatService.streamChat(1L, 7L, "hi", false, emitter);
+
+        verify(call).cancel();
+        // 只保存了用户消息
+        verify(chatMessageMapper, times(1)).insert(any(ChatMessage.class));
+        assertFalse(emitter.completed);
+    }
+
+    @Test
+    void testStreamChat_BulkheadFullRepliesBusy() {
+        BulkheadRegistry registry = new BulkheadRegistry();
+        ReflectionTestUtils.setField(chatService, "bulkheadRegistry", registry);
+        // 占满 Moonshot 聊天的并发名额
+        AdaptiveBulkhead bulkhead = registry.get(BulkheadRegistry.MOONSHOT_CHAT);
+        int limit = (int) bulkhead.stats().get("limit");
+        for (int i = 0; i < limit; i++) {
+            assertDoesNotThrow(bulkhead::acquire);
+        }
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        chatService.streamChat(1L, 7L, "hi", false, emitter);
+
+        // 不调用上游，直接返回繁忙提示
+        verify(client, never()).newCall(any(Request.class));
+        assertEquals(List.of("done"), emitter.names());
+        assertTrue(emitter.completed);
+        assertEquals(1L, bulkhead.stats().get("rejected"));
+        verify(chatMessageMapper, times(1)).insert(any(ChatMessage.class));
+    }
+
+    @Test
+    void testStreamChat_FallbackReplyNotInHistory() {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry();
+        ReflectionTestUtils.setField(chatService, "circuitBreakerRegistry", registry);
+        CircuitBreaker breaker = registry.get(CircuitBreakerRegistry.MOONSHOT);
+        for (int i = 0; i < 10; i++) {
+            assertDoesNotThrow(() -> breaker.acquirePermission().failure());
+        }
+        chatService.streamChat(1L, 7L, "hi", false, new RecordingEmitter());
+
+        // 熔断恢复后的下一轮上下文里没有降级提示
+        ReflectionTestUtils.setField(chatService, "circuitBreakerRegistry", new CircuitBreakerRegistry());
+        respondWith("data: {\"choices\":[{\"delta\":{\"content\":\"喵\"}}]}\n\n" +
+                "data: [DONE]\n\n");
+        chatService.streamChat(1L, 7L, "还在吗", false, new RecordingEmitter());
+
+        ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+        verify(client).newCall(request.capture());
+        assertFalse(bodyOf(request.getValue()).contains("走开了"));
+    }
+
+    @Test
+    void testStreamChat_CircuitOpenRepliesInCharacter() {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry();
+        ReflectionTestUtils.setField(chatService, "circuitBreakerRegistry", registry);
+        CircuitBreaker breaker = registry.get(CircuitBreakerRegistry.MOONSHOT);
+        for (int i = 0; i < 10; i++) {
+            assertDoesNotThrow(() -> breaker.acquirePermission().failure());
+        }
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        chatService.streamChat(1L, 7L, "hi", false, emitter);
+
+        verify(client, never()).newCall(any(Request.class));
+        assertEquals(List.of("done"), emitter.names());
+        assertTrue(emitter.events.get(0).contains("Cat"));
+        // 降级回复不入库，只保存了用户消息
+        verify(chatMessageMapper, times(1)).insert(any(ChatMessage.class));
+    }
+
+    @Test
+    void testStreamChat_HistoryLoadFailureHoldsNoPermit() {
+        BulkheadRegistry registry = new BulkheadRegistry();
+        ReflectionTestUtils.setField(chatService, "bulkheadRegistry", registry);
+        when(chatMessageMapper.selectList(any())).thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class,
+                () -> chatService.streamChat(1L, 7L, "hi", false, new RecordingEmitter()));
+
+        // 构建上下文失败发生在获取名额之前
+        assertEquals(0L, registry.get(BulkheadRegistry.MOONSHOT_CHAT).stats().get("acquired"));
+        verify(client, never()).newCall(any(Request.class));
+    }
+
+    @Test
+    void testStreamChat_EnqueueFailureReleasesPermit() {
+        BulkheadRegistry registry = new BulkheadRegistry();
+        ReflectionTestUtils.setField(chatService, "bulkheadRegistry", registry);
+        CircuitBreakerRegistry breakers = new CircuitBreakerRegistry();
+        ReflectionTestUtils.setField(chatService, "circuitBreakerRegistry", breakers);
+        doThrow(new java.util.concurrent.RejectedExecutionException("dispatcher shut down"))
+                .when(call).enqueue(any(Callback.class));
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        chatService.streamChat(1L, 7L, "hi", false, emitter);
+
+        assertTrue(emitter.failed);
+        AdaptiveBulkhead bulkhead = registry.get(BulkheadRegistry.MOONSHOT_CHAT);
+        assertEquals(0, bulkhead.stats().get("inFlight"));
+        // 未发出的请求不计入熔断窗口
+        assertEquals(0, breakers.get(CircuitBreakerRegistry.MOONSHOT).stats().get("windowCalls"));
+    }
+
+    private void respondWith(String sse) {
+        doAnswer(inv -> {
+            Callback callback = inv.getArgument(0);
+            Response response = new Response.Builder()
+                    .request(new Request.Builder().url("http://test-api.com").build())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(sse, MediaType.get("text/event-stream")))
+                    .build();
+            callback.onResponse(call, response);
+            return null;
+        }).when(call).enqueue(any(Callback.class));
+    }
+
+    private static String bodyOf(Request request) {
+        try {
+            okio.Buffer buffer = new okio.Buffer();
+            request.body().writeTo(buffer);
+            return buffer.readUtf8();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 记录推送的事件，不依赖真实的 HTTP 连接
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> events = new ArrayList<>();
+        boolean failSends;
+        boolean completed;
+        boolean failed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failSends) throw new IOException("Broken pipe");
+            events.add(builder.build().stream()
+                    .map(d -> String.valueOf(d.getData()))
+                    .collect(Collectors.joining()));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            failed = true;
+        }
+
+        List<String> names() {
+            List<String> names = new ArrayList<>();
+            for (String e : events) {
+                int start = e.indexOf("event:") + 6;
+                names.add(e.substring(start, e.indexOf('\n', start)));
+            }
+            return names;
+        }
+    }
+}
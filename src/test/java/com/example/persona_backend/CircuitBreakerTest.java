@@ -0,0 +1,78 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.utils.AdaptiveBulkhead;
+import com.example.persona_backend.utils.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    @Test
+    void testOpensWhenFailureRateExceedsThreshold() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 0.5, 60_000, 1);
+
+        breaker.acquirePermission().success();
+        breaker.acquirePermission().failure();
+        breaker.acquirePermission().success();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // 4 次调用 2 次失败，达到 50%
+        breaker.acquirePermission().failure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitBreaker.OpenException.class, breaker::acquirePermission);
+        assertEquals(1L, breaker.stats().get("rejected"));
+    }
+
+    @Test
+    void testHalfOpenProbeClosesOrReopens() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 1, 1.0, 20, 1);
+        breaker.acquirePermission().failure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(30);
+        CircuitBreaker.Permission probe = breaker.acquirePermission();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // 探测名额只有一个
+        assertThrows(CircuitBreaker.OpenException.class, breaker::acquirePermission);
+        probe.failure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(30);
+        breaker.acquirePermission().success();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.stats().get("windowCalls"));
+    }
+
+    @Test
+    void testCall_BulkheadRejectionNotCounted() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 1, 1.0, 60_000, 1);
+
+        assertThrows(AdaptiveBulkhead.RejectedException.class, () -> breaker.call(() -> {
+            throw new AdaptiveBulkhead.RejectedException("moonshot-chat", "并发已满");
+        }));
+        assertThrows(IllegalStateException.class, () -> breaker.call(() -> {
+            throw new IllegalStateException("bad json");
+        }));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        assertThrows(IOException.class, () -> breaker.call(() -> {
+            throw new IOException("API Error: 503");
+        }));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testStalePermissionIgnoredAfterStateChange() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 1, 1.0, 60_000, 1);
+        CircuitBreaker.Permission slow = breaker.acquirePermission();
+        breaker.acquirePermission().failure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // 熔断前发出的调用之后才成功，不影响当前状态
+        slow.success();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
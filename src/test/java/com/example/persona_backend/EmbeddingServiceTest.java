@@ -0,0 +1,97 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.entity.EmbeddingCache;
+import com.example.persona_backend.mapper.EmbeddingCacheMapper;
+import com.example.persona_backend.service.EmbeddingService;
+import com.example.persona_backend.utils.ZhipuAiUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmbeddingServiceTest {
+
+    @Mock
+    private ZhipuAiUtils zhipuAiUtils;
+    @Mock
+    private EmbeddingCacheMapper embeddingCacheMapper;
+
+    @InjectMocks
+    private EmbeddingService embeddingService;
+
+    @Test
+    void testEmbedAll_CacheHitSkipsApi() {
+        when(embeddingCacheMapper.selectBatchIds(anyList())).thenReturn(List.of(cached("hello", 1f)));
+
+        float[] vector = embeddingService.embed("hello");
+
+        assertArrayEquals(new float[]{1f}, vector);
+        verifyNoInteractions(zhipuAiUtils);
+    }
+
+    @Test
+    void testEmbedAll_MissesBatchedAndCached() {
+        ReflectionTestUtils.setField(embeddingService, "batchSize", 2);
+        when(embeddingCacheMapper.selectBatchIds(anyList())).thenReturn(List.of(cached("b", 2f)));
+        when(zhipuAiUtils.generateEmbeddings(anyList())).thenAnswer(inv -> {
+            List<String> texts = inv.getArgument(0);
+            List<float[]> out = new ArrayList<>();
+            for (String t : texts) out.add(new float[]{t.charAt(0)});
+            return out;
+        });
+
+        // "a" 出现两次，只生成一次；"b" 命中缓存；剩余 a/c/d 按每批 2 条拆成 2 次请求
+        List<float[]> vectors = embeddingService.embedAll(Arrays.asList("a", "b", "c", "a", "d", null));
+
+        assertArrayEquals(new float[]{'a'}, vectors.get(0));
+        assertArrayEquals(new float[]{2f}, vectors.get(1));
+        assertArrayEquals(new float[]{'c'}, vectors.get(2));
+        assertArrayEquals(new float[]{'a'}, vectors.get(3));
+        assertArrayEquals(new float[]{'d'}, vectors.get(4));
+        assertNull(vectors.get(5));
+
+        verify(zhipuAiUtils).generateEmbeddings(List.of("a", "c"));
+        verify(zhipuAiUtils).generateEmbeddings(List.of("d"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<EmbeddingCache>> captor = ArgumentCaptor.forClass(List.class);
+        verify(embeddingCacheMapper, times(2)).insertIgnoreBatch(captor.capture());
+        assertEquals(EmbeddingService.hash("a"), captor.getAllValues().get(0).get(0).getContentHash());
+    }
+
+    @Test
+    void testEmbedAll_FailedBatchReturnsNullAndIsNotCached() {
+        when(embeddingCacheMapper.selectBatchIds(anyList())).thenReturn(List.of());
+        when(zhipuAiUtils.generateEmbeddings(anyList())).thenReturn(new ArrayList<>());
+
+        assertNull(embeddingService.embed("hello"));
+        verify(embeddingCacheMapper, never()).insertIgnoreBatch(anyList());
+    }
+
+    @Test
+    void testHash_DependsOnText() {
+        assertEquals(EmbeddingService.hash("persona"), EmbeddingService.hash("persona"));
+        assertNotEquals(EmbeddingService.hash("persona"), EmbeddingService.hash("persona "));
+        assertEquals(64, EmbeddingService.hash("persona").length());
+    }
+
+    private static EmbeddingCache cached(String text, float value) {
+        EmbeddingCache cache = new EmbeddingCache();
+        cache.setContentHash(EmbeddingService.hash(text));
+        cache.setModel(ZhipuAiUtils.EMBEDDING_MODEL);
+        cache.setEmbedding(new float[]{value});
+        return cache;
+    }
+}
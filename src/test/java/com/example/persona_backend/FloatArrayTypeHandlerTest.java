@@ -0,0 +1,44 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.handler.FloatArrayTypeHandler;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FloatArrayTypeHandlerTest {
+
+    @Test
+    void testEncodeDecode_RoundTrip() {
+        float[] vector = {0.125f, -1.5f, 0f, 3.0e-7f, -0.999f};
+
+        byte[] bytes = FloatArrayTypeHandler.encode(vector);
+
+        // 每个分量固定 4 字节
+        assertEquals(vector.length * Float.BYTES, bytes.length);
+        assertFalse(FloatArrayTypeHandler.isLegacyJson(bytes));
+        assertArrayEquals(vector, FloatArrayTypeHandler.decode(bytes));
+    }
+
+    @Test
+    void testEncode_LittleEndian() {
+        // 1.0f = 0x3F800000，小端序低位在前
+        byte[] bytes = FloatArrayTypeHandler.encode(new float[]{1.0f});
+
+        assertArrayEquals(new byte[]{0x00, 0x00, (byte) 0x80, 0x3F}, bytes);
+    }
+
+    @Test
+    void testDecode_LegacyJson() {
+        byte[] json = "[0.1, -0.2, 0.3]".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(FloatArrayTypeHandler.isLegacyJson(json));
+        assertArrayEquals(new float[]{0.1f, -0.2f, 0.3f}, FloatArrayTypeHandler.decode(json));
+    }
+
+    @Test
+    void testDecode_Null() {
+        assertNull(FloatArrayTypeHandler.decode(null));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.utils.HnswGraph;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HNSW 召回质量基准：与精确扫描对比 recall@K
+ */
+class HnswGraphTest {
+
+    private static final int N = 3000;
+    private static final int DIM = 64;
+    private static final int K = 20;
+
+    private float[][] vectors;
+    private HnswGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        // 构造带簇结构的单位向量，模拟真实 Embedding 的分布
+        Random random = new Random(3);
+        float[][] centers = new float[30][DIM];
+        for (float[] c : centers) {
+            for (int j = 0; j < DIM; j++) c[j] = (float) random.nextGaussian();
+        }
+        vectors = new float[N][DIM];
+        for (int i = 0; i < N; i++) {
+            float[] c = centers[random.nextInt(centers.length)];
+            double norm = 0;
+            for (int j = 0; j < DIM; j++) {
+                vectors[i][j] = c[j] * 0.5f + (float) random.nextGaussian();
+                norm += vectors[i][j] * vectors[i][j];
+            }
+            for (int j = 0; j < DIM; j++) vectors[i][j] /= (float) Math.sqrt(norm);
+        }
+
+        graph = new HnswGraph(16, 100, new HnswGraph.Vectors() {
+            @Override
+            public float similarity(int a, int b) {
+                return dot(vectors[a], vectors[b]);
+            }
+
+            @Override
+            public float similarity(float[] query, int node) {
+                return dot(query, vectors[node]);
+            }
+        }, 42L);
+        for (int i = 0; i < N; i++) graph.insert(i);
+    }
+
+    @Test
+    void testRecallAtK_AgainstExactScan() {
+        Random random = new Random(11);
+        int samples = 100;
+        long hits = 0;
+        long exactNanos = 0;
+        long hnswNanos = 0;
+
+        for (int s = 0; s < samples; s++) {
+            float[] query = vectors[random.nextInt(N)];
+
+            long t0 = System.nanoTime();
+            Set<Integer> truth = exactTopK(query, K);
+            long t1 = System.nanoTime();
+            int[] approx = graph.search(query, K, 64, null);
+            long t2 = System.nanoTime();
+
+            exactNanos += t1 - t0;
+            hnswNanos += t2 - t1;
+            assertEquals(K, approx.length);
+            for (int node : approx) {
+                if (truth.contains(node)) hits++;
+            }
+        }
+
+        double recall = (double) hits / (samples * K);
+        System.out.printf(">>> recall@%d = %.4f, exact avg %d us, hnsw avg %d us%n",
+                K, recall, exactNanos / samples / 1000, hnswNanos / samples / 1000);
+        assertTrue(recall >= 0.9, "recall@" + K + " too low: " + recall);
+    }
+
+    @Test
+    void testSearch_ResultsSortedAndFiltered() {
+        float[] query = vectors[0];
+        int[] result = graph.search(query, 10, 64, node -> node % 2 == 1);
+
+        assertEquals(10, result.length);
+        for (int i = 0; i < result.length; i++) {
+            assertEquals(1, result[i] % 2);
+            if (i > 0) {
+                assertTrue(dot(query, vectors[result[i - 1]]) >= dot(query, vectors[result[i]]));
+            }
+        }
+    }
+
+    @Test
+    void testUpdate_NodeFoundAtNewPosition() {
+        // 把 0 号节点移动到 1 号节点的位置，更新后用 1 号向量查询应能找到 0 号
+        vectors[0] = vectors[1].clone();
+        graph.update(0);
+
+        int[] result = graph.search(vectors[1], 5, 64, null);
+        assertTrue(Arrays.stream(result).anyMatch(n -> n == 0));
+        assertEquals(N, graph.size());
+    }
+
+    private Set<Integer> exactTopK(float[] query, int k) {
+        Integer[] order = new Integer[N];
+        float[] scores = new float[N];
+        for (int i = 0; i < N; i++) {
+            order[i] = i;
+            scores[i] = dot(query, vectors[i]);
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        return new HashSet<>(Arrays.asList(order).subList(0, k));
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.utils.HttpClientRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientRegistryTest {
+
+    private final HttpClientRegistry registry = new HttpClientRegistry();
+
+    @AfterEach
+    void tearDown() {
+        registry.shutdown();
+    }
+
+    @Test
+    void testClient_SharedPerUpstream() {
+        OkHttpClient moonshot = registry.client(HttpClientRegistry.MOONSHOT);
+        OkHttpClient zhipu = registry.client(HttpClientRegistry.ZHIPU);
+
+        assertSame(moonshot, registry.client(HttpClientRegistry.MOONSHOT));
+        // 不同上游互不共用连接池和 Dispatcher
+        assertNotSame(moonshot.connectionPool(), zhipu.connectionPool());
+        assertNotSame(moonshot.dispatcher(), zhipu.dispatcher());
+        assertEquals(64, moonshot.dispatcher().getMaxRequestsPerHost());
+        assertTrue(moonshot.protocols().contains(Protocol.HTTP_2));
+    }
+
+    @Test
+    void testDerivedClient_KeepsPool() {
+        OkHttpClient base = registry.client(HttpClientRegistry.MOONSHOT);
+        OkHttpClient derived = base.newBuilder().build();
+
+        assertSame(base.connectionPool(), derived.connectionPool());
+        assertSame(base.dispatcher(), derived.dispatcher());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStats_ReportsCreatedUpstreams() {
+        registry.client(HttpClientRegistry.VOLC);
+
+        Map<String, Object> stats = registry.stats();
+        assertEquals(1, stats.size());
+        Map<String, Object> volc = (Map<String, Object>) stats.get(HttpClientRegistry.VOLC);
+        assertEquals(0, volc.get("connections"));
+        assertEquals(0L, volc.get("calls"));
+    }
+}
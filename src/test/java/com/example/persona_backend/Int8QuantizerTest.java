@@ -0,0 +1,106 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.utils.Int8Quantizer;
+import com.example.persona_backend.utils.VectorUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * int8 量化误差基准：量化粗排 (+ 全精度重排) 相对全精度精确扫描的 recall@20
+ */
+class Int8QuantizerTest {
+
+    private static final int N = 3000;
+    private static final int DIM = 256;
+    private static final int K = 20;
+
+    @Test
+    void testQuantize_ErrorBoundedByHalfStep() {
+        float[] v = {-1.5f, -0.2f, 0f, 0.33f, 2.0f};
+        byte[] codes = new byte[v.length];
+        float[] scales = new float[1];
+        float[] offsets = new float[1];
+
+        Int8Quantizer.quantize(v, codes, scales, offsets, 0);
+        float[] restored = new float[v.length];
+        Int8Quantizer.dequantize(codes, scales[0], offsets[0], 0, restored);
+
+        // 最小值 / 最大值分别映射到 -128 / 127
+        assertEquals(-128, codes[0]);
+        assertEquals(127, codes[4]);
+        for (int i = 0; i < v.length; i++) {
+            assertEquals(v[i], restored[i], scales[0] / 2 + 1e-6f);
+        }
+    }
+
+    @Test
+    void testQuantize_ConstantVector() {
+        float[] v = {0.5f, 0.5f, 0.5f};
+        byte[] codes = new byte[v.length];
+        float[] scales = new float[1];
+        float[] offsets = new float[1];
+
+        Int8Quantizer.quantize(v, codes, scales, offsets, 0);
+
+        assertEquals(0.5f * 1.5f, Int8Quantizer.dot(new float[]{1f, 1f, 1f}, 3f, codes, scales[0], offsets[0], 0), 1e-6f);
+    }
+
+    @Test
+    void testRecallAtK_AgainstFullPrecision() {
+        Random random = new Random(5);
+        float[][] centers = new float[30][DIM];
+        for (float[] c : centers) {
+            for (int j = 0; j < DIM; j++) c[j] = (float) random.nextGaussian();
+        }
+        float[][] vectors = new float[N][DIM];
+        byte[] codes = new byte[N * DIM];
+        float[] scales = new float[N];
+        float[] offsets = new float[N];
+        float[] norms = new float[N];
+        for (int i = 0; i < N; i++) {
+            float[] c = centers[random.nextInt(centers.length)];
+            for (int j = 0; j < DIM; j++) vectors[i][j] = c[j] * 0.5f + (float) random.nextGaussian();
+            norms[i] = VectorUtils.norm(vectors[i]);
+            Int8Quantizer.quantize(vectors[i], codes, scales, offsets, i);
+        }
+
+        int samples = 100;
+        long coarseHits = 0;
+        long rescoredHits = 0;
+        float[] scores = new float[N];
+        for (int s = 0; s < samples; s++) {
+            float[] query = vectors[random.nextInt(N)];
+            float queryNorm = VectorUtils.norm(query);
+
+            Set<Integer> truth = new HashSet<>();
+            for (int i = 0; i < N; i++) scores[i] = VectorUtils.dot(query, vectors[i]) / (queryNorm * norms[i]);
+            truth.addAll(topK(scores, K));
+
+            Int8Quantizer.cosineBatch(query, queryNorm, codes, scales, offsets, norms, N, scores);
+            List<Integer> coarse = topK(scores, K);
+            // 粗排取 200 个候选，再按全精度分数重排
+            List<Integer> candidates = topK(scores, 200);
+            for (int i : candidates) scores[i] = VectorUtils.dot(query, vectors[i]) / (queryNorm * norms[i]);
+            candidates.sort((a, b) -> Float.compare(scores[b], scores[a]));
+
+            for (int i : coarse) if (truth.contains(i)) coarseHits++;
+            for (int i : candidates.subList(0, K)) if (truth.contains(i)) rescoredHits++;
+        }
+
+        double coarseRecall = (double) coarseHits / (samples * K);
+        double rescoredRecall = (double) rescoredHits / (samples * K);
+        System.out.printf(">>> int8 recall@%d = %.4f, with rescoring = %.4f%n", K, coarseRecall, rescoredRecall);
+        assertTrue(coarseRecall >= 0.9, "int8 recall@" + K + " too low: " + coarseRecall);
+        assertTrue(rescoredRecall >= 0.99, "rescored recall@" + K + " too low: " + rescoredRecall);
+    }
+
+    private static List<Integer> topK(float[] scores, int k) {
+        Integer[] order = new Integer[scores.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        return new ArrayList<>(Arrays.asList(order).subList(0, k));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.filter.JwtFilter;
+import com.example.persona_backend.utils.JwtUtils;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtFilterTest {
+
+    @Mock
+    private JwtUtils jwtUtils;
+    @Mock
+    private HttpServletRequest request;
+    @Mock
+    private HttpServletResponse response;
+    @Mock
+    private FilterChain chain;
+
+    @InjectMocks
+    private JwtFilter jwtFilter;
+
+    @Test
+    void testSyncStartWhitelisted() throws Exception {
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getRequestURI()).thenReturn("/admin/sync-persona-vectors");
+
+        jwtFilter.doFilter(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    void testSyncSubPathsRequireToken() throws Exception {
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getRequestURI()).thenReturn("/admin/sync-persona-vectors/stop");
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+
+        jwtFilter.doFilter(request, response, chain);
+
+        // 白名单只按完整路径匹配，停止任务需要登录
+        verify(response).setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        verifyNoInteractions(chain);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.config.AsyncConfig;
+import com.example.persona_backend.utils.KeyedDebounceQueue;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedDebounceQueueTest {
+
+    @Test
+    void testCoalescesSubmissionsWithinWindow() throws InterruptedException {
+        List<Long> runs = new ArrayList<>();
+        KeyedDebounceQueue<Long> queue = new KeyedDebounceQueue<>("test", 30, 1000, 2, 100, Runnable::run, runs::add);
+
+        for (int i = 0; i < 5; i++) {
+            queue.submit(1L, 1);
+        }
+        // 窗口未到，不派发
+        assertEquals(0, queue.drain());
+
+        Thread.sleep(40);
+        assertEquals(1, queue.drain());
+        assertEquals(List.of(1L), runs);
+        assertEquals(4L, queue.stats().get("coalesced"));
+        assertEquals(0, queue.drain());
+    }
+
+    @Test
+    void testMostActiveKeysDispatchedFirst() {
+        List<Long> runs = new ArrayList<>();
+        KeyedDebounceQueue<Long> queue = new KeyedDebounceQueue<>("test", 0, 0, 1, 100, Runnable::run, runs::add);
+        queue.submit(1L, 2);
+        queue.submit(2L, 10);
+        queue.submit(3L, 5);
+
+        // 每轮只派发一个，按累计权重从高到低
+        while (queue.drain() > 0) { }
+
+        assertEquals(List.of(2L, 3L, 1L), runs);
+    }
+
+    @Test
+    void testCapsConcurrencyAndNeverOverlapsSameKey() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch release = new CountDownLatch(1);
+        KeyedDebounceQueue<Long> queue = new KeyedDebounceQueue<>("test", 0, 0, 2, 100, pool, key -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            queue.submit(1L, 1);
+            queue.submit(2L, 1);
+            queue.submit(3L, 1);
+            assertEquals(2, queue.drain());
+
+            // 执行中的 key 再次提交只会排队，不会并发执行
+            queue.submit(1L, 1);
+            assertEquals(0, queue.drain());
+            assertEquals(2, queue.stats().get("running"));
+            assertEquals(2, queue.stats().get("pending"));
+        } finally {
+            release.countDown();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testDropsNewKeysWhenFull() {
+        KeyedDebounceQueue<Long> queue = new KeyedDebounceQueue<>("test", 1000, 1000, 1, 2, Runnable::run, key -> { });
+
+        assertTrue(queue.submit(1L, 1));
+        assertTrue(queue.submit(2L, 1));
+        // 已在等待的 key 仍可合并
+        assertTrue(queue.submit(1L, 1));
+        assertFalse(queue.submit(3L, 1));
+        assertEquals(1L, queue.stats().get("dropped"));
+    }
+
+    @Test
+    void testRejectedTaskReleasesKey() {
+        // 画像进化线程池关闭后 (如应用关闭时 flush 触发 drain) 拒绝任务
+        ThreadPoolTaskExecutor executor = new AsyncConfig().profileEvolutionExecutor();
+        executor.initialize();
+        executor.shutdown();
+        List<Long> runs = new ArrayList<>();
+        KeyedDebounceQueue<Long> queue = new KeyedDebounceQueue<>("test", 0, 0, 1, 10, executor, runs::add);
+
+        queue.submit(1L, 1);
+        assertEquals(0, queue.drain());
+
+        // key 与执行名额都已归还：同一个 key 可以再次等待，下一轮仍会尝试派发
+        assertEquals(0, queue.stats().get("running"));
+        assertEquals(1L, queue.stats().get("dropped"));
+        queue.submit(1L, 1);
+        assertEquals(1, queue.stats().get("pending"));
+        queue.drain();
+        assertEquals(2L, queue.stats().get("dropped"));
+        assertTrue(runs.isEmpty());
+    }
+}
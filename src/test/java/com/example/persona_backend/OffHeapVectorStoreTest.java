@@ -0,0 +1,71 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.utils.OffHeapVectorStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapVectorStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testPutGet_AcrossSegments() {
+        // 单段 64 MB，4096 维时每段 4096 行
+        int dim = 4096;
+        OffHeapVectorStore store = new OffHeapVectorStore(dim);
+        float[] row = new float[dim];
+        for (int r : new int[]{0, 4095, 4096, 9000}) {
+            row[0] = r;
+            row[dim - 1] = -r;
+            store.put(r, row);
+        }
+
+        float[] out = new float[dim];
+        for (int r : new int[]{0, 4095, 4096, 9000}) {
+            store.get(r, out);
+            assertEquals((float) r, out[0]);
+            assertEquals((float) -r, out[dim - 1]);
+        }
+    }
+
+    @Test
+    void testMap_PrivateWritesAndAppendsDoNotTouchFile() throws IOException {
+        Path path = dir.resolve("rows.bin");
+        ByteBuffer bytes = ByteBuffer.allocate(4 * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putFloat(1f).putFloat(2f).putFloat(3f).putFloat(4f).flip();
+        Files.write(path, bytes.array());
+
+        OffHeapVectorStore store;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            store = OffHeapVectorStore.map(channel, 0, 2, 2);
+        }
+
+        // 关闭 channel 后映射仍可读
+        float[] out = new float[2];
+        store.get(1, out);
+        assertArrayEquals(new float[]{3f, 4f}, out);
+
+        // 覆盖映射行、追加超出映射范围的行
+        store.copy(1, 0, new float[2]);
+        store.put(2, new float[]{5f, 6f});
+        store.get(0, out);
+        assertArrayEquals(new float[]{3f, 4f}, out);
+        store.get(1, out);
+        assertArrayEquals(new float[]{3f, 4f}, out);
+        store.get(2, out);
+        assertArrayEquals(new float[]{5f, 6f}, out);
+
+        assertArrayEquals(bytes.array(), Files.readAllBytes(path));
+    }
+}
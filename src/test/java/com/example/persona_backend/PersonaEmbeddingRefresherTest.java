@@ -0,0 +1,130 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.entity.PersonaVector;
+import com.example.persona_backend.event.PersonaVectorChangedEvent;
+import com.example.persona_backend.mapper.PersonaMapper;
+import com.example.persona_backend.mapper.PersonaVectorMapper;
+import com.example.persona_backend.service.EmbeddingService;
+import com.example.persona_backend.service.PersonaEmbeddingRefresher;
+import com.example.persona_backend.service.PersonaVectorIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PersonaEmbeddingRefresherTest {
+
+    @Mock
+    private PersonaMapper personaMapper;
+    @Mock
+    private PersonaVectorMapper personaVectorMapper;
+    @Mock
+    private EmbeddingService embeddingService;
+    @Mock
+    private PersonaVectorIndex personaVectorIndex;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private PersonaEmbeddingRefresher refresher;
+
+    @Test
+    void testRefresh_ChangedVectorBumpsVersionAndUpdatesIndex() {
+        when(personaMapper.selectBatchIds(anyList())).thenReturn(List.of(persona(1L), persona(2L)));
+        // persona 1 的向量没变，persona 2 是新建的
+        when(personaVectorMapper.selectBatchIds(anyList())).thenReturn(List.of(vector(1L, 1f)));
+        when(embeddingService.embedAll(anyList())).thenReturn(Arrays.asList(new float[]{1f}, new float[]{2f}));
+        when(personaVectorMapper.selectVersion(2L)).thenReturn(1);
+
+        Set<Long> failed = refresher.refresh(List.of(1L, 2L));
+
+        assertTrue(failed.isEmpty());
+        verify(personaVectorMapper, never()).upsertEmbedding(eq(1L), any());
+        verify(personaVectorMapper).upsertEmbedding(eq(2L), any());
+
+        ArgumentCaptor<PersonaVector> captor = ArgumentCaptor.forClass(PersonaVector.class);
+        verify(personaVectorIndex).upsert(captor.capture());
+        assertEquals(2L, captor.getValue().getPersonaId());
+        assertEquals(1, captor.getValue().getVersion());
+        assertEquals(1L, refresher.stats().get("refreshed"));
+        assertEquals(1L, refresher.stats().get("unchanged"));
+
+        // 只有向量真正变化的 Persona 通知关注者失效
+        ArgumentCaptor<PersonaVectorChangedEvent> event = ArgumentCaptor.forClass(PersonaVectorChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(2L, event.getValue().getPersonaId());
+        // 新建的 Persona 没有旧向量，关注者质心按新增处理
+        assertNull(event.getValue().getPrevious());
+        assertArrayEquals(new float[]{2f}, event.getValue().getCurrent());
+    }
+
+    @Test
+    void testRefresh_EmbeddingFailureReturnedForRetry() {
+        when(personaMapper.selectBatchIds(anyList())).thenReturn(List.of(persona(3L)));
+        when(personaVectorMapper.selectBatchIds(anyList())).thenReturn(List.of());
+        when(embeddingService.embedAll(anyList())).thenReturn(Arrays.asList((float[]) null));
+
+        Set<Long> failed = refresher.refresh(List.of(3L));
+
+        assertEquals(Set.of(3L), failed);
+        verify(personaVectorMapper, never()).upsertEmbedding(anyLong(), any());
+        verifyNoInteractions(personaVectorIndex, eventPublisher);
+    }
+
+    @Test
+    void testEnqueue_DuplicateEventsCoalesced() {
+        refresher.enqueue(5L);
+        refresher.enqueue(5L);
+        refresher.enqueue(6L);
+
+        assertEquals(2, refresher.stats().get("queued"));
+        assertEquals(3L, refresher.stats().get("enqueued"));
+    }
+
+    @Test
+    void testWorker_ProcessesQueuedPersona() throws Exception {
+        ReflectionTestUtils.setField(refresher, "debounceMs", 10L);
+        when(personaMapper.selectBatchIds(anyList())).thenReturn(List.of(persona(7L)));
+        when(personaVectorMapper.selectBatchIds(anyList())).thenReturn(List.of());
+        when(embeddingService.embedAll(anyList())).thenReturn(Arrays.asList(new float[]{7f}));
+        when(personaVectorMapper.selectVersion(7L)).thenReturn(1);
+
+        refresher.init();
+        try {
+            refresher.enqueue(7L);
+            verify(personaVectorIndex, timeout(2000)).upsert(any(PersonaVector.class));
+        } finally {
+            refresher.shutdown();
+        }
+        assertEquals(0, refresher.stats().get("queued"));
+    }
+
+    private static Persona persona(Long id) {
+        Persona persona = new Persona();
+        persona.setId(id);
+        persona.setName("p" + id);
+        return persona;
+    }
+
+    private static PersonaVector vector(Long id, float value) {
+        PersonaVector pv = new PersonaVector();
+        pv.setPersonaId(id);
+        pv.setEmbedding(new float[]{value});
+        pv.setVersion(1);
+        return pv;
+    }
+}
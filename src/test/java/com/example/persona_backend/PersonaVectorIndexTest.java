@@ -0,0 +1,160 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.entity.PersonaVector;
+import com.example.persona_backend.mapper.PersonaVectorMapper;
+import com.example.persona_backend.service.PersonaVectorIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PersonaVectorIndexTest {
+
+    @Mock
+    private PersonaVectorMapper personaVectorMapper;
+
+    @InjectMocks
+    private PersonaVectorIndex personaVectorIndex;
+
+    @BeforeEach
+    void setUp() {
+        when(personaVectorMapper.selectList(null)).thenReturn(Arrays.asList(
+                vector(1L, 1f, 0f, 0f),
+                vector(2L, 0f, 1f, 0f),
+                vector(3L, 0.7f, 0.7f, 0f)
+        ));
+        personaVectorIndex.reload();
+    }
+
+    @Test
+    void testTopK_OrderedByCosine() {
+        List<Long> result = personaVectorIndex.topK(new float[]{1f, 0.1f, 0f}, null, 2);
+
+        assertEquals(Arrays.asList(1L, 3L), result);
+    }
+
+    @Test
+    void testTopK_SkipsExcluded() {
+        List<Long> result = personaVectorIndex.topK(new float[]{1f, 0.1f, 0f}, List.of(1L), 5);
+
+        assertEquals(Arrays.asList(3L, 2L), result);
+    }
+
+    @Test
+    void testUpsert_VisibleWithoutReload() {
+        personaVectorIndex.upsert(4L, new float[]{0f, 0f, 1f});
+        // 已存在的向量被覆盖，而不是新增一行
+        personaVectorIndex.upsert(2L, new float[]{0f, 0.1f, 1f});
+
+        assertEquals(4, personaVectorIndex.size());
+        List<Long> result = personaVectorIndex.topK(new float[]{0f, 0f, 1f}, null, 2);
+        assertEquals(Arrays.asList(4L, 2L), result);
+
+        // 只在启动时加载一次
+        verify(personaVectorMapper, times(1)).selectList(null);
+    }
+
+    @Test
+    void testHnswEngine_MatchesExactOnSmallSet() {
+        ReflectionTestUtils.setField(personaVectorIndex, "engine", PersonaVectorIndex.ENGINE_HNSW);
+        personaVectorIndex.reload();
+
+        assertEquals(Arrays.asList(1L, 3L), personaVectorIndex.topK(new float[]{1f, 0.1f, 0f}, null, 2));
+        assertEquals(Arrays.asList(3L, 2L), personaVectorIndex.topK(new float[]{1f, 0.1f, 0f}, List.of(1L), 5));
+
+        // 增量插入后立即可查
+        personaVectorIndex.upsert(4L, new float[]{0f, 0f, 1f});
+        assertEquals(List.of(4L), personaVectorIndex.topK(new float[]{0f, 0f, 1f}, null, 1));
+    }
+
+    @Test
+    void testInt8Quantization_RescoresWithFullPrecision() {
+        ReflectionTestUtils.setField(personaVectorIndex, "quantization", PersonaVectorIndex.QUANTIZATION_INT8);
+        personaVectorIndex.reload();
+
+        // 粗排候选 (全部 3 个) 扣除已关注的 1 号，再由堆外的全精度向量重排，不访问数据库
+        assertEquals(Arrays.asList(3L, 2L), personaVectorIndex.topK(new float[]{1f, 0.1f, 0f}, List.of(1L), 5));
+        personaVectorIndex.upsert(4L, new float[]{0.9f, 0.1f, 0f});
+        assertEquals(Arrays.asList(4L, 1L), personaVectorIndex.topK(new float[]{1f, 0.1f, 0f}, null, 2));
+        verify(personaVectorMapper, never()).selectBatchIds(anyCollection());
+    }
+
+    @Test
+    void testInt8Snapshot_RescoresFromMappedFullPrecision(@TempDir Path dir) throws Exception {
+        Path snapshot = dir.resolve("persona-vectors.snap");
+        ReflectionTestUtils.setField(personaVectorIndex, "quantization", PersonaVectorIndex.QUANTIZATION_INT8);
+        ReflectionTestUtils.setField(personaVectorIndex, "snapshotPath", snapshot.toString());
+        personaVectorIndex.reload();
+
+        // 快照之后 2 号被删除：映射的全精度向量随行号一起压缩
+        when(personaVectorMapper.selectVersions()).thenReturn(Arrays.asList(version(1L, 1), version(3L, 1)));
+
+        PersonaVectorIndex restored = new PersonaVectorIndex();
+        ReflectionTestUtils.setField(restored, "personaVectorMapper", personaVectorMapper);
+        ReflectionTestUtils.setField(restored, "quantization", PersonaVectorIndex.QUANTIZATION_INT8);
+        ReflectionTestUtils.setField(restored, "snapshotPath", snapshot.toString());
+        assertTrue(restored.loadSnapshot());
+
+        assertEquals(2, restored.size());
+        assertEquals(Arrays.asList(3L, 1L), restored.topK(new float[]{0.6f, 0.8f, 0f}, null, 5));
+        // 新增的行写入直接内存段，与映射的行一起重排
+        restored.upsert(5L, new float[]{0.6f, 0.8f, 0f});
+        assertEquals(Arrays.asList(5L, 3L, 1L), restored.topK(new float[]{0.6f, 0.8f, 0f}, null, 5));
+        verify(personaVectorMapper, never()).selectBatchIds(anyCollection());
+    }
+
+    @Test
+    void testSnapshot_LoadReplaysChangedRowsOnly(@TempDir Path dir) throws Exception {
+        Path snapshot = dir.resolve("persona-vectors.snap");
+        ReflectionTestUtils.setField(personaVectorIndex, "snapshotPath", snapshot.toString());
+        personaVectorIndex.reload();
+        assertTrue(Files.exists(snapshot));
+
+        // 快照之后：2 号向量被更新 (version 2)，3 号被删除，新增 4 号
+        when(personaVectorMapper.selectVersions()).thenReturn(Arrays.asList(
+                version(1L, 1), version(2L, 2), version(4L, 1)));
+        when(personaVectorMapper.selectBatchIds(anyCollection())).thenReturn(Arrays.asList(
+                versionedVector(2L, 2, 0f, 0f, 1f),
+                versionedVector(4L, 1, 0f, 1f, 0f)));
+
+        PersonaVectorIndex restored = new PersonaVectorIndex();
+        ReflectionTestUtils.setField(restored, "personaVectorMapper", personaVectorMapper);
+        ReflectionTestUtils.setField(restored, "snapshotPath", snapshot.toString());
+        restored.load();
+
+        assertEquals(3, restored.size());
+        assertEquals(Arrays.asList(1L, 4L, 2L), restored.topK(new float[]{1f, 0.2f, 0.1f}, null, 5));
+        verify(personaVectorMapper).selectBatchIds(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(2L, 4L))));
+        // 只有第一次全量加载读过整表
+        verify(personaVectorMapper, times(2)).selectList(null);
+    }
+
+    private PersonaVector vector(Long personaId, float... values) {
+        return versionedVector(personaId, 1, values);
+    }
+
+    private PersonaVector versionedVector(Long personaId, int version, float... values) {
+        PersonaVector pv = new PersonaVector();
+        pv.setPersonaId(personaId);
+        pv.setEmbedding(values);
+        pv.setVersion(version);
+        return pv;
+    }
+
+    private PersonaVector version(Long personaId, int version) {
+        return versionedVector(personaId, version);
+    }
+}
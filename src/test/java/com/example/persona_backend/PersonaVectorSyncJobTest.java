@@ -0,0 +1,166 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.entity.JobCheckpoint;
+import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.entity.PersonaVector;
+import com.example.persona_backend.event.PersonaVectorChangedEvent;
+import com.example.persona_backend.mapper.JobCheckpointMapper;
+import com.example.persona_backend.mapper.PersonaMapper;
+import com.example.persona_backend.mapper.PersonaVectorMapper;
+import com.example.persona_backend.service.EmbeddingService;
+import com.example.persona_backend.service.PersonaVectorIndex;
+import com.example.persona_backend.service.PersonaVectorSyncJob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PersonaVectorSyncJobTest {
+
+    @Mock
+    private PersonaMapper personaMapper;
+    @Mock
+    private PersonaVectorMapper personaVectorMapper;
+    @Mock
+    private JobCheckpointMapper checkpointMapper;
+    @Mock
+    private EmbeddingService embeddingService;
+    @Mock
+    private PersonaVectorIndex personaVectorIndex;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private PersonaVectorSyncJob syncJob;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(syncJob, "pageSize", 2);
+        ReflectionTestUtils.setField(syncJob, "workers", 2);
+
+        // 反连接分页：id 1..5 都没有向量
+        when(personaMapper.selectIdsWithoutVector(anyLong(), anyInt())).thenAnswer(inv -> {
+            long after = inv.getArgument(0);
+            int limit = inv.getArgument(1);
+            List<Long> ids = new ArrayList<>();
+            for (long id = after + 1; id <= 5 && ids.size() < limit; id++) ids.add(id);
+            return ids;
+        });
+        when(personaMapper.selectBatchIds(anyCollection())).thenAnswer(inv -> {
+            List<Persona> personas = new ArrayList<>();
+            for (Object id : (Collection<?>) inv.getArgument(0)) {
+                Persona p = new Persona();
+                p.setId((Long) id);
+                p.setName("persona-" + id);
+                personas.add(p);
+            }
+            return personas;
+        });
+        when(embeddingService.embedAll(anyList())).thenAnswer(inv -> {
+            List<float[]> vectors = new ArrayList<>();
+            for (int i = 0; i < ((List<?>) inv.getArgument(0)).size(); i++) vectors.add(new float[]{1f, 0f});
+            return vectors;
+        });
+    }
+
+    @Test
+    void testStart_SyncsAllPagesAndResetsCheckpoint() throws InterruptedException {
+        assertTrue(syncJob.start(true));
+        awaitFinished();
+
+        assertEquals(PersonaVectorSyncJob.STATE_COMPLETED, syncJob.status().get("state"));
+        assertEquals(5L, syncJob.status().get("succeeded"));
+        verify(personaVectorMapper, times(5)).insert(any(PersonaVector.class));
+        verify(personaVectorIndex, times(5)).upsert(any(PersonaVector.class));
+        // 首次生成的向量通知关注者质心失效 (没有向量时就可能已被关注)
+        verify(eventPublisher, times(5)).publishEvent(any(PersonaVectorChangedEvent.class));
+
+        // 完成后断点归零，下一轮从头扫描
+        ArgumentCaptor<JobCheckpoint> captor = ArgumentCaptor.forClass(JobCheckpoint.class);
+        verify(checkpointMapper, atLeastOnce()).updateById(captor.capture());
+        JobCheckpoint last = captor.getValue();
+        assertEquals(PersonaVectorSyncJob.STATE_COMPLETED, last.getStatus());
+        assertEquals(0L, last.getCursorId());
+    }
+
+    @Test
+    void testStart_ResumesFromCheckpoint() throws InterruptedException {
+        JobCheckpoint checkpoint = new JobCheckpoint();
+        checkpoint.setJobName(PersonaVectorSyncJob.JOB_NAME);
+        checkpoint.setCursorId(3L);
+        checkpoint.setStatus(PersonaVectorSyncJob.STATE_RUNNING);
+        when(checkpointMapper.selectById(PersonaVectorSyncJob.JOB_NAME)).thenReturn(checkpoint);
+
+        syncJob.resumeOnStartup();
+        awaitFinished();
+
+        verify(personaMapper).selectIdsWithoutVector(eq(3L), anyInt());
+        verify(personaMapper, never()).selectIdsWithoutVector(eq(0L), anyInt());
+        assertEquals(2L, syncJob.status().get("succeeded"));
+    }
+
+    @Test
+    void testStart_CountsFailuresAndConcurrentInserts() throws InterruptedException {
+        when(embeddingService.embedAll(anyList())).thenAnswer(inv -> {
+            List<float[]> vectors = new ArrayList<>();
+            for (int i = 0; i < ((List<?>) inv.getArgument(0)).size(); i++) vectors.add(null);
+            vectors.set(0, new float[]{1f, 0f});
+            return vectors;
+        });
+        when(personaVectorMapper.insert(argThat((PersonaVector pv) -> pv != null && pv.getPersonaId() == 5L)))
+                .thenThrow(new DuplicateKeyException("duplicate"));
+
+        syncJob.start(true);
+        awaitFinished();
+
+        // 每页只有第一条生成成功：1、3 写入，5 已存在，2、4 失败
+        assertEquals(2L, syncJob.status().get("succeeded"));
+        assertEquals(1L, syncJob.status().get("skipped"));
+        assertEquals(2L, syncJob.status().get("failed"));
+        // 只有真正写入的向量发布变更事件
+        verify(eventPublisher, times(2)).publishEvent(any(PersonaVectorChangedEvent.class));
+    }
+
+    @Test
+    void testStart_RejectedWhileRunning() throws InterruptedException {
+        when(embeddingService.embedAll(anyList())).thenAnswer(inv -> {
+            Thread.sleep(200);
+            return List.of(new float[]{1f}, new float[]{1f});
+        });
+
+        assertTrue(syncJob.start(true));
+        assertFalse(syncJob.start(true));
+        assertTrue(syncJob.stop());
+        awaitFinished();
+
+        assertEquals(PersonaVectorSyncJob.STATE_STOPPED, syncJob.status().get("state"));
+    }
+
+    private void awaitFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            Object state = syncJob.status().get("state");
+            if (!PersonaVectorSyncJob.STATE_RUNNING.equals(state) && !PersonaVectorSyncJob.STATE_STOPPING.equals(state)) return;
+            Thread.sleep(10);
+        }
+        fail("sync job did not finish: " + syncJob.status());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.dto.PersonaRecommendationDto;
+import com.example.persona_backend.entity.Persona;
+import com.example.persona_backend.mapper.PersonaMapper;
+import com.example.persona_backend.service.PopularPersonaService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PopularPersonaServiceTest {
+
+    @Mock
+    private PersonaMapper personaMapper;
+
+    @InjectMocks
+    private PopularPersonaService popularPersonaService;
+
+    @Test
+    void testTop_EmptyBeforeRefresh() {
+        assertTrue(popularPersonaService.top(6).isEmpty());
+    }
+
+    @Test
+    void testRefresh_KeepsPopularityOrderAndPadsWithNewest() {
+        ReflectionTestUtils.setField(popularPersonaService, "size", 3);
+        when(personaMapper.selectPopularIds(any(), anyDouble(), anyDouble(), anyDouble(), eq(3)))
+                .thenReturn(List.of(20L, 10L));
+        // selectBatchIds 不保证顺序
+        when(personaMapper.selectBatchIds(anyList())).thenReturn(List.of(persona(10L), persona(20L)));
+        when(personaMapper.selectList(any())).thenReturn(List.of(persona(30L)));
+
+        popularPersonaService.refresh();
+
+        List<PersonaRecommendationDto> top = popularPersonaService.top(6);
+        assertEquals(List.of(20L, 10L, 30L), top.stream().map(PersonaRecommendationDto::getId).toList());
+        assertTrue(top.get(0).getMatchScore() > top.get(2).getMatchScore());
+        assertEquals(2, popularPersonaService.top(2).size());
+    }
+
+    private static Persona persona(Long id) {
+        Persona persona = new Persona();
+        persona.setId(id);
+        persona.setName("p" + id);
+        persona.setPersonalityTags("a,b");
+        return persona;
+    }
+}
@@ -5,11 +5,20 @@ import com.example.persona_backend.dto.PersonaRecommendationDto;
 import com.example.persona_backend.entity.Persona;
 import com.example.persona_backend.entity.PersonaVector;
 import com.example.persona_backend.entity.UserProfile;
+import com.example.persona_backend.event.ProfileEvolvedEvent;
 import com.example.persona_backend.mapper.FollowMapper;
 import com.example.persona_backend.mapper.PersonaMapper;
 import com.example.persona_backend.mapper.PersonaVectorMapper;
 import com.example.persona_backend.mapper.UserProfileMapper;
+import com.example.persona_backend.service.BehaviorCentroidService;
+import com.example.persona_backend.service.PersonaVectorIndex;
+import com.example.persona_backend.service.PopularPersonaService;
 import com.example.persona_backend.service.RecommendationService;
+import com.example.persona_backend.service.RerankCache;
+import com.example.persona_backend.service.TargetVectorCache;
+import com.example.persona_backend.utils.BulkheadRegistry;
+import com.example.persona_backend.utils.CircuitBreaker;
+import com.example.persona_backend.utils.CircuitBreakerRegistry;
 import okhttp3.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -39,6 +48,10 @@ class RecommendationServiceTest {
     private UserProfileMapper userProfileMapper;
     @Mock
     private FollowMapper followMapper;
+    @Mock
+    private BehaviorCentroidService behaviorCentroidService;
+    @Mock
+    private PopularPersonaService popularPersonaService;
 
     // Mock HTTP Client for Kimi API
     @Mock
@@ -53,12 +66,23 @@ class RecommendationServiceTest {
     @InjectMocks
     private RecommendationService recommendationService;
 
+    private final CircuitBreakerRegistry circuitBreakerRegistry = new CircuitBreakerRegistry();
+
     @BeforeEach
     void setUp() {
         // 利用反射注入私有字段
         ReflectionTestUtils.setField(recommendationService, "apiKey", "test-api-key");
         ReflectionTestUtils.setField(recommendationService, "apiUrl", "http://test-api.com");
         ReflectionTestUtils.setField(recommendationService, "client", client);
+        ReflectionTestUtils.setField(recommendationService, "bulkheadRegistry", new BulkheadRegistry());
+        ReflectionTestUtils.setField(recommendationService, "circuitBreakerRegistry", circuitBreakerRegistry);
+
+        // 内存向量索引使用同一个 Mock Mapper 加载数据
+        PersonaVectorIndex personaVectorIndex = new PersonaVectorIndex();
+        ReflectionTestUtils.setField(personaVectorIndex, "personaVectorMapper", personaVectorMapper);
+        ReflectionTestUtils.setField(recommendationService, "personaVectorIndex", personaVectorIndex);
+        ReflectionTestUtils.setField(recommendationService, "targetVectorCache", new TargetVectorCache());
+        ReflectionTestUtils.setField(recommendationService, "rerankCache", new RerankCache());
     }
 
     @Test
@@ -68,15 +92,15 @@ class RecommendationServiceTest {
         // 1. Mock Data: User Profile (用户画像)
         UserProfile mockProfile = new UserProfile();
         mockProfile.setUserId(userId);
-        mockProfile.setTargetVector(Arrays.asList(0.1, 0.1));
+        mockProfile.setTargetVector(new float[]{0.1f, 0.1f});
         when(userProfileMapper.selectById(userId)).thenReturn(mockProfile);
 
         // 2. Mock Data: Follow List (关注列表为空)
         when(followMapper.selectFollowedPersonaIds(userId)).thenReturn(new ArrayList<>());
 
         // 3. Mock Data: Candidate Vectors (候选向量)
-        PersonaVector pv1 = new PersonaVector(); pv1.setPersonaId(101L); pv1.setEmbedding(Arrays.asList(0.1, 0.1)); // 匹配
-        PersonaVector pv2 = new PersonaVector(); pv2.setPersonaId(102L); pv2.setEmbedding(Arrays.asList(0.9, 0.9)); // 不匹配
+        PersonaVector pv1 = new PersonaVector(); pv1.setPersonaId(101L); pv1.setEmbedding(new float[]{0.1f, 0.1f}); // 匹配
+        PersonaVector pv2 = new PersonaVector(); pv2.setPersonaId(102L); pv2.setEmbedding(new float[]{0.9f, 0.9f}); // 不匹配
         when(personaVectorMapper.selectList(null)).thenReturn(Arrays.asList(pv1, pv2));
 
         // 4. Mock Data: Persona Details (候选人详情)
@@ -101,7 +125,73 @@ class RecommendationServiceTest {
         assertEquals(1, result.size());
         assertEquals("AI Expert", result.get(0).getName());
 
-        // ✅ 修正点：这里验证调用了 2 次 (一次在 buildTargetVector, 一次在 l0VectorRecall)
-        verify(followMapper, times(2)).selectFollowedPersonaIds(userId);
+        // V_behavior 来自增量维护的质心，关注列表只在 l0VectorRecall 过滤时查询 1 次
+        verify(behaviorCentroidService).getBehaviorVector(userId);
+        verify(followMapper, times(1)).selectFollowedPersonaIds(userId);
+
+        // 候选和画像版本不变时，第二次请求直接命中精排缓存，不再调用 Kimi
+        List<PersonaRecommendationDto> again = recommendationService.recommendForUser(userId);
+        assertEquals(result, again);
+        verify(client, times(1)).newCall(any(Request.class));
+        // 精排缓存的画像版本来自内存失效计数，命中目标向量缓存时不再访问 user_profile
+        verify(userProfileMapper, times(1)).selectById(userId);
+        verifyNoMoreInteractions(userProfileMapper);
+
+        // 画像进化后版本变化，重新精排
+        TargetVectorCache targetVectorCache = (TargetVectorCache) ReflectionTestUtils.getField(recommendationService, "targetVectorCache");
+        targetVectorCache.onProfileEvolved(new ProfileEvolvedEvent(userId));
+        recommendationService.recommendForUser(userId);
+        verify(client, times(2)).newCall(any(Request.class));
+    }
+
+    @Test
+    void testRecommend_CircuitOpenServesLastRerank() throws IOException {
+        Long userId = 3L;
+        UserProfile profile = new UserProfile();
+        profile.setUserId(userId);
+        profile.setTargetVector(new float[]{0.1f, 0.1f});
+        when(userProfileMapper.selectById(userId)).thenReturn(profile);
+        when(followMapper.selectFollowedPersonaIds(userId)).thenReturn(new ArrayList<>());
+        PersonaVector pv = new PersonaVector(); pv.setPersonaId(101L); pv.setEmbedding(new float[]{0.1f, 0.1f});
+        when(personaVectorMapper.selectList(null)).thenReturn(List.of(pv));
+        Persona p1 = new Persona(); p1.setId(101L); p1.setName("AI Expert");
+        when(personaMapper.selectBatchIds(anyList())).thenReturn(List.of(p1));
+
+        // 之前成功精排过一次
+        RerankCache rerankCache = (RerankCache) ReflectionTestUtils.getField(recommendationService, "rerankCache");
+        PersonaRecommendationDto last = new PersonaRecommendationDto();
+        last.setId(101L);
+        last.setReason("上次的推荐理由");
+        rerankCache.rememberForUser(userId, List.of(last));
+
+        // Moonshot 连续失败 (达到 minimum-calls)，熔断打开
+        CircuitBreaker breaker = circuitBreakerRegistry.get(CircuitBreakerRegistry.MOONSHOT);
+        for (int i = 0; i < 10; i++) {
+            breaker.acquirePermission().failure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        List<PersonaRecommendationDto> result = recommendationService.recommendForUser(userId);
+
+        assertEquals(1, result.size());
+        assertEquals("上次的推荐理由", result.get(0).getReason());
+        verifyNoInteractions(client);
+    }
+
+    @Test
+    void testRecommend_ColdStartServesPopularRanking() {
+        Long userId = 2L;
+        // 既没有画像也没有关注 -> 零向量
+        when(userProfileMapper.selectById(userId)).thenReturn(null);
+
+        PersonaRecommendationDto hot = new PersonaRecommendationDto();
+        hot.setId(301L);
+        when(popularPersonaService.top(anyInt())).thenReturn(List.of(hot));
+
+        List<PersonaRecommendationDto> result = recommendationService.recommendForUser(userId);
+
+        assertEquals(List.of(hot), result);
+        // 不做向量召回，也不调用大模型
+        verifyNoInteractions(followMapper, personaMapper, client);
     }
-}
\ No newline at end of file
+}
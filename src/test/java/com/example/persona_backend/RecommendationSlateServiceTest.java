@@ -0,0 +1,156 @@
+package com.example.persona_backend;
+
+import com.alibaba.fastjson2.JSON;
+import com.example.persona_backend.dto.PersonaRecommendationDto;
+import com.example.persona_backend.entity.RecommendationSlate;
+import com.example.persona_backend.event.FollowChangedEvent;
+import com.example.persona_backend.mapper.ChatMessageMapper;
+import com.example.persona_backend.mapper.RecommendationSlateMapper;
+import com.example.persona_backend.service.RecommendationService;
+import com.example.persona_backend.service.RecommendationSlateService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RecommendationSlateServiceTest {
+
+    @Mock
+    private RecommendationService recommendationService;
+    @Mock
+    private RecommendationSlateMapper slateMapper;
+    @Mock
+    private ChatMessageMapper chatMessageMapper;
+
+    @InjectMocks
+    private RecommendationSlateService slateService;
+
+    @BeforeEach
+    void setUp() {
+        slateService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        slateService.shutdown();
+    }
+
+    @Test
+    void testGetRecommendation_ServesFreshSlate() {
+        when(slateMapper.selectById(1L)).thenReturn(slate(1L, List.of(dto(10L)), LocalDateTime.now()));
+
+        List<PersonaRecommendationDto> result = slateService.getRecommendation(1L);
+
+        assertEquals(1, result.size());
+        assertEquals(10L, result.get(0).getId());
+        verifyNoInteractions(recommendationService);
+    }
+
+    @Test
+    void testGetRecommendation_FallsBackToLiveOnMissOrExpired() {
+        when(slateMapper.selectById(1L)).thenReturn(null);
+        when(slateMapper.selectById(2L)).thenReturn(slate(2L, List.of(dto(10L)), LocalDateTime.now().minusDays(1)));
+        when(recommendationService.recommendForUser(anyLong())).thenReturn(List.of(dto(20L)));
+
+        assertEquals(20L, slateService.getRecommendation(1L).get(0).getId());
+        assertEquals(20L, slateService.getRecommendation(2L).get(0).getId());
+        assertEquals(2L, slateService.stats().get("misses"));
+    }
+
+    @Test
+    void testPrecomputeActiveUsers_WritesSlates() {
+        when(chatMessageMapper.selectActiveUserIds(any(LocalDateTime.class), anyInt())).thenReturn(List.of(1L, 2L));
+        when(recommendationService.computeSlate(anyLong())).thenReturn(List.of(dto(10L)));
+
+        assertEquals(2, slateService.precomputeActiveUsers());
+
+        ArgumentCaptor<RecommendationSlate> captor = ArgumentCaptor.forClass(RecommendationSlate.class);
+        verify(slateMapper, times(2)).insert(captor.capture());
+        List<PersonaRecommendationDto> items = JSON.parseArray(captor.getValue().getItems(), PersonaRecommendationDto.class);
+        assertEquals(10L, items.get(0).getId());
+    }
+
+    @Test
+    void testPrecomputeActiveUsers_SkipsFailedRerank() {
+        when(chatMessageMapper.selectActiveUserIds(any(LocalDateTime.class), anyInt())).thenReturn(List.of(1L, 2L));
+        when(recommendationService.computeSlate(1L)).thenThrow(new IllegalStateException("L1 rerank failed"));
+        when(recommendationService.computeSlate(2L)).thenReturn(List.of(dto(10L)));
+
+        assertEquals(1, slateService.precomputeActiveUsers());
+
+        // 降级结果不会被持久化
+        verify(slateMapper, times(1)).insert(any(RecommendationSlate.class));
+        assertEquals(1, ((Map<?, ?>) slateService.stats().get("lastRun")).get("failed"));
+    }
+
+    @Test
+    void testStart_RunsInBackgroundAndRejectsOverlap() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(chatMessageMapper.selectActiveUserIds(any(LocalDateTime.class), anyInt())).thenReturn(List.of(1L));
+        when(recommendationService.computeSlate(1L)).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(dto(10L));
+        });
+
+        // 调用方 (定时调度线程 / 管理接口) 不等待本轮结束
+        assertTrue(slateService.start());
+        assertEquals(true, slateService.status().get("running"));
+        assertFalse(slateService.start());
+        // 定时触发遇到上一轮未结束时直接跳过
+        slateService.precomputePeriodically();
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Boolean.TRUE.equals(slateService.status().get("running")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(false, slateService.status().get("running"));
+        assertEquals(1, slateService.status().get("done"));
+        verify(recommendationService, times(1)).computeSlate(1L);
+        verify(slateMapper, times(1)).insert(any(RecommendationSlate.class));
+    }
+
+    @Test
+    void testPrecomputeForUser_DiscardsResultInvalidatedMidway() {
+        when(recommendationService.computeSlate(1L)).thenAnswer(inv -> {
+            // 计算期间用户关注了新的 Persona
+            slateService.onFollowChanged(new FollowChangedEvent(1L, 10L, true));
+            return List.of(dto(10L));
+        });
+
+        assertFalse(slateService.precomputeForUser(1L));
+        verify(slateMapper, never()).insert(any(RecommendationSlate.class));
+    }
+
+    private static RecommendationSlate slate(Long userId, List<PersonaRecommendationDto> items, LocalDateTime computedAt) {
+        RecommendationSlate slate = new RecommendationSlate();
+        slate.setUserId(userId);
+        slate.setItems(JSON.toJSONString(items));
+        slate.setComputedAt(computedAt);
+        return slate;
+    }
+
+    private static PersonaRecommendationDto dto(Long id) {
+        PersonaRecommendationDto dto = new PersonaRecommendationDto();
+        dto.setId(id);
+        dto.setName("persona-" + id);
+        dto.setReason("reason");
+        dto.setMatchScore(90);
+        return dto;
+    }
+}
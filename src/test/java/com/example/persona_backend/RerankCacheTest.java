@@ -0,0 +1,140 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.dto.PersonaRecommendationDto;
+import com.example.persona_backend.service.RerankCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RerankCacheTest {
+
+    private RerankCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RerankCache();
+    }
+
+    @Test
+    void testKey_DependsOnOrderAndProfileVersion() {
+        String key = RerankCache.key(1L, List.of(10L, 20L), 100L);
+
+        assertEquals(key, RerankCache.key(1L, List.of(10L, 20L), 100L));
+        assertNotEquals(key, RerankCache.key(1L, List.of(20L, 10L), 100L));
+        assertNotEquals(key, RerankCache.key(1L, List.of(10L, 20L), 101L));
+        assertNotEquals(key, RerankCache.key(2L, List.of(10L, 20L), 100L));
+    }
+
+    @Test
+    void testGetOrLoad_HitAfterMiss() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        String key = RerankCache.key(1L, List.of(10L), 0L);
+
+        List<PersonaRecommendationDto> first = cache.getOrLoad(key, () -> { loads.incrementAndGet(); return List.of(dto(10L)); });
+        List<PersonaRecommendationDto> second = cache.getOrLoad(key, () -> { loads.incrementAndGet(); return List.of(dto(99L)); });
+
+        assertEquals(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void testGetOrLoad_FailureIsNotCached() throws Exception {
+        String key = RerankCache.key(1L, List.of(10L), 0L);
+
+        assertThrows(IOException.class, () -> cache.getOrLoad(key, () -> { throw new IOException("Kimi API failed: 500"); }));
+        List<PersonaRecommendationDto> result = cache.getOrLoad(key, () -> List.of(dto(10L)));
+
+        assertEquals(10L, result.get(0).getId());
+        assertEquals(0, cache.stats().get("inFlight"));
+    }
+
+    @Test
+    void testGetOrLoad_ExpiredEntryReloads() throws Exception {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 0L);
+        AtomicInteger loads = new AtomicInteger();
+        String key = RerankCache.key(1L, List.of(10L), 0L);
+
+        cache.getOrLoad(key, () -> { loads.incrementAndGet(); return List.of(dto(10L)); });
+        cache.getOrLoad(key, () -> { loads.incrementAndGet(); return List.of(dto(10L)); });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testGetOrLoad_EvictsOldestBeyondMaxEntries() throws Exception {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        for (long i = 1; i <= 3; i++) {
+            long id = i;
+            cache.getOrLoad(RerankCache.key(id, List.of(10L), 0L), () -> List.of(dto(id)));
+        }
+
+        assertEquals(2, cache.stats().get("entries"));
+        AtomicInteger loads = new AtomicInteger();
+        cache.getOrLoad(RerankCache.key(1L, List.of(10L), 0L), () -> { loads.incrementAndGet(); return List.of(dto(1L)); });
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testGetOrLoad_CoalescesConcurrentRequests() throws Exception {
+        int threads = 8;
+        String key = RerankCache.key(1L, List.of(10L, 20L), 0L);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<PersonaRecommendationDto>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> cache.getOrLoad(key, () -> {
+                    loads.incrementAndGet();
+                    // 模拟慢速的 Kimi 调用，让其他线程进入等待
+                    release.await(5, TimeUnit.SECONDS);
+                    return List.of(dto(10L));
+                })));
+            }
+            // 等所有线程都已经挂在同一个 in-flight 请求上
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((long) cache.stats().get("coalesced") < threads - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<List<PersonaRecommendationDto>> f : futures) {
+                assertEquals(10L, f.get(5, TimeUnit.SECONDS).get(0).getId());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals((long) threads - 1, cache.stats().get("coalesced"));
+    }
+
+    @Test
+    void testLastForUser_FiltersToCurrentCandidates() {
+        cache.rememberForUser(1L, List.of(dto(10L), dto(20L), dto(30L)));
+
+        // 20 已被关注，不在当前候选集里
+        List<PersonaRecommendationDto> last = cache.lastForUser(1L, List.of(10L, 30L, 40L));
+
+        assertEquals(List.of(10L, 30L), last.stream().map(PersonaRecommendationDto::getId).toList());
+        assertTrue(cache.lastForUser(2L, List.of(10L)).isEmpty());
+        assertEquals(1L, cache.stats().get("staleServed"));
+    }
+
+    private static PersonaRecommendationDto dto(Long id) {
+        PersonaRecommendationDto dto = new PersonaRecommendationDto();
+        dto.setId(id);
+        dto.setReason("reason " + id);
+        dto.setMatchScore(90);
+        return dto;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.event.BehaviorCentroidChangedEvent;
+import com.example.persona_backend.event.FollowChangedEvent;
+import com.example.persona_backend.event.ProfileEvolvedEvent;
+import com.example.persona_backend.service.TargetVectorCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TargetVectorCacheTest {
+
+    private TargetVectorCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new TargetVectorCache();
+    }
+
+    @Test
+    void testGetOrCompute_HitAfterMiss() {
+        AtomicInteger loads = new AtomicInteger();
+
+        float[] first = cache.getOrCompute(1L, () -> { loads.incrementAndGet(); return new float[]{1f}; });
+        float[] second = cache.getOrCompute(1L, () -> { loads.incrementAndGet(); return new float[]{2f}; });
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void testEvents_InvalidateUser() {
+        cache.getOrCompute(1L, () -> new float[]{1f});
+        cache.getOrCompute(2L, () -> new float[]{1f});
+
+        cache.onProfileEvolved(new ProfileEvolvedEvent(1L));
+        cache.onFollowChanged(new FollowChangedEvent(2L, 10L, true));
+
+        assertArrayEquals(new float[]{3f}, cache.getOrCompute(1L, () -> new float[]{3f}));
+        assertArrayEquals(new float[]{4f}, cache.getOrCompute(2L, () -> new float[]{4f}));
+        assertEquals(2L, cache.stats().get("invalidations"));
+    }
+
+    @Test
+    void testBehaviorCentroidChanged_InvalidatesFollowers() {
+        cache.getOrCompute(1L, () -> new float[]{1f});
+        cache.getOrCompute(2L, () -> new float[]{1f});
+        cache.getOrCompute(3L, () -> new float[]{1f});
+
+        // 1、2 关注的 Persona 向量被刷新
+        cache.onBehaviorCentroidChanged(new BehaviorCentroidChangedEvent(List.of(1L, 2L)));
+
+        assertEquals(2L, cache.stats().get("invalidations"));
+        assertArrayEquals(new float[]{1f}, cache.getOrCompute(3L, () -> new float[]{9f}));
+    }
+
+    @Test
+    void testInvalidateDuringCompute_ResultNotCached() {
+        // 计算过程中发生失效 (如画像刚好进化)，本次结果可以返回但不能写入缓存
+        float[] stale = cache.getOrCompute(1L, () -> {
+            cache.invalidate(1L);
+            return new float[]{1f};
+        });
+
+        assertArrayEquals(new float[]{1f}, stale);
+        assertArrayEquals(new float[]{2f}, cache.getOrCompute(1L, () -> new float[]{2f}));
+        assertEquals(0L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void testByteBound_EvictsLeastRecentlyUsed() {
+        // 每条 1024 维约 4 KB，上限只够放两条
+        ReflectionTestUtils.setField(cache, "maxBytes", 2 * (1024L * 4 + 96));
+        cache.getOrCompute(1L, () -> new float[1024]);
+        cache.getOrCompute(2L, () -> new float[1024]);
+        cache.getOrCompute(1L, () -> new float[1024]); // 访问 1，使 2 成为最久未使用
+        cache.getOrCompute(3L, () -> new float[1024]);
+
+        assertEquals(2, cache.stats().get("entries"));
+        assertEquals(1L, cache.stats().get("evictions"));
+        AtomicInteger loads = new AtomicInteger();
+        cache.getOrCompute(1L, () -> { loads.incrementAndGet(); return new float[1024]; });
+        assertEquals(0, loads.get());
+    }
+}
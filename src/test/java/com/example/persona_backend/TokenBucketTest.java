@@ -0,0 +1,38 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.utils.TokenBucket;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void testTryAcquire_BurstThenEmpty() {
+        TokenBucket bucket = new TokenBucket(1, 3);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void testAcquire_LimitsRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(50, 1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            bucket.acquire();
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // 第 1 个令牌来自初始容量，其余 10 个按 50/s 补充，至少需要 200 ms
+        assertTrue(elapsedMs >= 190, "elapsed " + elapsedMs + " ms");
+    }
+
+    @Test
+    void testConstructor_RejectsNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.utils.TopKSelector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKSelectorTest {
+
+    @Test
+    void testDrainDescending_MatchesFullSort() {
+        Random random = new Random(42L);
+        for (int round = 0; round < 50; round++) {
+            int n = 1 + random.nextInt(500);
+            int k = 1 + random.nextInt(40);
+            float[] scores = new float[n];
+            for (int i = 0; i < n; i++) {
+                // 量化到少量取值，制造大量同分
+                scores[i] = random.nextInt(20) / 20f;
+            }
+
+            TopKSelector selector = new TopKSelector(k);
+            for (int i = 0; i < n; i++) {
+                selector.offer(i, scores[i]);
+            }
+
+            int[] expected = IntStream.range(0, n).boxed()
+                    .sorted(Comparator.<Integer>comparingDouble(i -> -scores[i]).thenComparingInt(i -> i))
+                    .limit(k)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            assertArrayEquals(expected, selector.drainDescending());
+            assertEquals(0, selector.size());
+        }
+    }
+
+    @Test
+    void testOffer_FewerCandidatesThanK() {
+        TopKSelector selector = new TopKSelector(5);
+        selector.offer(3, 0.1f);
+        selector.offer(7, 0.9f);
+
+        assertArrayEquals(new int[]{7, 3}, selector.drainDescending());
+    }
+
+    @Test
+    void testOffer_ZeroK() {
+        TopKSelector selector = new TopKSelector(0);
+        selector.offer(1, 1f);
+
+        assertEquals(0, selector.drainDescending().length);
+    }
+}
@@ -4,21 +4,26 @@ import com.alibaba.fastjson2.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.example.persona_backend.entity.ChatMessage;
 import com.example.persona_backend.entity.UserProfile;
+import com.example.persona_backend.event.ProfileEvolvedEvent;
 import com.example.persona_backend.mapper.ChatMessageMapper;
 import com.example.persona_backend.mapper.UserProfileMapper;
 import com.example.persona_backend.service.AiService;
+import com.example.persona_backend.service.EmbeddingService;
 import com.example.persona_backend.service.UserProfileService;
-import com.example.persona_backend.utils.ZhipuAiUtils;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -32,76 +37,134 @@ class UserProfileServiceTest {
     @Mock
     private ChatMessageMapper chatMessageMapper;
     @Mock
-    private ZhipuAiUtils zhipuAiUtils;
+    private EmbeddingService embeddingService;
     @Mock
     private AiService aiService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private UserProfileService userProfileService;
 
-    @Test
-    void testLazyInit_And_NoTrigger() {
-        // --- 场景：新用户，第一次聊天 ---
-        Long userId = 999L;
+    @BeforeEach
+    void setUp() {
+        // 画像进化直接在当前线程执行，便于验证
+        ReflectionTestUtils.setField(userProfileService, "profileEvolutionExecutor", (Executor) Runnable::run);
+        // 不等待防抖窗口，刷新计数后立即派发
+        ReflectionTestUtils.setField(userProfileService, "debounceMs", 0L);
+        userProfileService.init();
+    }
 
-        // 1. Mock: 数据库查不到画像 (返回 null)
-        when(userProfileMapper.selectById(userId)).thenReturn(null);
+    @Test
+    void testInit_RejectsMaxConcurrentAboveThreads() {
+        // 同时执行数超过线程数时任务会堆到线程池队列甚至被拒绝，启动时直接报错
+        ReflectionTestUtils.setField(userProfileService, "maxConcurrent", 3);
+        ReflectionTestUtils.setField(userProfileService, "evolutionThreads", 2);
 
-        // --- 执行 ---
-        userProfileService.checkAndEvolveProfile(userId);
+        assertThrows(IllegalStateException.class, () -> userProfileService.init());
+    }
 
-        // --- 验证 ---
-        // 1. 验证是否执行了 insert (懒加载)
-        verify(userProfileMapper).insert(any(UserProfile.class));
+    @Test
+    void testRecordChat_NoDatabaseIo() {
+        // --- 场景：聊天过程中只在内存中计数 ---
+        userProfileService.checkAndEvolveProfile(1L);
+        userProfileService.checkAndEvolveProfile(1L);
+        userProfileService.checkAndEvolveProfile(999L);
+
+        // 每条消息不再读写 user_profile
+        verifyNoInteractions(userProfileMapper);
+        assertEquals(2, userProfileService.stats().get("pendingUsers"));
+    }
 
-        // 2. 验证此时 chatCount 应该是 1，不应该触发 AI 分析
+    @Test
+    void testFlush_BatchesDeltas_And_NoTrigger() {
+        // --- 场景：老用户发了 2 条，新用户发了第 1 条 ---
+        userProfileService.checkAndEvolveProfile(1L);
+        userProfileService.checkAndEvolveProfile(1L);
+        userProfileService.checkAndEvolveProfile(999L);
+        when(userProfileMapper.selectChatCounts(anyList())).thenReturn(List.of(profile(1L, 5), profile(999L, 1)));
+
+        userProfileService.flushChatCounts();
+
+        // 1. 两个用户的增量合并为一条批量语句 (新用户由该语句懒加载创建)
+        ArgumentCaptor<List<UserProfile>> captor = ArgumentCaptor.forClass(List.class);
+        verify(userProfileMapper).incrementChatCounts(captor.capture());
+        Map<Long, Integer> deltas = captor.getValue().stream()
+                .collect(Collectors.toMap(UserProfile::getUserId, UserProfile::getChatCount));
+        assertEquals(Map.of(1L, 2, 999L, 1), deltas);
+
+        // 2. 没有跨过 10 的倍数，不触发 AI 分析
         verify(aiService, never()).analyzeUserProfile(anyString());
+
+        // 3. 增量已清空，再次刷新不访问数据库
+        userProfileService.flushChatCounts();
+        verify(userProfileMapper, times(1)).incrementChatCounts(anyList());
     }
 
     @Test
-    void testTrigger_At_10th_Message() {
-        // --- 场景：老用户，发送第 10 条消息 ---
+    void testTrigger_When_Crossing_10th_Message() {
+        // --- 场景：老用户原有 8 条，本轮又发了 3 条 (8 -> 11，跨过第 10 条) ---
         Long userId = 1L;
+        for (int i = 0; i < 3; i++) {
+            userProfileService.checkAndEvolveProfile(userId);
+        }
+        when(userProfileMapper.selectChatCounts(anyList())).thenReturn(List.of(profile(userId, 11)));
+        when(chatMessageMapper.selectList(any(LambdaQueryWrapper.class))).thenReturn(List.of(new ChatMessage()));
 
-        // 1. Mock: 用户当前 chatCount = 9
-        UserProfile existingProfile = new UserProfile();
-        existingProfile.setUserId(userId);
-        existingProfile.setChatCount(9);
-        when(userProfileMapper.selectById(userId)).thenReturn(existingProfile);
-
-        // 2. Mock: 聊天记录
-        List<ChatMessage> history = new ArrayList<>();
-        history.add(new ChatMessage());
-        when(chatMessageMapper.selectList(any(LambdaQueryWrapper.class))).thenReturn(history);
-
-        // 3. Mock: AiService 分析结果
+        // Mock: AiService 分析结果
         JSONObject mockAnalysis = new JSONObject();
         mockAnalysis.put("summary", "User is curious");
         mockAnalysis.put("tags", "Sci-Fi,Coding");
         when(aiService.analyzeUserProfile(anyString())).thenReturn(mockAnalysis);
 
-        // 4. Mock: Zhipu Embedding
-        when(zhipuAiUtils.generateEmbedding(anyString())).thenReturn(Arrays.asList(0.1, 0.2, 0.3));
+        // Mock: Zhipu Embedding (经由向量缓存)
+        when(embeddingService.embed(anyString())).thenReturn(new float[]{0.1f, 0.2f, 0.3f});
 
         // --- 执行 ---
-        userProfileService.checkAndEvolveProfile(userId);
+        userProfileService.flushChatCounts();
 
         // --- 验证 ---
-        // 1. 验证计数器变为 10
-        assertEquals(10, existingProfile.getChatCount());
-
-        // 2. 验证是否调用了 AI 分析
+        // 1. 验证是否调用了 AI 分析并生成了向量
         verify(aiService).analyzeUserProfile(anyString());
+        verify(embeddingService).embed("User is curious Sci-Fi,Coding");
 
-        // 3. 验证是否生成了向量
-        verify(zhipuAiUtils).generateEmbedding("User is curious Sci-Fi,Coding");
-
-        // 4. 验证是否更新了数据库
+        // 2. 验证只更新了画像字段，不覆盖并发累加的 chat_count
         ArgumentCaptor<UserProfile> captor = ArgumentCaptor.forClass(UserProfile.class);
         verify(userProfileMapper).updateById(captor.capture());
-
         UserProfile updatedProfile = captor.getValue();
         assertEquals("User is curious", updatedProfile.getSummary());
         assertNotNull(updatedProfile.getTargetVector());
+        assertNull(updatedProfile.getChatCount());
+
+        // 3. 验证发布了画像进化事件 (推荐侧据此失效目标向量缓存)
+        ArgumentCaptor<ProfileEvolvedEvent> eventCaptor = ArgumentCaptor.forClass(ProfileEvolvedEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(userId, eventCaptor.getValue().getUserId());
+    }
+
+    @Test
+    void testFlushFailure_KeepsDeltasForRetry() {
+        userProfileService.checkAndEvolveProfile(1L);
+        userProfileService.checkAndEvolveProfile(1L);
+        when(userProfileMapper.incrementChatCounts(anyList()))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(1);
+        when(userProfileMapper.selectChatCounts(anyList())).thenReturn(List.of(profile(1L, 2)));
+
+        userProfileService.flushChatCounts();
+        userProfileService.flushChatCounts();
+
+        // 第二次刷新写入的仍是完整的增量
+        ArgumentCaptor<List<UserProfile>> captor = ArgumentCaptor.forClass(List.class);
+        verify(userProfileMapper, times(2)).incrementChatCounts(captor.capture());
+        assertEquals(2, captor.getAllValues().get(1).get(0).getChatCount());
+        assertEquals(1L, userProfileService.stats().get("flushFailures"));
+    }
+
+    private static UserProfile profile(Long userId, int chatCount) {
+        UserProfile p = new UserProfile();
+        p.setUserId(userId);
+        p.setChatCount(chatCount);
+        return p;
     }
-}
\ No newline at end of file
+}
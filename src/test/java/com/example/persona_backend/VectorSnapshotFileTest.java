@@ -0,0 +1,97 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.utils.OffHeapVectorStore;
+import com.example.persona_backend.utils.VectorSnapshotFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorSnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testWriteRead_Float32() throws IOException {
+        VectorSnapshotFile.Snapshot snapshot = new VectorSnapshotFile.Snapshot();
+        snapshot.setEncoding(VectorSnapshotFile.ENCODING_FLOAT32);
+        snapshot.setDimension(3);
+        snapshot.setRows(2);
+        snapshot.setCreatedAt(123L);
+        // 数组容量大于行数时只写入前 rows 行
+        snapshot.setIds(new long[]{10L, 20L, 0L});
+        snapshot.setVersions(new int[]{1, 4, 0});
+        snapshot.setNorms(new float[]{1f, 2f, 0f});
+        snapshot.setVectors(new float[]{1f, 0f, 0f, 0f, 2f, 0f, 9f, 9f, 9f});
+
+        Path path = dir.resolve("index.snap");
+        VectorSnapshotFile.write(path, snapshot);
+        VectorSnapshotFile.Snapshot read = VectorSnapshotFile.read(path);
+
+        assertEquals(2, read.getRows());
+        assertEquals(3, read.getDimension());
+        assertEquals(123L, read.getCreatedAt());
+        assertArrayEquals(new long[]{10L, 20L}, read.getIds());
+        assertArrayEquals(new int[]{1, 4}, read.getVersions());
+        assertArrayEquals(new float[]{1f, 2f}, read.getNorms());
+        assertArrayEquals(new float[]{1f, 0f, 0f, 0f, 2f, 0f}, read.getVectors());
+        assertFalse(Files.exists(dir.resolve("index.snap.tmp")));
+    }
+
+    @Test
+    void testWriteRead_Int8() throws IOException {
+        VectorSnapshotFile.Snapshot snapshot = new VectorSnapshotFile.Snapshot();
+        snapshot.setEncoding(VectorSnapshotFile.ENCODING_INT8);
+        snapshot.setDimension(2);
+        snapshot.setRows(2);
+        snapshot.setIds(new long[]{1L, 2L});
+        snapshot.setVersions(new int[]{1, 1});
+        snapshot.setNorms(new float[]{0.5f, 0.7f});
+        snapshot.setScales(new float[]{0.01f, 0.02f});
+        snapshot.setOffsets(new float[]{0.1f, -0.1f});
+        snapshot.setCodes(new byte[]{-128, 127, 0, 5});
+        OffHeapVectorStore fullPrecision = new OffHeapVectorStore(2);
+        fullPrecision.put(0, new float[]{0.3f, 0.4f});
+        fullPrecision.put(1, new float[]{-0.7f, 0f});
+        snapshot.setFullPrecision(fullPrecision);
+
+        Path path = dir.resolve("index.snap");
+        VectorSnapshotFile.write(path, snapshot);
+        VectorSnapshotFile.Snapshot read = VectorSnapshotFile.read(path);
+
+        assertEquals(VectorSnapshotFile.ENCODING_INT8, read.getEncoding());
+        assertArrayEquals(new float[]{0.01f, 0.02f}, read.getScales());
+        assertArrayEquals(new float[]{0.1f, -0.1f}, read.getOffsets());
+        assertArrayEquals(new byte[]{-128, 127, 0, 5}, read.getCodes());
+        assertNull(read.getVectors());
+        // 全精度向量以映射方式读取
+        float[] row = new float[2];
+        read.getFullPrecision().get(1, row);
+        assertArrayEquals(new float[]{-0.7f, 0f}, row);
+    }
+
+    @Test
+    void testRead_TruncatedFileRejected() throws IOException {
+        VectorSnapshotFile.Snapshot snapshot = new VectorSnapshotFile.Snapshot();
+        snapshot.setDimension(2);
+        snapshot.setRows(1);
+        snapshot.setIds(new long[]{1L});
+        snapshot.setVersions(new int[]{1});
+        snapshot.setNorms(new float[]{1f});
+        snapshot.setVectors(new float[]{1f, 0f});
+        Path path = dir.resolve("index.snap");
+        VectorSnapshotFile.write(path, snapshot);
+
+        try (var channel = Files.newByteChannel(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 1);
+        }
+
+        assertThrows(IOException.class, () -> VectorSnapshotFile.read(path));
+    }
+}
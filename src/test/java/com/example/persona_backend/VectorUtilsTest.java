@@ -0,0 +1,104 @@
+package com.example.persona_backend;
+
+import com.example.persona_backend.utils.VectorUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorUtilsTest {
+
+    @Test
+    void testCosine_MatchesReferenceWithTail() {
+        // 1027 不是向量寄存器宽度的整数倍，同时覆盖 SIMD 主循环与尾部标量循环
+        Random random = new Random(1);
+        int dim = 1027;
+        float[] a = new float[dim];
+        float[] b = new float[dim];
+        double[] da = new double[dim];
+        double[] db = new double[dim];
+        for (int i = 0; i < dim; i++) {
+            a[i] = (float) random.nextGaussian();
+            b[i] = (float) random.nextGaussian();
+            da[i] = a[i];
+            db[i] = b[i];
+        }
+
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < dim; i++) {
+            dot += da[i] * db[i];
+            normA += da[i] * da[i];
+            normB += db[i] * db[i];
+        }
+        double expected = dot / (Math.sqrt(normA) * Math.sqrt(normB));
+
+        assertEquals(expected, VectorUtils.cosine(a, b), 1e-4);
+        assertEquals(expected, VectorUtils.cosine(da, db), 1e-9);
+    }
+
+    @Test
+    void testDot_FloatByInt8WithTail() {
+        Random random = new Random(2);
+        int dim = 1029;
+        float[] a = new float[dim];
+        byte[] b = new byte[dim + 3];
+        random.nextBytes(b);
+        double expected = 0;
+        for (int i = 0; i < dim; i++) {
+            a[i] = (float) random.nextGaussian();
+            expected += a[i] * b[i + 3];
+        }
+
+        assertEquals(expected, VectorUtils.dot(a, 0, b, 3, dim), 1e-2);
+    }
+
+    @Test
+    void testCosine_ZeroOrMismatchedVectors() {
+        assertEquals(0f, VectorUtils.cosine(new float[]{0f, 0f}, new float[]{1f, 1f}));
+        assertEquals(0f, VectorUtils.cosine(new float[]{1f, 0f}, new float[]{1f, 0f, 0f}));
+    }
+
+    @Test
+    void testCosineBatch_OneVsMany() {
+        float[] matrix = {
+                1f, 0f,
+                0f, 2f,
+                1f, 1f,
+                0f, 0f
+        };
+        float[] norms = new float[4];
+        for (int r = 0; r < 4; r++) norms[r] = VectorUtils.norm(matrix, r * 2, 2);
+        float[] query = {3f, 0f};
+
+        float[] scores = new float[4];
+        VectorUtils.cosineBatch(query, VectorUtils.norm(query), matrix, norms, 2, 4, scores);
+
+        assertEquals(1f, scores[0], 1e-6);
+        assertEquals(0f, scores[1], 1e-6);
+        assertEquals((float) Math.sqrt(0.5), scores[2], 1e-6);
+        assertEquals(0f, scores[3]);
+    }
+
+    @Test
+    void testAddTo_Centroid() {
+        double[] sum = new double[9];
+        double[] v = new double[9];
+        Arrays.fill(v, 2.0);
+        VectorUtils.addTo(sum, v);
+        VectorUtils.addTo(sum, v);
+        VectorUtils.scale(sum, 0.5);
+
+        for (double x : sum) assertEquals(2.0, x, 1e-12);
+    }
+
+    @Test
+    void testFuse_WeightedAndTruncated() {
+        float[] fused = VectorUtils.fuse(new float[]{1f, 0f, 5f}, new float[]{0f, 1f}, 0.6);
+
+        assertEquals(2, fused.length);
+        assertEquals(0.6f, fused[0], 1e-6);
+        assertEquals(0.4f, fused[1], 1e-6);
+    }
+}